@@ -0,0 +1,53 @@
+package sysy.bench;
+
+import org.openjdk.jmh.annotations.*;
+import sysy.backend.ir.Module;
+import sysy.backend.optim.PassManager;
+import sysy.backend.target.RegisterAllocStrategy;
+import sysy.backend.target.Target;
+import sysy.backend.target.Translator;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+// Translator.translate followed by Target.dump on a freshly generated module
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BackendBenchmark {
+    @Param({"testfile1", "testfile2", "testfile3", "testfile4", "testfile5",
+            "deep-expr:4096", "many-funcs:2000", "huge-array:100000"})
+    public String program;
+
+    @Param({"0", "1", "2"})
+    public int optLevel;
+
+    @Param({"GRAPH_COLORING", "LINEAR_SCAN"})
+    public RegisterAllocStrategy regAlloc;
+
+    private String source;
+    private Module module;
+    private final PrintStream out = new PrintStream(OutputStream.nullOutputStream());
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        source = Programs.load(program);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        module = PassManager.createPipeline(Programs.generateIR(source), optLevel).run();
+    }
+
+    @Benchmark
+    public Target translateAndDump() {
+        var translator = new Translator(regAlloc);
+        translator.translate(module);
+        translator.getAsmTarget().dump(out, false);
+        return translator.getAsmTarget();
+    }
+}
@@ -0,0 +1,52 @@
+package sysy.bench;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import sysy.backend.ir.Module;
+import sysy.error.ErrorRecorder;
+import sysy.exception.LexerException;
+import sysy.frontend.lexer.Lexer;
+import sysy.frontend.parser.syntaxtree.SyntaxNode;
+import sysy.frontend.visitor.Visitor;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontendBenchmark {
+    @Param({"testfile1", "testfile2", "testfile3", "testfile4", "testfile5",
+            "deep-expr:4096", "many-funcs:2000", "huge-array:100000"})
+    public String program;
+
+    private String source;
+    private SyntaxNode syntaxTree;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        source = Programs.load(program);
+        syntaxTree = Programs.parse(source);
+    }
+
+    @Benchmark
+    public void lexer(Blackhole bh) throws LexerException {
+        var lexer = new Lexer(new StringReader(source), new ErrorRecorder());
+        while (lexer.next()) {
+            bh.consume(lexer.getToken());
+        }
+    }
+
+    @Benchmark
+    public SyntaxNode parser() {
+        return Programs.parse(source);
+    }
+
+    @Benchmark
+    public Module generateIR() {
+        return new Visitor(new ErrorRecorder()).generateIR(syntaxTree);
+    }
+}
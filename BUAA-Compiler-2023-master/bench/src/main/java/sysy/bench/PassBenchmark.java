@@ -0,0 +1,79 @@
+package sysy.bench;
+
+import org.openjdk.jmh.annotations.*;
+import sysy.backend.ir.Module;
+import sysy.backend.optim.*;
+
+import java.util.concurrent.TimeUnit;
+
+// each invocation runs one pass over a freshly generated module, mem2reg has already run unless it is measured
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PassBenchmark {
+    @Param({"testfile1", "testfile2", "testfile3", "testfile4", "testfile5",
+            "deep-expr:4096", "many-funcs:2000", "huge-array:100000"})
+    public String program;
+
+    @Param({"mem2reg", "const-propagate", "sccp", "const-fold", "lvn", "gvn",
+            "dead-store-elimination", "dead-code-elimination", "aggressive-dead-code-elimination", "peephole", "inline",
+            "tail-recursion-elimination", "loop-invariant-code-motion", "strength-reduction", "loop-unroll",
+            "simplify-cfg"})
+    public String pass;
+
+    private String source;
+    private Module module;
+    private Pass passToRun;
+
+    @Setup(Level.Trial)
+    public void setupTrial() {
+        source = Programs.load(program);
+    }
+
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+        module = Programs.generateIR(source);
+        if (!pass.equals("mem2reg")) {
+            new PassManager(module).addPass(new Mem2RegPass()).run();
+        }
+        passToRun = createPass(pass, module);
+    }
+
+    @TearDown(Level.Invocation)
+    public void tearDownInvocation() {
+        AnalysisManager.getInstance().clear();
+    }
+
+    @Benchmark
+    public Module runPass() {
+        for (var func : module.getFunctions()) {
+            passToRun.passFunc(func);
+        }
+        return module;
+    }
+
+    static Pass createPass(String name, Module module) {
+        return switch (name) {
+            case "mem2reg" -> new Mem2RegPass();
+            case "const-propagate" -> new ConstPropagatePass();
+            case "sccp" -> new SparseConditionalConstantPropagationPass();
+            case "const-fold" -> new ConstFoldPass();
+            case "lvn" -> new LVNPass(module);
+            case "gvn" -> new GVNPass(module);
+            case "dead-store-elimination" -> new DeadStoreEliminationPass(module);
+            case "dead-code-elimination" -> new DeadCodeEliminationPass();
+            case "aggressive-dead-code-elimination" -> new AggressiveDeadCodeEliminationPass();
+            case "peephole" -> new PeepHolePass();
+            case "inline" -> new InlinePass(module);
+            case "tail-recursion-elimination" -> new TailRecursionEliminationPass();
+            case "loop-invariant-code-motion" -> new LoopInvariantCodeMotionPass(module);
+            case "strength-reduction" -> new StrengthReductionPass();
+            case "loop-unroll" -> new LoopUnrollPass();
+            case "simplify-cfg" -> new SimplifyCFGPass();
+            default -> throw new IllegalArgumentException("unknown pass " + name);
+        };
+    }
+}
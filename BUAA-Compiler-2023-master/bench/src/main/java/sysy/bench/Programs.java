@@ -0,0 +1,154 @@
+package sysy.bench;
+
+import sysy.backend.ir.Module;
+import sysy.error.ErrorRecorder;
+import sysy.frontend.lexer.Lexer;
+import sysy.frontend.parser.Parser;
+import sysy.frontend.parser.syntaxtree.SyntaxNode;
+import sysy.frontend.visitor.Visitor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// benchmark inputs: "testfileN" loads a bundled testfile, "<kind>:<scale>" generates a program
+public class Programs {
+    public static String load(String name) {
+        if (name.startsWith("testfile")) {
+            return loadResource("/testfiles/" + name + ".txt");
+        }
+        var parts = name.split(":");
+        int scale = Integer.parseInt(parts[1]);
+        return switch (parts[0]) {
+            case "deep-expr" -> deepExpression(scale);
+            case "many-funcs" -> manyFunctions(scale);
+            case "huge-array" -> hugeArrayInitializer(scale);
+            default -> throw new IllegalArgumentException("unknown program " + name);
+        };
+    }
+
+    private static String loadResource(String path) {
+        try (InputStream in = Programs.class.getResourceAsStream(path)) {
+            if (in == null) {
+                throw new IllegalArgumentException("missing resource " + path);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // a balanced expression tree with the given number of leaves, evaluated inside a loop
+    public static String deepExpression(int leaves) {
+        var sb = new StringBuilder();
+        sb.append("int main() {\n");
+        sb.append("    int a, b, c, i, sum = 0;\n");
+        sb.append("    a = getint();\n");
+        sb.append("    b = getint();\n");
+        sb.append("    c = getint();\n");
+        sb.append("    for (i = 0; i < 100; i = i + 1) {\n");
+        sb.append("        sum = sum + ");
+        appendExpression(sb, 0, leaves);
+        sb.append(";\n");
+        sb.append("    }\n");
+        sb.append("    printf(\"%d\\n\", sum);\n");
+        sb.append("    return 0;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static void appendExpression(StringBuilder sb, int from, int to) {
+        if (to - from == 1) {
+            switch (from % 4) {
+                case 0 -> sb.append("a");
+                case 1 -> sb.append("(b * ").append(from % 7 + 1).append(")");
+                case 2 -> sb.append("c");
+                default -> sb.append("(i / ").append(from % 5 + 1).append(")");
+            }
+            return;
+        }
+        int mid = (from + to) / 2;
+        sb.append("(");
+        appendExpression(sb, from, mid);
+        sb.append(from % 3 == 0 ? " - " : " + ");
+        appendExpression(sb, mid, to);
+        sb.append(")");
+    }
+
+    // a chain of small functions, each calling the previous one
+    public static String manyFunctions(int count) {
+        var sb = new StringBuilder();
+        sb.append("int g = 0;\n");
+        for (int k = 0; k < count; k++) {
+            sb.append("int f").append(k).append("(int a, int b) {\n");
+            sb.append("    int c = a * ").append(k % 13 + 1).append(" + b;\n");
+            sb.append("    if (c > ").append(k % 100).append(") {\n");
+            if (k > 0) {
+                sb.append("        c = c - f").append(k - 1).append("(b, a / 2);\n");
+            } else {
+                sb.append("        c = c - 1;\n");
+            }
+            sb.append("    }\n");
+            sb.append("    g = g + c % 7;\n");
+            sb.append("    return c;\n");
+            sb.append("}\n");
+        }
+        sb.append("int main() {\n");
+        sb.append("    int n;\n");
+        sb.append("    n = getint();\n");
+        sb.append("    printf(\"%d\\n\", f").append(count - 1).append("(n, 1));\n");
+        sb.append("    return 0;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    // a global array and a tenth as large local array, both fully initialized
+    public static String hugeArrayInitializer(int size) {
+        int localSize = Math.max(size / 10, 1);
+        var sb = new StringBuilder();
+        sb.append("int global[").append(size).append("] = {");
+        appendInitializer(sb, size);
+        sb.append("};\n");
+        sb.append("int main() {\n");
+        sb.append("    int local[").append(localSize).append("] = {");
+        appendInitializer(sb, localSize);
+        sb.append("};\n");
+        sb.append("    int i, sum = 0;\n");
+        sb.append("    for (i = 0; i < ").append(localSize).append("; i = i + 1) {\n");
+        sb.append("        sum = sum + global[i] * local[i];\n");
+        sb.append("    }\n");
+        sb.append("    printf(\"%d\\n\", sum);\n");
+        sb.append("    return 0;\n");
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    private static void appendInitializer(StringBuilder sb, int size) {
+        for (int i = 0; i < size; i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(i * 31 % 1000);
+        }
+    }
+
+    public static SyntaxNode parse(String source) {
+        var recorder = new ErrorRecorder();
+        try {
+            return new Parser(new Lexer(new StringReader(source), recorder), recorder).parse();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public static Module generateIR(String source) {
+        var recorder = new ErrorRecorder();
+        var module = new Visitor(recorder).generateIR(parse(source));
+        if (!recorder.getErrors().isEmpty()) {
+            throw new IllegalStateException("program has semantic errors: " + recorder.getErrors());
+        }
+        return module;
+    }
+}
@@ -1,5 +1,7 @@
-import sysy.backend.ir.Module;
+import sysy.backend.Instrumentation;
 import sysy.backend.optim.*;
+import sysy.backend.target.CostTable;
+import sysy.backend.target.RegisterAllocStrategy;
 import sysy.backend.target.Translator;
 import sysy.error.ErrorRecorder;
 import sysy.exception.LexerException;
@@ -13,15 +15,47 @@ import java.io.*;
 
 public class Compiler {
     private static final ErrorRecorder recorder = new ErrorRecorder();
+    private static int optLevel = 0;
+    private static String statsFormat = null;
+    private static RegisterAllocStrategy regAllocStrategy = RegisterAllocStrategy.GRAPH_COLORING;
+    private static CostTable costTable = CostTable.DEFAULT;
+    private static UnrollBudget unrollBudget = UnrollBudget.DEFAULT;
 
     public static void main(String[] args) throws IOException, LexerException, ParserException {
+        for (var arg : args) {
+            if (arg.matches("-O[0-2]")) {
+                optLevel = arg.charAt(2) - '0';
+            } else if (arg.equals("-stats")) {
+                statsFormat = "table";
+            } else if (arg.equals("-stats-json")) {
+                statsFormat = "json";
+            } else if (arg.startsWith("-regalloc=")) { // basic, ref-count, graph-coloring or linear-scan
+                regAllocStrategy = RegisterAllocStrategy.valueOf(arg.substring("-regalloc=".length()).toUpperCase().replace('-', '_'));
+            } else if (arg.startsWith("-mul-cost=")) {
+                costTable = costTable.withMul(Integer.parseInt(arg.substring("-mul-cost=".length())));
+            } else if (arg.startsWith("-unroll-factor=")) {
+                unrollBudget = unrollBudget.withFactor(Integer.parseInt(arg.substring("-unroll-factor=".length())));
+            } else if (arg.startsWith("-unroll-size=")) {
+                unrollBudget = unrollBudget.withPartialUnrollSize(Integer.parseInt(arg.substring("-unroll-size=".length())));
+            } else if (arg.startsWith("-full-unroll-size=")) {
+                unrollBudget = unrollBudget.withFullUnrollSize(Integer.parseInt(arg.substring("-full-unroll-size=".length())));
+            }
+        }
+        Instrumentation.getInstance().setEnabled(statsFormat != null);
+
 //        task1();
 //        task2();
 //        task3();
-//        task4LLVM(false);
-//        task4MIPS(false, true);
+//        task4LLVM();
+//        task4MIPS(false);
 //        runCompleteCompilerLLVM();
         runCompleteCompilerMIPS();
+
+        if ("table".equals(statsFormat)) {
+            Instrumentation.getInstance().dumpTable(System.err);
+        } else if ("json".equals(statsFormat)) {
+            Instrumentation.getInstance().dumpJson(System.err);
+        }
     }
 
     private static void task1() throws IOException, LexerException {
@@ -75,7 +109,7 @@ public class Compiler {
         }
     }
 
-    private static void task4LLVM(boolean optimize) throws IOException, LexerException, ParserException {
+    private static void task4LLVM() throws IOException, LexerException, ParserException {
         try (var testFile = new FileInputStream("testfile.txt");
              var outputFile = new FileOutputStream("llvm_ir.txt")) {
             var out = new PrintStream(outputFile);
@@ -86,9 +120,7 @@ public class Compiler {
             var visitor = new Visitor(recorder);
             var module = visitor.generateIR(result);
 
-            if (optimize) {
-                module = optimize(module);
-            }
+            module = PassManager.createPipeline(module, optLevel, unrollBudget).run();
 
             out.print("""
                     declare i32 @getint()
@@ -101,25 +133,7 @@ public class Compiler {
         }
     }
 
-    private static Module optimize(Module module) {
-        while (true) {
-            var pass1 = new ConstPropagatePass(module);
-            module = pass1.pass();
-            var pass2 = new ConstFoldPass(module);
-            module = pass2.pass();
-
-            if (!pass1.isImprove() && !pass2.isImprove()) {
-                break;
-            }
-        }
-        module = new LVNPass(module).pass();
-        module = new DeadStoreEliminationPass(module).pass();
-        module = new DeadCodeEliminationPass(module).pass();
-
-        return module;
-    }
-
-    private static void task4MIPS(boolean debugMode, boolean optimize) throws IOException, LexerException, ParserException {
+    private static void task4MIPS(boolean debugMode) throws IOException, LexerException, ParserException {
         try (var testFile = new FileInputStream("testfile.txt");
              var outputFile = new FileOutputStream("mips.txt")) {
             var out = new PrintStream(outputFile);
@@ -130,11 +144,10 @@ public class Compiler {
             var visitor = new Visitor(recorder);
             var module = visitor.generateIR(result);
 
-            if (optimize) {
-                module = optimize(module);
-            }
+            module = PassManager.createPipeline(module, optLevel, unrollBudget).run();
 
-            var translator = new Translator();
+            var translator = new Translator(regAllocStrategy);
+            translator.setCostTable(costTable);
             translator.translate(module);
             translator.getAsmTarget().dump(out, debugMode);
         }
@@ -161,6 +174,8 @@ public class Compiler {
                 return;
             }
 
+            module = PassManager.createPipeline(module, optLevel, unrollBudget).run();
+
             out.print("""
                     declare i32 @getint()
                     declare void @putint(i32)
@@ -192,7 +207,10 @@ public class Compiler {
                 return;
             }
 
-            var translator = new Translator();
+            module = PassManager.createPipeline(module, optLevel, unrollBudget).run();
+
+            var translator = new Translator(regAllocStrategy);
+            translator.setCostTable(costTable);
             translator.translate(module);
             translator.getAsmTarget().dump(out, false);
         }
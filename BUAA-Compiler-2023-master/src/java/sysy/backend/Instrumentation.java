@@ -0,0 +1,186 @@
+package sysy.backend;
+
+import sysy.backend.ir.Function;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+// records cost and effect of every pass and backend phase, disabled by default
+public class Instrumentation {
+    private static final Instrumentation instance = new Instrumentation();
+    private final List<Record> records = new ArrayList<>();
+    private final Map<String, Map<String, Integer>> iterations = new LinkedHashMap<>();
+    private final Map<String, int[]> frameSizes = new LinkedHashMap<>();
+    private boolean enabled = false;
+
+    public record Record(String phase, String function, int iteration, long timeNanos, long allocatedBytes,
+                         int instsBefore, int instsAfter, boolean changed) {}
+
+    public class Measurement {
+        private final String phase;
+        private final String function;
+        private final int iteration;
+        private final int instsBefore;
+        private final long startTime;
+        private final long startAllocatedBytes;
+
+        private Measurement(String phase, String function, int iteration, int instsBefore) {
+            this.phase = phase;
+            this.function = function;
+            this.iteration = iteration;
+            this.instsBefore = instsBefore;
+            this.startAllocatedBytes = getAllocatedBytes();
+            this.startTime = System.nanoTime();
+        }
+
+        public void end(int instsAfter, boolean changed) {
+            long time = System.nanoTime() - startTime;
+            long allocatedBytes = startAllocatedBytes < 0 ? -1 : getAllocatedBytes() - startAllocatedBytes;
+            records.add(new Record(phase, function, iteration, time, allocatedBytes, instsBefore, instsAfter, changed));
+        }
+
+        public void end(Function func, boolean changed) {
+            end(countInstructions(func), changed);
+        }
+    }
+
+    private Instrumentation() {}
+
+    public static Instrumentation getInstance() {
+        return instance;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    // returns null when disabled
+    public Measurement begin(String phase, String function, int iteration, int instsBefore) {
+        if (!enabled) {
+            return null;
+        }
+        return new Measurement(phase, function, iteration, instsBefore);
+    }
+
+    public Measurement begin(String phase, Function func, int iteration) {
+        if (!enabled) {
+            return null;
+        }
+        return new Measurement(phase, func.getName(), iteration, countInstructions(func));
+    }
+
+    public void recordIterations(String stage, String function, int count) {
+        if (enabled) {
+            iterations.computeIfAbsent(stage, k -> new LinkedHashMap<>()).put(function, count);
+        }
+    }
+
+    // bytes of the frame with a slot for every value and alloca, and with slots shared
+    public void recordFrameSize(String function, int unsharedBytes, int sharedBytes) {
+        if (enabled) {
+            frameSizes.put(function, new int[]{unsharedBytes, sharedBytes});
+        }
+    }
+
+    public List<Record> getRecords() {
+        return records;
+    }
+
+    public void clear() {
+        records.clear();
+        iterations.clear();
+        frameSizes.clear();
+    }
+
+    public static int countInstructions(Function func) {
+        int count = 0;
+        for (var block : func.getBasicBlocks()) {
+            count += block.getInstructions().size();
+        }
+        return count;
+    }
+
+    private static long getAllocatedBytes() {
+        var bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean sunBean && sunBean.isThreadAllocatedMemoryEnabled()) {
+            return sunBean.getCurrentThreadAllocatedBytes();
+        }
+        return -1;
+    }
+
+    public void dumpTable(PrintStream out) {
+        Map<String, List<Record>> phases = new LinkedHashMap<>();
+        for (var record : records) {
+            phases.computeIfAbsent(record.phase(), k -> new ArrayList<>()).add(record);
+        }
+
+        out.printf("%-28s %6s %8s %12s %14s %10s %10s\n",
+                "phase", "runs", "changed", "time(us)", "alloc(KB)", "insts-in", "insts-out");
+        for (var entry : phases.entrySet()) {
+            int changed = 0;
+            long time = 0, allocatedBytes = 0;
+            int instsBefore = 0, instsAfter = 0;
+            for (var record : entry.getValue()) {
+                changed += record.changed() ? 1 : 0;
+                time += record.timeNanos();
+                allocatedBytes += Math.max(record.allocatedBytes(), 0);
+                instsBefore += record.instsBefore();
+                instsAfter += record.instsAfter();
+            }
+            out.printf("%-28s %6d %8d %12.1f %14.1f %10d %10d\n", entry.getKey(), entry.getValue().size(), changed,
+                    time / 1e3, allocatedBytes / 1024.0, instsBefore, instsAfter);
+        }
+
+        for (var entry : iterations.entrySet()) {
+            out.printf("\niterations to fixed point of %s\n", entry.getKey());
+            for (var funcEntry : entry.getValue().entrySet()) {
+                out.printf("  %-26s %6d\n", funcEntry.getKey(), funcEntry.getValue());
+            }
+        }
+
+        if (!frameSizes.isEmpty()) {
+            out.printf("\n%-28s %8s %8s\n", "frame bytes", "unshared", "shared");
+            for (var entry : frameSizes.entrySet()) {
+                out.printf("  %-26s %8d %8d\n", entry.getKey(), entry.getValue()[0], entry.getValue()[1]);
+            }
+        }
+    }
+
+    public void dumpJson(PrintStream out) {
+        out.print("{\"records\": [");
+        for (int i = 0; i < records.size(); i++) {
+            var record = records.get(i);
+            out.print(i == 0 ? "\n" : ",\n");
+            out.printf("  {\"phase\": \"%s\", \"function\": \"%s\", \"iteration\": %d, \"timeNanos\": %d, " +
+                            "\"allocatedBytes\": %d, \"instsBefore\": %d, \"instsAfter\": %d, \"changed\": %b}",
+                    record.phase(), record.function(), record.iteration(), record.timeNanos(),
+                    record.allocatedBytes(), record.instsBefore(), record.instsAfter(), record.changed());
+        }
+        out.print("\n], \"iterations\": {");
+        boolean firstStage = true;
+        for (var entry : iterations.entrySet()) {
+            out.print(firstStage ? "\n" : ",\n");
+            firstStage = false;
+            out.printf("  \"%s\": {", entry.getKey());
+            boolean firstFunc = true;
+            for (var funcEntry : entry.getValue().entrySet()) {
+                out.printf("%s\"%s\": %d", firstFunc ? "" : ", ", funcEntry.getKey(), funcEntry.getValue());
+                firstFunc = false;
+            }
+            out.print("}");
+        }
+        out.print("\n}, \"frameSizes\": {");
+        boolean firstFunc = true;
+        for (var entry : frameSizes.entrySet()) {
+            out.printf("%s\n  \"%s\": {\"unshared\": %d, \"shared\": %d}", firstFunc ? "" : ",", entry.getKey(),
+                    entry.getValue()[0], entry.getValue()[1]);
+            firstFunc = false;
+        }
+        out.print("\n}}\n");
+    }
+}
@@ -120,7 +120,7 @@ public class ArrayIRType extends IRType {
     @Override
     public ArrayIRType clone() {
         var obj = new ArrayIRType(this.elmType, this.arrayDims);
-        obj.ptr(obj.getPtrNum());
+        obj.ptr(this.getPtrNum());
         return obj;
     }
 
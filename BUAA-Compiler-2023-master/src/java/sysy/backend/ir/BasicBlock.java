@@ -6,8 +6,9 @@ import java.io.PrintStream;
 import java.util.ArrayList;
 import java.util.List;
 
-public class BasicBlock extends Value {
-    private final List<Instruction> instructions = new ArrayList<>();
+public class BasicBlock extends Value implements IntrusiveList.Element<BasicBlock> {
+    private final IntrusiveList.Link<BasicBlock> link = new IntrusiveList.Link<>(this);
+    private final IntrusiveList<Instruction> instructions = new IntrusiveList<>();
     private final Function function;
     private int loopNum = 0;
 
@@ -28,19 +29,63 @@ public class BasicBlock extends Value {
         return function;
     }
 
+    @Override
+    public IntrusiveList.Link<BasicBlock> getLink() {
+        return link;
+    }
+
     public BasicBlock getNextBasicBlock() {
         var blocks = function.getBasicBlocks();
-        var idx = blocks.indexOf(this);
-        if (idx == -1 || idx == blocks.size()-1) {
-            return null;
-        } else {
-            return blocks.get(idx+1);
+        return blocks.contains(this) ? blocks.getNext(this) : null;
+    }
+
+    public BasicBlock getPrevBasicBlock() {
+        var blocks = function.getBasicBlocks();
+        return blocks.contains(this) ? blocks.getPrev(this) : null;
+    }
+
+    public Instruction getTerminator() {
+        return instructions.getLast();
+    }
+
+    // the instructions after pos are moved to a new block placed after this one, successors' phi insts are updated
+    public BasicBlock splitAfter(Instruction pos) {
+        var newBlock = function.createBasicBlockAfter(this);
+        newBlock.setLoopNum(loopNum);
+        for (var succ : getSuccessors()) {
+            for (var phiInst : succ.getPhiInsts()) {
+                phiInst.replaceIncomingBlock(this, newBlock);
+            }
+        }
+        for (var inst = instructions.getNext(pos); inst != null; inst = instructions.getNext(pos)) {
+            instructions.remove(inst);
+            newBlock.insertInstruction(inst);
+        }
+        return newBlock;
+    }
+
+    public void insertInstructionBefore(Instruction pos, Instruction inst) {
+        instructions.insertBefore(pos, inst);
+        inst.setBasicBlock(this);
+        if (inst instanceof BrInst) {
+            function.markCFGModified();
+        }
+    }
+
+    public void insertInstructionAfter(Instruction pos, Instruction inst) {
+        instructions.insertAfter(pos, inst);
+        inst.setBasicBlock(this);
+        if (inst instanceof BrInst) {
+            function.markCFGModified();
         }
     }
 
-    private Value insertInstruction(Instruction inst) {
+    public Value insertInstruction(Instruction inst) {
         instructions.add(inst);
         inst.setBasicBlock(this);
+        if (inst instanceof BrInst) {
+            function.markCFGModified();
+        }
         return inst;
     }
 
@@ -152,13 +197,30 @@ public class BasicBlock extends Value {
 
     public Value createAllocaInstAndInsertToFront(IRType type) {
         var allocaInst = new AllocaInst(type);
-        int insertPos;
-        for (insertPos = 0; insertPos < instructions.size() && instructions.get(insertPos) instanceof AllocaInst; insertPos++);
-        instructions.add(insertPos, allocaInst);
-        allocaInst.setBasicBlock(this);
+        insertAfterLeading(allocaInst, AllocaInst.class);
         return allocaInst;
     }
 
+    public Value createPhiInstAndInsertToFront(IRType type) {
+        var phiInst = new PhiInst(type);
+        insertAfterLeading(phiInst, PhiInst.class);
+        return phiInst;
+    }
+
+    // only the leading instructions of the same kind are walked
+    private void insertAfterLeading(Instruction inst, Class<? extends Instruction> kind) {
+        var pos = instructions.getFirst();
+        while (kind.isInstance(pos)) {
+            pos = instructions.getNext(pos);
+        }
+        if (pos == null) {
+            instructions.add(inst);
+        } else {
+            instructions.insertBefore(pos, inst);
+        }
+        inst.setBasicBlock(this);
+    }
+
     public Value createICmpInst(ICmpInstCond cond, Value left, Value right) {
         return insertInstruction(new ICmpInst(cond, left, right));
     }
@@ -179,10 +241,50 @@ public class BasicBlock extends Value {
         return insertInstruction(new ZExtInst(dstType, value));
     }
 
-    public List<Instruction> getInstructions() {
+    public IntrusiveList<Instruction> getInstructions() {
         return instructions;
     }
 
+    public List<PhiInst> getPhiInsts() {
+        List<PhiInst> phiInsts = new ArrayList<>();
+        for (var inst : instructions) {
+            if (!(inst instanceof PhiInst phiInst)) {
+                break;
+            }
+            phiInsts.add(phiInst);
+        }
+        return phiInsts;
+    }
+
+    // the terminator jumps to newSucc wherever it jumped to oldSucc
+    public void replaceSuccessor(BasicBlock oldSucc, BasicBlock newSucc) {
+        var brInst = (BrInst) getTerminator();
+        if (brInst.getDest() == oldSucc) {
+            brInst.setDest(newSucc);
+        }
+        if (brInst.getTrueBranch() == oldSucc) {
+            brInst.setTrueBranch(newSucc);
+        }
+        if (brInst.getFalseBranch() == oldSucc) {
+            brInst.setFalseBranch(newSucc);
+        }
+    }
+
+    public List<BasicBlock> getSuccessors() {
+        List<BasicBlock> successors = new ArrayList<>();
+        if (instructions.getLast() instanceof BrInst brInst) {
+            if (brInst.getDest() != null) {
+                successors.add(brInst.getDest());
+            } else {
+                successors.add(brInst.getTrueBranch());
+                if (brInst.getFalseBranch() != brInst.getTrueBranch()) {
+                    successors.add(brInst.getFalseBranch());
+                }
+            }
+        }
+        return successors;
+    }
+
     @Override
     public String getName() {
         return "%b" + super.getName();
@@ -7,7 +7,8 @@ import java.util.List;
 public class Function extends Value {
     private final IRType retType;
     private final List<FunctionArgument> arguments = new ArrayList<>();
-    private final List<BasicBlock> basicBlocks = new ArrayList<>();
+    private final IntrusiveList<BasicBlock> basicBlocks = new IntrusiveList<>();
+    private int cfgVersion = 0;
 
     public static Function BUILD_IN_GETINT = new Function(IRType.getInt(), List.of());
     public static Function BUILD_IN_PUTINT = new Function(IRType.getVoid(), List.of(IRType.getInt()));
@@ -30,11 +31,7 @@ public class Function extends Value {
     }
 
     public BasicBlock getFirstBasicBlock() {
-        if (basicBlocks.isEmpty()) {
-            return null;
-        } else {
-            return basicBlocks.get(0);
-        }
+        return basicBlocks.getFirst();
     }
 
     public IRType getRetType() {
@@ -45,16 +42,37 @@ public class Function extends Value {
         return arguments;
     }
 
-    public List<BasicBlock> getBasicBlocks() {
+    public IntrusiveList<BasicBlock> getBasicBlocks() {
         return basicBlocks;
     }
 
     public BasicBlock createBasicBlock() {
         var newBlock = new BasicBlock(this);
         basicBlocks.add(newBlock);
+        markCFGModified();
+        return newBlock;
+    }
+
+    public BasicBlock createBasicBlockAfter(BasicBlock pos) {
+        var newBlock = new BasicBlock(this);
+        basicBlocks.insertAfter(pos, newBlock);
+        markCFGModified();
         return newBlock;
     }
 
+    public void removeBasicBlock(BasicBlock block) {
+        basicBlocks.remove(block);
+        markCFGModified();
+    }
+
+    public int getCFGVersion() {
+        return cfgVersion;
+    }
+
+    public void markCFGModified() {
+        cfgVersion++;
+    }
+
     @Override
     public String getName() {
         return "@" + super.getName();
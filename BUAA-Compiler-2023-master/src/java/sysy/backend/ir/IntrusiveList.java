@@ -0,0 +1,253 @@
+package sysy.backend.ir;
+
+import java.util.AbstractSequentialList;
+import java.util.ConcurrentModificationException;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+
+// doubly linked list whose links are kept in the elements, so an element is found, unlinked or inserted next to
+// in O(1), a removed link keeps pointing to its old neighbours, which lets iterators go on after their current
+// element is removed by other means
+public class IntrusiveList<T extends IntrusiveList.Element<T>> extends AbstractSequentialList<T> {
+    public interface Element<T> {
+        Link<T> getLink();
+    }
+
+    public static final class Link<T> {
+        private final T value;
+        private Link<T> prev = null;
+        private Link<T> next = null;
+        private IntrusiveList<?> list = null;
+
+        public Link(T value) {
+            this.value = value;
+        }
+    }
+
+    private final Link<T> head = new Link<>(null); // sentinel of the circular list
+    private int size = 0;
+
+    public IntrusiveList() {
+        head.prev = head;
+        head.next = head;
+        head.list = this;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Element<?> element && element.getLink().list == this;
+    }
+
+    // null if the list is empty
+    public T getFirst() {
+        return head.next.value;
+    }
+
+    // null if the list is empty
+    public T getLast() {
+        return head.prev.value;
+    }
+
+    // null at the end, an element just removed from the list gives its old successor
+    public T getNext(T element) {
+        return getLiveLink(element.getLink().next, true).value;
+    }
+
+    // null at the beginning, an element just removed from the list gives its old predecessor
+    public T getPrev(T element) {
+        return getLiveLink(element.getLink().prev, false).value;
+    }
+
+    // follows the stale links of removed elements, each of them was removed later than the one before it, a link
+    // leading into another list means an element was moved there under the iteration
+    private Link<T> getLiveLink(Link<T> link, boolean forward) {
+        while (link.list != this) {
+            if (link.list != null) {
+                throw new ConcurrentModificationException();
+            }
+            link = forward ? link.next : link.prev;
+        }
+        return link;
+    }
+
+    @Override
+    public boolean add(T element) {
+        linkBefore(head, element);
+        return true;
+    }
+
+    public void addFirst(T element) {
+        linkBefore(head.next, element);
+    }
+
+    public void insertBefore(T pos, T element) {
+        checkContains(pos);
+        linkBefore(pos.getLink(), element);
+    }
+
+    public void insertAfter(T pos, T element) {
+        checkContains(pos);
+        linkBefore(pos.getLink().next, element);
+    }
+
+    public void replace(T oldElement, T newElement) {
+        checkContains(oldElement);
+        linkBefore(oldElement.getLink(), newElement);
+        unlink(oldElement.getLink());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(Object o) {
+        if (!contains(o)) {
+            return false;
+        }
+        unlink(((Element<T>) o).getLink());
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        while (head.next != head) {
+            unlink(head.next);
+        }
+    }
+
+    private void checkContains(T element) {
+        if (element.getLink().list != this) {
+            throw new RuntimeException(); // impossible
+        }
+    }
+
+    private void linkBefore(Link<T> pos, T element) {
+        var link = element.getLink();
+        if (link.list != null) { // an element is in one list at most
+            throw new RuntimeException(); // impossible
+        }
+        link.prev = pos.prev;
+        link.next = pos;
+        link.list = this;
+        pos.prev.next = link;
+        pos.prev = link;
+        size++;
+    }
+
+    private void unlink(Link<T> link) {
+        link.prev.next = link.next;
+        link.next.prev = link.prev;
+        link.list = null;
+        size--;
+    }
+
+    @Override
+    public ListIterator<T> listIterator(int index) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        var cursor = head;
+        if (index <= size / 2) {
+            for (int i = 0; i < index; i++) {
+                cursor = cursor.next;
+            }
+        } else {
+            for (int i = size; i > index; i--) {
+                cursor = cursor.prev;
+            }
+        }
+        return new Itr(cursor, index);
+    }
+
+    private class Itr implements ListIterator<T> {
+        private Link<T> cursor; // the element before the cursor, head at the beginning
+        private Link<T> lastReturned = null;
+        private int index;
+
+        private Itr(Link<T> cursor, int index) {
+            this.cursor = cursor;
+            this.index = index;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return getLiveLink(cursor.next, true) != head;
+        }
+
+        @Override
+        public T next() {
+            var link = getLiveLink(cursor.next, true);
+            if (link == head) {
+                throw new NoSuchElementException();
+            }
+            cursor = link;
+            lastReturned = link;
+            index++;
+            return link.value;
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return getLiveLink(cursor, false) != head;
+        }
+
+        @Override
+        public T previous() {
+            var link = getLiveLink(cursor, false);
+            if (link == head) {
+                throw new NoSuchElementException();
+            }
+            cursor = link.prev;
+            lastReturned = link;
+            index--;
+            return link.value;
+        }
+
+        @Override
+        public int nextIndex() {
+            return index;
+        }
+
+        @Override
+        public int previousIndex() {
+            return index - 1;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (lastReturned.list == IntrusiveList.this) {
+                unlink(lastReturned);
+            }
+            if (lastReturned == cursor) {
+                index--;
+            }
+            lastReturned = null;
+        }
+
+        @Override
+        public void set(T element) {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            replace(lastReturned.value, element);
+            if (lastReturned == cursor) {
+                cursor = element.getLink();
+            }
+            lastReturned = element.getLink();
+        }
+
+        @Override
+        public void add(T element) {
+            linkBefore(getLiveLink(cursor.next, true), element);
+            cursor = element.getLink();
+            lastReturned = null;
+            index++;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package sysy.backend.ir;
 
-public class Use {
+public class Use implements IntrusiveList.Element<Use> {
+    private final IntrusiveList.Link<Use> link = new IntrusiveList.Link<>(this);
     private final User user;
     private Value value;
     private int pos;
@@ -11,6 +12,11 @@ public class Use {
         this.pos = pos;
     }
 
+    @Override
+    public IntrusiveList.Link<Use> getLink() {
+        return link;
+    }
+
     public User getUser() {
         return user;
     }
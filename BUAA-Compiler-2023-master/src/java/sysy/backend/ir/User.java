@@ -5,15 +5,14 @@ import java.util.List;
 
 public abstract class User extends Value {
     protected final List<Value> operands = new ArrayList<>();
+    private final List<Use> operandUses = new ArrayList<>(); // null for null operands, removed in O(1) by the value
 
     public User(IRType type, Value... operands) {
         super(type);
 
         int pos = 0;
         for (var op : operands) {
-            if (op != null) {
-                op.addUse(this, pos);
-            }
+            operandUses.add(op != null ? op.addUse(this, pos) : null);
             this.operands.add(op);
             pos++;
         }
@@ -24,6 +23,33 @@ public abstract class User extends Value {
     }
 
     public void replaceOperand(int pos, Value newOperand) {
+        var oldOperand = operands.get(pos);
+        if (oldOperand != null) {
+            oldOperand.removeUse(operandUses.get(pos));
+        }
+        operandUses.set(pos, newOperand != null ? newOperand.addUse(this, pos) : null);
         operands.set(pos, newOperand);
     }
+
+    protected void addOperand(Value operand) {
+        operandUses.add(operand != null ? operand.addUse(this, operands.size()) : null);
+        operands.add(operand);
+    }
+
+    protected void removeOperand(int pos) {
+        removeOperandUses();
+        operands.remove(pos);
+        operandUses.clear();
+        for (int i = 0; i < operands.size(); i++) {
+            operandUses.add(operands.get(i) != null ? operands.get(i).addUse(this, i) : null);
+        }
+    }
+
+    public void removeOperandUses() {
+        for (int i = 0; i < operands.size(); i++) {
+            if (operands.get(i) != null) {
+                operands.get(i).removeUse(operandUses.get(i));
+            }
+        }
+    }
 }
@@ -1,12 +1,11 @@
 package sysy.backend.ir;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public abstract class Value {
     private String name = null;
     private final IRType type;
-    private final List<Use> useList = new ArrayList<>();
+    private final IntrusiveList<Use> useList = new IntrusiveList<>();
 
     public Value(IRType type) {
         this.type = type;
@@ -23,8 +22,14 @@ public abstract class Value {
         return name;
     }
 
-    public void addUse(User user, int pos) {
-        useList.add(new Use(user, this, pos));
+    public Use addUse(User user, int pos) {
+        var use = new Use(user, this, pos);
+        useList.add(use);
+        return use;
+    }
+
+    public void removeUse(Use use) {
+        useList.remove(use);
     }
 
     public List<Use> getUseList() {
@@ -30,14 +30,23 @@ public class BrInst extends Instruction {
 
     public void setTrueBranch(BasicBlock trueBranch) {
         this.trueBranch = trueBranch;
+        markCFGModified();
     }
 
     public void setFalseBranch(BasicBlock falseBranch) {
         this.falseBranch = falseBranch;
+        markCFGModified();
     }
 
     public void setDest(BasicBlock dest) {
         this.dest = dest;
+        markCFGModified();
+    }
+
+    private void markCFGModified() {
+        if (getBasicBlock() != null) {
+            getBasicBlock().getFunction().markCFGModified();
+        }
     }
 
     public Value getCond() {
@@ -6,5 +6,38 @@ public enum ICmpInstCond {
     SLT, // signed less than
     SGT, // signed greater than
     SLE, // signed less equal
-    SGE, // signed greater equal
+    SGE; // signed greater equal
+
+    public boolean evaluate(int left, int right) {
+        return switch (this) {
+            case NE -> left != right;
+            case EQ -> left == right;
+            case SLT -> left < right;
+            case SGT -> left > right;
+            case SLE -> left <= right;
+            case SGE -> left >= right;
+        };
+    }
+
+    // the condition of b op a for a op b
+    public ICmpInstCond swapped() {
+        return switch (this) {
+            case NE, EQ -> this;
+            case SLT -> SGT;
+            case SGT -> SLT;
+            case SLE -> SGE;
+            case SGE -> SLE;
+        };
+    }
+
+    public ICmpInstCond negated() {
+        return switch (this) {
+            case NE -> EQ;
+            case EQ -> NE;
+            case SLT -> SGE;
+            case SGE -> SLT;
+            case SGT -> SLE;
+            case SLE -> SGT;
+        };
+    }
 }
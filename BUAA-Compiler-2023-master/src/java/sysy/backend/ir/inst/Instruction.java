@@ -2,12 +2,15 @@ package sysy.backend.ir.inst;
 
 import sysy.backend.ir.BasicBlock;
 import sysy.backend.ir.IRType;
+import sysy.backend.ir.IntrusiveList;
 import sysy.backend.ir.User;
 import sysy.backend.ir.Value;
 
 import java.io.PrintStream;
+import java.util.ArrayList;
 
-public abstract class Instruction extends User {
+public abstract class Instruction extends User implements IntrusiveList.Element<Instruction> {
+    private final IntrusiveList.Link<Instruction> link = new IntrusiveList.Link<>(this);
     private BasicBlock basicBlock;
 
     public Instruction(IRType type, Value... operands) {
@@ -22,24 +25,44 @@ public abstract class Instruction extends User {
         this.basicBlock = basicBlock;
     }
 
+    @Override
+    public IntrusiveList.Link<Instruction> getLink() {
+        return link;
+    }
+
+    // null if this is the last one, also works right after this is removed from its block
+    public Instruction getNextInstruction() {
+        return basicBlock.getInstructions().getNext(this);
+    }
+
+    // null if this is the first one, also works right after this is removed from its block
+    public Instruction getPrevInstruction() {
+        return basicBlock.getInstructions().getPrev(this);
+    }
+
     public void replaceAllUseWith(Value newValue, boolean needInsert) {
-        var idx = basicBlock.getInstructions().indexOf(this);
-        if (idx < 0) {
+        var insts = basicBlock.getInstructions();
+        if (!insts.contains(this)) {
             throw new RuntimeException(); // impossible
         }
+        if (this instanceof BrInst || newValue instanceof BrInst) {
+            basicBlock.getFunction().markCFGModified();
+        }
         if (needInsert) {
             if (newValue instanceof Instruction newInst) {
-                basicBlock.getInstructions().set(idx, newInst);
+                insts.replace(this, newInst);
+                newInst.setBasicBlock(basicBlock);
             } else {
                 throw new RuntimeException();
             }
         } else {
-            basicBlock.getInstructions().remove(idx);
+            insts.remove(this);
         }
 
-        for (var use : getUseList()) {
+        for (var use : new ArrayList<>(getUseList())) {
             use.getUser().replaceOperand(use.getPos(), newValue);
         }
+        removeOperandUses();
     }
 
     @Override
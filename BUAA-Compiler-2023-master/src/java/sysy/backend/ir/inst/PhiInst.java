@@ -0,0 +1,63 @@
+package sysy.backend.ir.inst;
+
+import sysy.backend.ir.BasicBlock;
+import sysy.backend.ir.IRType;
+import sysy.backend.ir.Value;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PhiInst extends Instruction {
+    private final List<BasicBlock> incomingBlocks = new ArrayList<>();
+
+    public PhiInst(IRType type) {
+        super(type);
+    }
+
+    public void addIncoming(Value value, BasicBlock block) {
+        addOperand(value);
+        incomingBlocks.add(block);
+    }
+
+    public void removeIncoming(BasicBlock block) {
+        var idx = incomingBlocks.indexOf(block);
+        if (idx < 0) {
+            return;
+        }
+        removeOperand(idx);
+        incomingBlocks.remove(idx);
+    }
+
+    public void replaceIncomingBlock(BasicBlock oldBlock, BasicBlock newBlock) {
+        var idx = incomingBlocks.indexOf(oldBlock);
+        if (idx >= 0) {
+            incomingBlocks.set(idx, newBlock);
+        }
+    }
+
+    public List<BasicBlock> getIncomingBlocks() {
+        return incomingBlocks;
+    }
+
+    public List<Value> getIncomingValues() {
+        return getOperands();
+    }
+
+    public Value getIncomingValue(BasicBlock block) {
+        var idx = incomingBlocks.indexOf(block);
+        return idx < 0 ? null : getOperands().get(idx);
+    }
+
+    @Override
+    public void dump(PrintStream out) {
+        out.printf("  %s = phi %s ", getName(), getType());
+        for (int i = 0; i < incomingBlocks.size(); i++) {
+            if (i != 0) {
+                out.print(", ");
+            }
+            out.printf("[ %s, %s ]", getOperands().get(i).getName(), incomingBlocks.get(i).getName());
+        }
+        out.print("\n");
+    }
+}
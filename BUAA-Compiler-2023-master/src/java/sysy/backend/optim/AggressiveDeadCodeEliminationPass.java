@@ -0,0 +1,116 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.BasicBlock;
+import sysy.backend.ir.Function;
+import sysy.backend.ir.inst.*;
+
+import java.util.*;
+
+// dead code elimination which assumes branches are dead until an useful instruction is control dependent on them,
+// a dead conditional branch jumps to its immediate post dominator directly and the skipped blocks are removed
+public class AggressiveDeadCodeEliminationPass implements Pass {
+    private PostDominatorAnalyzer postDomAnalyzer;
+    private final Set<Instruction> usefulSet = new HashSet<>();
+    private final Set<BasicBlock> usefulBlocks = new HashSet<>(); // blocks whose control dependences are marked
+    private final Queue<Instruction> workList = new ArrayDeque<>();
+
+    @Override
+    public String getName() {
+        return "aggressive-dead-code-elimination";
+    }
+
+    @Override
+    public Set<Class<?>> getRequiredAnalyses() {
+        return Set.of(PostDominatorAnalyzer.class);
+    }
+
+    @Override
+    public boolean passFunc(Function func) {
+        postDomAnalyzer = AnalysisManager.getInstance().getPostDominatorAnalyzer(func);
+        usefulSet.clear();
+        usefulBlocks.clear();
+
+        for (var block : func.getBasicBlocks()) {
+            for (var inst : block.getInstructions()) {
+                if (inst instanceof ReturnInst
+                        || inst instanceof CallInst
+                        || inst instanceof StoreInst
+                        || inst instanceof BrInst brInst && !canBypass(brInst)) {
+                    mark(inst);
+                }
+            }
+        }
+        while (!workList.isEmpty()) {
+            var inst = workList.poll();
+            for (var operand : inst.getOperands()) {
+                if (operand instanceof Instruction instOperand) {
+                    mark(instOperand);
+                }
+            }
+            if (inst instanceof PhiInst phiInst) {
+                for (var incomingBlock : phiInst.getIncomingBlocks()) {
+                    mark(incomingBlock.getTerminator());
+                }
+            }
+            if (usefulBlocks.add(inst.getBasicBlock())) {
+                for (var block : postDomAnalyzer.getControlDependences(inst.getBasicBlock())) {
+                    mark(block.getTerminator());
+                }
+            }
+        }
+
+        boolean changed = false;
+        for (var block : func.getBasicBlocks()) {
+            changed |= block.getInstructions().removeIf(inst -> {
+                if (usefulSet.contains(inst) || inst instanceof BrInst) {
+                    return false;
+                }
+                inst.removeOperandUses();
+                return true;
+            });
+        }
+
+        boolean cfgChanged = false;
+        for (var block : func.getBasicBlocks()) {
+            if (!(block.getTerminator() instanceof BrInst brInst)
+                    || brInst.getCond() == null || usefulSet.contains(brInst)) {
+                continue;
+            }
+            var newBrInst = new BrInst(postDomAnalyzer.getImmediatePostDominator(block));
+            block.getInstructions().replace(brInst, newBrInst);
+            newBrInst.setBasicBlock(block);
+            brInst.removeOperandUses();
+            cfgChanged = true;
+        }
+        if (cfgChanged) {
+            func.markCFGModified();
+            SimplifyCFGPass.removeUnreachableBlocks(func);
+        }
+        return changed || cfgChanged;
+    }
+
+    // unconditional branches are kept anyway, a conditional one can only jump to its immediate post dominator
+    // if that block has no phi insts to fill, and if no successor never returns, or an infinite loop may be skipped
+    private boolean canBypass(BrInst brInst) {
+        if (brInst.getCond() == null) {
+            return true;
+        }
+        var block = brInst.getBasicBlock();
+        var ipdom = postDomAnalyzer.getImmediatePostDominator(block);
+        if (!postDomAnalyzer.reachesExit(block) || ipdom == null || !ipdom.getPhiInsts().isEmpty()) {
+            return false;
+        }
+        for (var succ : block.getSuccessors()) {
+            if (!postDomAnalyzer.reachesExit(succ)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void mark(Instruction inst) {
+        if (inst != null && usefulSet.add(inst)) {
+            workList.add(inst);
+        }
+    }
+}
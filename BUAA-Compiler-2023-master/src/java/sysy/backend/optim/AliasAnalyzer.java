@@ -0,0 +1,273 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.*;
+import sysy.backend.ir.Module;
+import sysy.backend.ir.inst.*;
+
+import java.util.*;
+
+// a pointer is an object plus a byte offset, which is a constant plus values times their strides, two pointers
+// into different objects never alias, neither do two into one object with the same values and constants apart by
+// an element, the memory a call may read or write is summarized per function callees first
+public class AliasAnalyzer {
+    private static final int ELEMENT_SIZE = 4;
+
+    private final Module module;
+    private final Map<Function, Summary> summaries = new HashMap<>();
+
+    public enum AliasResult {
+        NO_ALIAS,
+        MAY_ALIAS,
+        MUST_ALIAS,
+    }
+
+    // terms map values to the bytes each of them moves the pointer
+    public record Location(Value base, int offset, Map<Value, Integer> terms) {}
+
+    // objects of the caller's view a function reads or writes, arguments by their positions
+    private static class Summary {
+        private final Set<GlobalValue> modGlobals = new HashSet<>();
+        private final Set<GlobalValue> refGlobals = new HashSet<>();
+        private final Set<Integer> modArgs = new HashSet<>();
+        private final Set<Integer> refArgs = new HashSet<>();
+        private boolean modUnknown = false; // through a pointer whose object is not known
+        private boolean refUnknown = false;
+
+        private int size() {
+            return modGlobals.size() + refGlobals.size() + modArgs.size() + refArgs.size()
+                    + (modUnknown ? 1 : 0) + (refUnknown ? 1 : 0);
+        }
+    }
+
+    public AliasAnalyzer(Module module) {
+        this.module = module;
+    }
+
+    // passes only remove, move or duplicate memory accesses, so the summaries stay conservative after them
+    public void analyze() {
+        var callGraph = new CallGraphAnalyzer(module);
+        callGraph.analyze();
+        for (var component : callGraph.getComponents()) {
+            component.forEach(func -> summaries.put(func, new Summary()));
+            boolean changed = true;
+            while (changed) { // summaries only grow, a recursive cycle is iterated until they stop
+                changed = false;
+                for (var func : component) {
+                    changed |= summarize(func);
+                }
+            }
+        }
+    }
+
+    private boolean summarize(Function func) {
+        var summary = summaries.get(func);
+        int oldSize = summary.size();
+        for (var block : func.getBasicBlocks()) {
+            for (var inst : block.getInstructions()) {
+                if (inst instanceof StoreInst storeInst) {
+                    addAccess(summary, func, getBaseObject(storeInst.getPtr()), true);
+                } else if (inst instanceof LoadInst loadInst) {
+                    addAccess(summary, func, getBaseObject(loadInst.getPtr()), false);
+                } else if (inst instanceof CallInst callInst && summaries.containsKey(callInst.getFunc())) {
+                    var callee = summaries.get(callInst.getFunc());
+                    summary.modGlobals.addAll(callee.modGlobals);
+                    summary.refGlobals.addAll(callee.refGlobals);
+                    summary.modUnknown |= callee.modUnknown;
+                    summary.refUnknown |= callee.refUnknown;
+                    for (int i : callee.modArgs) {
+                        addAccess(summary, func, getBaseObject(callInst.getParams().get(i)), true);
+                    }
+                    for (int i : callee.refArgs) {
+                        addAccess(summary, func, getBaseObject(callInst.getParams().get(i)), false);
+                    }
+                }
+            }
+        }
+        return summary.size() != oldSize;
+    }
+
+    private static void addAccess(Summary summary, Function func, Value base, boolean mod) {
+        if (base instanceof AllocaInst) {
+            return; // not visible to the caller
+        }
+        if (base instanceof GlobalValue globalValue) {
+            (mod ? summary.modGlobals : summary.refGlobals).add(globalValue);
+        } else if (base instanceof FunctionArgument argument && func.getArguments().contains(argument)) {
+            (mod ? summary.modArgs : summary.refArgs).add(func.getArguments().indexOf(argument));
+        } else if (mod) {
+            summary.modUnknown = true;
+        } else {
+            summary.refUnknown = true;
+        }
+    }
+
+    public AliasResult alias(Value ptr1, Value ptr2) {
+        if (ptr1 == ptr2) {
+            return AliasResult.MUST_ALIAS;
+        }
+        return alias(getLocation(ptr1), getLocation(ptr2));
+    }
+
+    public AliasResult alias(Location location1, Location location2) {
+        if (location1.base() != location2.base()) {
+            return mayAliasObjects(location1.base(), location2.base()) ? AliasResult.MAY_ALIAS : AliasResult.NO_ALIAS;
+        }
+        if (!location1.terms().equals(location2.terms())) {
+            return AliasResult.MAY_ALIAS;
+        }
+        int distance = Math.abs(location1.offset() - location2.offset());
+        if (distance == 0) {
+            return AliasResult.MUST_ALIAS;
+        }
+        return distance >= ELEMENT_SIZE ? AliasResult.NO_ALIAS : AliasResult.MAY_ALIAS;
+    }
+
+    // a pointer from the caller never points to a local alloca, but may point to a global
+    private static boolean mayAliasObjects(Value base1, Value base2) {
+        if (base1 == base2) {
+            return true;
+        }
+        if (isIdentifiedObject(base1) && isIdentifiedObject(base2)) {
+            return false;
+        }
+        return !(base1 instanceof AllocaInst && base2 instanceof FunctionArgument
+                || base1 instanceof FunctionArgument && base2 instanceof AllocaInst);
+    }
+
+    public boolean mayModify(CallInst callInst, Value ptr) {
+        return mayAccess(callInst, ptr, true);
+    }
+
+    public boolean mayRef(CallInst callInst, Value ptr) {
+        return mayAccess(callInst, ptr, false);
+    }
+
+    private boolean mayAccess(CallInst callInst, Value ptr, boolean mod) {
+        var summary = summaries.get(callInst.getFunc());
+        if (summary == null) {
+            return false; // build-in functions only do io
+        }
+        var base = getBaseObject(ptr);
+        if (mod ? summary.modUnknown : summary.refUnknown) {
+            return true;
+        }
+        for (var globalValue : mod ? summary.modGlobals : summary.refGlobals) {
+            if (mayAliasObjects(globalValue, base)) {
+                return true;
+            }
+        }
+        for (int i : mod ? summary.modArgs : summary.refArgs) {
+            if (mayAliasObjects(getBaseObject(callInst.getParams().get(i)), base)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the objects of the caller the call may write to, with null for memory not known
+    public Set<Value> getModifiedObjects(CallInst callInst) {
+        var summary = summaries.get(callInst.getFunc());
+        Set<Value> objects = new HashSet<>();
+        if (summary == null) {
+            return objects;
+        }
+        objects.addAll(summary.modGlobals);
+        for (int i : summary.modArgs) {
+            objects.add(getBaseObject(callInst.getParams().get(i)));
+        }
+        if (summary.modUnknown) {
+            objects.add(null);
+        }
+        return objects;
+    }
+
+    public static Location getLocation(Value ptr) {
+        int offset = 0;
+        Map<Value, Integer> terms = new HashMap<>(0);
+        while (ptr instanceof GetElementPtrInst gepInst) {
+            var dims = gepInst.getElementBase().getType().getArrayDims();
+            var offsets = gepInst.getOffsets();
+            int stride = ELEMENT_SIZE;
+            for (var dim : dims) {
+                stride *= dim;
+            }
+            for (int i = 0; i < offsets.size(); i++) {
+                offset += addTerms(terms, offsets.get(i), stride);
+                if (i < dims.size()) {
+                    stride /= dims.get(i);
+                }
+            }
+            ptr = gepInst.getElementBase();
+        }
+        var base = getBaseObject(ptr);
+        if (base != ptr) { // a pointer phi moving through one object
+            terms.merge(ptr, 1, Integer::sum);
+        }
+        return new Location(base, offset, terms);
+    }
+
+    // adds the index times the stride to the terms, returning its constant part
+    private static int addTerms(Map<Value, Integer> terms, Value index, int stride) {
+        int constant = 0;
+        while (index instanceof BinaryInst binaryInst) {
+            if (binaryInst.getOp() == BinaryInstOp.ADD && binaryInst.getRight() instanceof ImmediateValue immediate) {
+                constant += immediate.getValue();
+                index = binaryInst.getLeft();
+            } else if (binaryInst.getOp() == BinaryInstOp.ADD && binaryInst.getLeft() instanceof ImmediateValue immediate) {
+                constant += immediate.getValue();
+                index = binaryInst.getRight();
+            } else if (binaryInst.getOp() == BinaryInstOp.SUB && binaryInst.getRight() instanceof ImmediateValue immediate) {
+                constant -= immediate.getValue();
+                index = binaryInst.getLeft();
+            } else {
+                break;
+            }
+        }
+        if (index instanceof ImmediateValue immediate) {
+            constant += immediate.getValue();
+        } else {
+            terms.merge(index, stride, (a, b) -> a + b == 0 ? null : a + b);
+        }
+        return constant * stride;
+    }
+
+    // the alloca, global or argument the pointer is computed from, pointer phis left by strength reduction are
+    // followed as long as they all come from one object, otherwise the pointer itself is returned
+    public static Value getBaseObject(Value ptr) {
+        ptr = stripGEPs(ptr);
+        if (!(ptr instanceof PhiInst)) {
+            return ptr;
+        }
+        Value base = null;
+        Set<PhiInst> visited = new HashSet<>();
+        Deque<PhiInst> workList = new ArrayDeque<>();
+        workList.push((PhiInst) ptr);
+        visited.add((PhiInst) ptr);
+        while (!workList.isEmpty()) {
+            for (var incoming : workList.pop().getIncomingValues()) {
+                incoming = stripGEPs(incoming);
+                if (incoming instanceof PhiInst phiInst) {
+                    if (visited.add(phiInst)) {
+                        workList.push(phiInst);
+                    }
+                } else if (base == null || base == incoming) {
+                    base = incoming;
+                } else {
+                    return ptr;
+                }
+            }
+        }
+        return base == null ? ptr : base;
+    }
+
+    private static Value stripGEPs(Value ptr) {
+        while (ptr instanceof GetElementPtrInst gepInst) {
+            ptr = gepInst.getElementBase();
+        }
+        return ptr;
+    }
+
+    public static boolean isIdentifiedObject(Value base) {
+        return base instanceof AllocaInst || base instanceof GlobalValue;
+    }
+}
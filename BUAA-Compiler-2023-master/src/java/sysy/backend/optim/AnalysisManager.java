@@ -0,0 +1,136 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.Function;
+import sysy.backend.ir.Module;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+// caches control flow analyses per function, results are dropped once the function's CFG is modified, the alias
+// analysis of the module is kept until the cache is cleared
+public class AnalysisManager {
+    public static final Set<Class<?>> CFG_ANALYSES = Set.of(ControlFlowAnalyzer.class, DominatorAnalyzer.class,
+            PostDominatorAnalyzer.class, LoopAnalyzer.class);
+
+    private static final AnalysisManager instance = new AnalysisManager();
+    private final Map<Function, FunctionAnalyses> cache = new HashMap<>();
+    private AliasAnalyzer aliasAnalyzer = null;
+    private Module aliasAnalyzedModule = null;
+
+    private static class FunctionAnalyses {
+        private final int cfgVersion;
+        private ControlFlowAnalyzer cfg = null;
+        private DominatorAnalyzer domAnalyzer = null;
+        private PostDominatorAnalyzer postDomAnalyzer = null;
+        private LoopAnalyzer loopAnalyzer = null;
+
+        private FunctionAnalyses(int cfgVersion) {
+            this.cfgVersion = cfgVersion;
+        }
+    }
+
+    private AnalysisManager() {}
+
+    public static AnalysisManager getInstance() {
+        return instance;
+    }
+
+    private FunctionAnalyses getAnalyses(Function func) {
+        var analyses = cache.get(func);
+        if (analyses == null || analyses.cfgVersion != func.getCFGVersion()) {
+            analyses = new FunctionAnalyses(func.getCFGVersion());
+            cache.put(func, analyses);
+        }
+        return analyses;
+    }
+
+    public ControlFlowAnalyzer getControlFlowAnalyzer(Function func) {
+        var analyses = getAnalyses(func);
+        if (analyses.cfg == null) {
+            analyses.cfg = new ControlFlowAnalyzer(func);
+            analyses.cfg.analyze();
+        }
+        return analyses.cfg;
+    }
+
+    public DominatorAnalyzer getDominatorAnalyzer(Function func) {
+        var analyses = getAnalyses(func);
+        if (analyses.domAnalyzer == null) {
+            analyses.domAnalyzer = new DominatorAnalyzer(getControlFlowAnalyzer(func));
+            analyses.domAnalyzer.analyze();
+        }
+        return analyses.domAnalyzer;
+    }
+
+    public PostDominatorAnalyzer getPostDominatorAnalyzer(Function func) {
+        var analyses = getAnalyses(func);
+        if (analyses.postDomAnalyzer == null) {
+            analyses.postDomAnalyzer = new PostDominatorAnalyzer(getControlFlowAnalyzer(func));
+            analyses.postDomAnalyzer.analyze();
+        }
+        return analyses.postDomAnalyzer;
+    }
+
+    public LoopAnalyzer getLoopAnalyzer(Function func) {
+        var analyses = getAnalyses(func);
+        if (analyses.loopAnalyzer == null) {
+            analyses.loopAnalyzer = new LoopAnalyzer(getControlFlowAnalyzer(func), getDominatorAnalyzer(func));
+            analyses.loopAnalyzer.analyze();
+        }
+        return analyses.loopAnalyzer;
+    }
+
+    public AliasAnalyzer getAliasAnalyzer(Module module) {
+        if (aliasAnalyzer == null || aliasAnalyzedModule != module) {
+            aliasAnalyzer = new AliasAnalyzer(module);
+            aliasAnalyzer.analyze();
+            aliasAnalyzedModule = module;
+        }
+        return aliasAnalyzer;
+    }
+
+    public <T> T getAnalysis(Class<T> analysis, Function func) {
+        if (analysis == ControlFlowAnalyzer.class) {
+            return analysis.cast(getControlFlowAnalyzer(func));
+        } else if (analysis == DominatorAnalyzer.class) {
+            return analysis.cast(getDominatorAnalyzer(func));
+        } else if (analysis == PostDominatorAnalyzer.class) {
+            return analysis.cast(getPostDominatorAnalyzer(func));
+        } else if (analysis == LoopAnalyzer.class) {
+            return analysis.cast(getLoopAnalyzer(func));
+        }
+        throw new RuntimeException(); // impossible
+    }
+
+    // for CFG changes which are not noticed by Function.markCFGModified
+    public void invalidate(Function func) {
+        cache.remove(func);
+    }
+
+    public void invalidate(Function func, Set<Class<?>> preserved) {
+        var analyses = cache.get(func);
+        if (analyses == null) {
+            return;
+        }
+        // analyses depending on an invalidated one are invalidated too
+        if (!preserved.contains(ControlFlowAnalyzer.class)) {
+            analyses.cfg = null;
+        }
+        if (analyses.cfg == null || !preserved.contains(DominatorAnalyzer.class)) {
+            analyses.domAnalyzer = null;
+        }
+        if (analyses.cfg == null || !preserved.contains(PostDominatorAnalyzer.class)) {
+            analyses.postDomAnalyzer = null;
+        }
+        if (analyses.domAnalyzer == null || !preserved.contains(LoopAnalyzer.class)) {
+            analyses.loopAnalyzer = null;
+        }
+    }
+
+    public void clear() {
+        cache.clear();
+        aliasAnalyzer = null;
+        aliasAnalyzedModule = null;
+    }
+}
@@ -0,0 +1,123 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.Function;
+import sysy.backend.ir.Module;
+import sysy.backend.ir.inst.CallInst;
+
+import java.util.*;
+
+// calls between the functions of a module, build-in functions are left out
+public class CallGraphAnalyzer {
+    private final Module module;
+    private final Map<Function, Set<Function>> callees = new HashMap<>();
+    private final Map<Function, List<CallInst>> callSites = new HashMap<>();
+    private final List<Function> bottomUpOrder = new ArrayList<>();
+    private final List<List<Function>> components = new ArrayList<>();
+    private final Set<Function> recursiveFunctions = new HashSet<>();
+
+    public CallGraphAnalyzer(Module module) {
+        this.module = module;
+    }
+
+    public void analyze() {
+        for (var func : module.getFunctions()) {
+            callees.put(func, new LinkedHashSet<>());
+            callSites.put(func, new ArrayList<>());
+        }
+        for (var func : module.getFunctions()) {
+            for (var block : func.getBasicBlocks()) {
+                for (var inst : block.getInstructions()) {
+                    if (inst instanceof CallInst callInst && callSites.containsKey(callInst.getFunc())) {
+                        callees.get(func).add(callInst.getFunc());
+                        callSites.get(callInst.getFunc()).add(callInst);
+                    }
+                }
+            }
+        }
+        buildBottomUpOrder();
+    }
+
+    // "Depth-First Search and Linear Graph Algorithms", Tarjan, strongly connected components are found callees first
+    private void buildBottomUpOrder() {
+        Map<Function, Integer> indices = new HashMap<>();
+        Map<Function, Integer> lowLinks = new HashMap<>();
+        Deque<Function> sccStack = new ArrayDeque<>();
+        Set<Function> onStack = new HashSet<>();
+        Deque<Function> funcStack = new ArrayDeque<>();
+        Deque<Iterator<Function>> calleeStack = new ArrayDeque<>();
+
+        for (var root : module.getFunctions()) {
+            if (indices.containsKey(root)) {
+                continue;
+            }
+            indices.put(root, indices.size());
+            lowLinks.put(root, indices.get(root));
+            sccStack.push(root);
+            onStack.add(root);
+            funcStack.push(root);
+            calleeStack.push(callees.get(root).iterator());
+
+            while (!funcStack.isEmpty()) {
+                var func = funcStack.peek();
+                var funcCallees = calleeStack.peek();
+                if (funcCallees.hasNext()) {
+                    var callee = funcCallees.next();
+                    if (!indices.containsKey(callee)) {
+                        indices.put(callee, indices.size());
+                        lowLinks.put(callee, indices.get(callee));
+                        sccStack.push(callee);
+                        onStack.add(callee);
+                        funcStack.push(callee);
+                        calleeStack.push(callees.get(callee).iterator());
+                    } else if (onStack.contains(callee)) {
+                        lowLinks.put(func, Math.min(lowLinks.get(func), indices.get(callee)));
+                    }
+                    continue;
+                }
+
+                funcStack.pop();
+                calleeStack.pop();
+                if (!funcStack.isEmpty()) {
+                    var caller = funcStack.peek();
+                    lowLinks.put(caller, Math.min(lowLinks.get(caller), lowLinks.get(func)));
+                }
+                if (lowLinks.get(func).equals(indices.get(func))) {
+                    List<Function> scc = new ArrayList<>();
+                    Function member;
+                    do {
+                        member = sccStack.pop();
+                        onStack.remove(member);
+                        scc.add(member);
+                    } while (member != func);
+                    if (scc.size() > 1 || callees.get(func).contains(func)) {
+                        recursiveFunctions.addAll(scc);
+                    }
+                    bottomUpOrder.addAll(scc);
+                    components.add(scc);
+                }
+            }
+        }
+    }
+
+    // callees come before their callers except inside a recursive cycle
+    public List<Function> getBottomUpOrder() {
+        return bottomUpOrder;
+    }
+
+    // strongly connected components callees first, a function out of recursive cycles forms one by itself
+    public List<List<Function>> getComponents() {
+        return components;
+    }
+
+    public Set<Function> getCallees(Function func) {
+        return callees.get(func);
+    }
+
+    public List<CallInst> getCallSites(Function func) {
+        return callSites.get(func);
+    }
+
+    public boolean isRecursive(Function func) {
+        return recursiveFunctions.contains(func);
+    }
+}
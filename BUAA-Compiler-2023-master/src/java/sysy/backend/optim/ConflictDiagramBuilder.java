@@ -3,15 +3,14 @@ package sysy.backend.optim;
 import sysy.backend.ir.BasicBlock;
 import sysy.backend.ir.inst.AllocaInst;
 
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
 public class ConflictDiagramBuilder {
     private final ConflictDiagram diagram;
 
     public ConflictDiagramBuilder(List<AllocaInst> allocaInstList, Map<BasicBlock, Set<AllocaInst>> activeSets, Map<BasicBlock, Set<AllocaInst>> inSets) {
         var blocks = activeSets.keySet();
+        Set<AllocaInst> allocaInsts = new HashSet<>(allocaInstList);
 
         diagram = new ConflictDiagram(allocaInstList);
 
@@ -19,11 +18,11 @@ public class ConflictDiagramBuilder {
             var defSet = activeSets.get(block);
             var inSet = inSets.get(block);
             for (var def : defSet) {
-                if (!allocaInstList.contains(def)) {
+                if (!allocaInsts.contains(def)) {
                     continue;
                 }
                 for (var in : inSet) {
-                    if (!allocaInstList.contains(in)) {
+                    if (!allocaInsts.contains(in)) {
                         continue;
                     }
                     if (def != in) {
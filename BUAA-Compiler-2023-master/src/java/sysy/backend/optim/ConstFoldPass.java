@@ -1,45 +1,39 @@
 package sysy.backend.optim;
 
 import sysy.backend.ir.*;
-import sysy.backend.ir.Module;
 import sysy.backend.ir.inst.BinaryInst;
+import sysy.backend.ir.inst.BinaryInstOp;
 
-public class ConstFoldPass {
-    private final Module irModule;
+public class ConstFoldPass implements Pass {
     private boolean improve = false;
 
-    public ConstFoldPass(Module irModule) {
-        this.irModule = irModule;
+    @Override
+    public String getName() {
+        return "const-fold";
     }
 
-    public boolean isImprove() {
-        return improve;
-    }
-
-    public Module pass() {
-        for (var func : irModule.getFunctions()) {
-            passFunc(func);
-        }
-
-        return irModule;
-    }
-
-    private void passFunc(Function func) {
+    @Override
+    public boolean passFunc(Function func) {
+        improve = false;
         for (var block : func.getBasicBlocks()) {
             passBlock(block);
         }
+        return improve;
     }
 
     private void passBlock(BasicBlock block) {
-        var insts = block.getInstructions();
-        for (int i = 0; i < insts.size(); i++) {
-            var inst = insts.get(i);
+        for (var inst : block.getInstructions()) {
             if (inst instanceof BinaryInst binaryInst) {
                 Value valueToReplace = getValueToReplace(binaryInst);
                 if (valueToReplace != null) {
                     inst.replaceAllUseWith(valueToReplace, false);
                     improve = true;
-                    i--;
+                } else {
+                    var reassociated = reassociate(binaryInst);
+                    if (reassociated != null) {
+                        inst.replaceAllUseWith(reassociated, true);
+                        improve = true;
+                    }
                 }
             }
         }
@@ -114,6 +108,34 @@ public class ConstFoldPass {
         return valueToReplace;
     }
 
+    // (a + c1) + c2 = a + (c1 + c2), so that the chains left by unrolling are all based on the counter
+    private static BinaryInst reassociate(BinaryInst binaryInst) {
+        Integer addend = getImmediateAddend(binaryInst);
+        if (addend == null || !(getNonImmediateOperand(binaryInst) instanceof BinaryInst innerInst)) {
+            return null;
+        }
+        Integer innerAddend = getImmediateAddend(innerInst);
+        if (innerAddend == null) {
+            return null;
+        }
+        return new BinaryInst(BinaryInstOp.ADD, getNonImmediateOperand(innerInst), new ImmediateValue(addend + innerAddend));
+    }
+
+    // c for a + c, c + a and a - c
+    private static Integer getImmediateAddend(BinaryInst binaryInst) {
+        Integer ileft = tryGetImmediateValue(binaryInst.getLeft()), iright = tryGetImmediateValue(binaryInst.getRight());
+        if (binaryInst.getOp() == BinaryInstOp.ADD && (ileft == null) != (iright == null)) {
+            return ileft != null ? ileft : iright;
+        } else if (binaryInst.getOp() == BinaryInstOp.SUB && ileft == null && iright != null) {
+            return -iright;
+        }
+        return null;
+    }
+
+    private static Value getNonImmediateOperand(BinaryInst binaryInst) {
+        return binaryInst.getLeft() instanceof ImmediateValue ? binaryInst.getRight() : binaryInst.getLeft();
+    }
+
     private static Integer tryGetImmediateValue(Value value) {
         if (value instanceof ImmediateValue ivalue) {
             return ivalue.getValue();
@@ -1,45 +1,33 @@
 package sysy.backend.optim;
 
 import sysy.backend.ir.*;
-import sysy.backend.ir.Module;
 import sysy.backend.ir.inst.*;
 
 import java.util.HashMap;
 import java.util.Map;
 
-public class ConstPropagatePass {
-    private final Module irModule;
+public class ConstPropagatePass implements Pass {
     private final Map<Value, ImmediateValue> immediateMap = new HashMap<>();
     private boolean improve = false;
 
-    public ConstPropagatePass(Module irModule) {
-        this.irModule = irModule;
+    @Override
+    public String getName() {
+        return "const-propagate";
     }
 
-    public boolean isImprove() {
-        return improve;
-    }
-
-    public Module pass() {
-        for (var func : irModule.getFunctions()) {
-            passFunc(func);
-        }
-
-        return irModule;
-    }
-
-    private void passFunc(Function func) {
+    @Override
+    public boolean passFunc(Function func) {
+        improve = false;
         for (var block : func.getBasicBlocks()) {
             passBlock(block);
         }
+        return improve;
     }
 
     private void passBlock(BasicBlock block) {
         immediateMap.clear();
 
-        var insts = block.getInstructions();
-        for (int i = 0; i < insts.size(); i++) {
-            var inst = insts.get(i);
+        for (var inst : block.getInstructions()) {
             if (inst instanceof StoreInst storeInst) {
                 if (storeInst.getValue() instanceof ImmediateValue immediateValue
                         && storeInst.getPtr() instanceof AllocaInst allocaInst) {
@@ -51,7 +39,6 @@ public class ConstPropagatePass {
                 if (immediateMap.containsKey(loadInst.getPtr())) {
                     inst.replaceAllUseWith(immediateMap.get(loadInst.getPtr()), false);
                     improve = true;
-                    i--;
                 }
             }
         }
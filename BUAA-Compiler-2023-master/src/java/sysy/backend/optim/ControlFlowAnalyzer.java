@@ -0,0 +1,90 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.BasicBlock;
+import sysy.backend.ir.Function;
+
+import java.util.*;
+
+public class ControlFlowAnalyzer {
+    private final Function func;
+    private final Map<BasicBlock, List<BasicBlock>> successors = new HashMap<>();
+    private final Map<BasicBlock, List<BasicBlock>> predecessors = new HashMap<>();
+    private final List<BasicBlock> reversePostOrder = new ArrayList<>();
+    private final Map<BasicBlock, Integer> orderIndex = new HashMap<>();
+
+    public ControlFlowAnalyzer(Function func) {
+        this.func = func;
+    }
+
+    public void analyze() {
+        buildEdges();
+        buildReversePostOrder();
+    }
+
+    private void buildEdges() {
+        for (var block : func.getBasicBlocks()) {
+            successors.put(block, block.getSuccessors());
+            predecessors.put(block, new ArrayList<>());
+        }
+        for (var block : func.getBasicBlocks()) {
+            for (var succ : successors.get(block)) {
+                predecessors.get(succ).add(block);
+            }
+        }
+    }
+
+    private void buildReversePostOrder() {
+        List<BasicBlock> postOrder = new ArrayList<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        Stack<BasicBlock> blockStack = new Stack<>();
+        Stack<Iterator<BasicBlock>> succStack = new Stack<>();
+
+        var entry = func.getFirstBasicBlock();
+        visited.add(entry);
+        blockStack.push(entry);
+        succStack.push(successors.get(entry).iterator());
+        while (!blockStack.isEmpty()) {
+            var succIter = succStack.peek();
+            if (succIter.hasNext()) {
+                var succ = succIter.next();
+                if (visited.add(succ)) {
+                    blockStack.push(succ);
+                    succStack.push(successors.get(succ).iterator());
+                }
+            } else {
+                postOrder.add(blockStack.pop());
+                succStack.pop();
+            }
+        }
+
+        for (int i = postOrder.size()-1; i >= 0; i--) {
+            orderIndex.put(postOrder.get(i), reversePostOrder.size());
+            reversePostOrder.add(postOrder.get(i));
+        }
+    }
+
+    public Function getFunction() {
+        return func;
+    }
+
+    public List<BasicBlock> getSuccessors(BasicBlock block) {
+        return successors.get(block);
+    }
+
+    // including predecessors which are unreachable from the entry
+    public List<BasicBlock> getPredecessors(BasicBlock block) {
+        return predecessors.get(block);
+    }
+
+    public List<BasicBlock> getReversePostOrder() {
+        return reversePostOrder;
+    }
+
+    public boolean isReachable(BasicBlock block) {
+        return orderIndex.containsKey(block);
+    }
+
+    public int getOrderIndex(BasicBlock block) {
+        return orderIndex.get(block);
+    }
+}
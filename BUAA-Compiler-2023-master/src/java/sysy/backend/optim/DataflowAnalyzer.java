@@ -0,0 +1,177 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.BasicBlock;
+import sysy.backend.ir.Function;
+
+import java.util.*;
+
+// iterative dataflow over bitsets of densely numbered facts, blocks are visited by a worklist in reverse postorder
+// (postorder for backward analyses), subclasses give the facts and the gen/kill sets or their own transfer function
+public abstract class DataflowAnalyzer<T> {
+    protected final Function func;
+    protected final ControlFlowAnalyzer cfg;
+    private final List<T> facts = new ArrayList<>();
+    private final Map<T, Integer> factIndices = new HashMap<>();
+    private final List<BasicBlock> blockOrder = new ArrayList<>();
+    private final Map<BasicBlock, BitSet> genSets = new HashMap<>();
+    private final Map<BasicBlock, BitSet> killSets = new HashMap<>();
+    private final Map<BasicBlock, BitSet> inSets = new HashMap<>();
+    private final Map<BasicBlock, BitSet> outSets = new HashMap<>();
+
+    protected DataflowAnalyzer(Function func) {
+        this.func = func;
+        this.cfg = AnalysisManager.getInstance().getControlFlowAnalyzer(func);
+    }
+
+    protected abstract boolean isForward();
+
+    // union for may analyses, intersection for must analyses
+    protected abstract boolean isMay();
+
+    // numbers the facts and fills gen/kill sets
+    protected abstract void initialize();
+
+    protected int addFact(T fact) {
+        var index = factIndices.get(fact);
+        if (index == null) {
+            index = facts.size();
+            factIndices.put(fact, index);
+            facts.add(fact);
+        }
+        return index;
+    }
+
+    // -1 if not a fact
+    public int getIndex(T fact) {
+        return factIndices.getOrDefault(fact, -1);
+    }
+
+    public T getFact(int index) {
+        return facts.get(index);
+    }
+
+    public int getFactNum() {
+        return facts.size();
+    }
+
+    protected BitSet getGenSet(BasicBlock block) {
+        return genSets.computeIfAbsent(block, k -> new BitSet(facts.size()));
+    }
+
+    protected BitSet getKillSet(BasicBlock block) {
+        return killSets.computeIfAbsent(block, k -> new BitSet(facts.size()));
+    }
+
+    // facts holding at the entry of a block (exit for backward analyses) whatever its neighbours are
+    protected void addBoundaryFacts(BasicBlock block, BitSet value) {}
+
+    // result = gen | (value & ~kill)
+    protected BitSet transfer(BasicBlock block, BitSet value) {
+        var result = (BitSet) value.clone();
+        result.andNot(getKillSet(block));
+        result.or(getGenSet(block));
+        return result;
+    }
+
+    public void analyze() {
+        initialize();
+
+        blockOrder.addAll(cfg.getReversePostOrder());
+        for (var block : func.getBasicBlocks()) {
+            if (!cfg.isReachable(block)) {
+                blockOrder.add(block);
+            }
+        }
+        if (!isForward()) {
+            Collections.reverse(blockOrder);
+        }
+
+        for (var block : blockOrder) {
+            var initial = new BitSet(facts.size());
+            if (!isMay()) {
+                initial.set(0, facts.size());
+            }
+            inSets.put(block, (BitSet) initial.clone());
+            outSets.put(block, initial);
+        }
+
+        Map<BasicBlock, Integer> orderIndices = new HashMap<>();
+        for (int i = 0; i < blockOrder.size(); i++) {
+            orderIndices.put(blockOrder.get(i), i);
+        }
+        var worklist = new PriorityQueue<BasicBlock>(Comparator.comparingInt(orderIndices::get));
+        Set<BasicBlock> inWorklist = new HashSet<>(blockOrder);
+        worklist.addAll(blockOrder);
+
+        while (!worklist.isEmpty()) {
+            var block = worklist.poll();
+            inWorklist.remove(block);
+
+            List<BasicBlock> sources = isForward() ? cfg.getPredecessors(block) : cfg.getSuccessors(block);
+            if (isForward() && block == func.getFirstBasicBlock()) { // nothing holds at the entry
+                sources = List.of();
+            }
+            var meet = new BitSet(facts.size());
+            for (int i = 0; i < sources.size(); i++) {
+                var sourceValue = isForward() ? outSets.get(sources.get(i)) : inSets.get(sources.get(i));
+                if (i == 0) {
+                    meet.or(sourceValue);
+                } else if (isMay()) {
+                    meet.or(sourceValue);
+                } else {
+                    meet.and(sourceValue);
+                }
+            }
+            addBoundaryFacts(block, meet);
+
+            var result = transfer(block, meet);
+            if (isForward()) {
+                inSets.put(block, meet);
+            } else {
+                outSets.put(block, meet);
+            }
+            var oldResult = isForward() ? outSets.put(block, result) : inSets.put(block, result);
+            if (result.equals(oldResult)) {
+                continue;
+            }
+
+            for (var dependent : isForward() ? cfg.getSuccessors(block) : cfg.getPredecessors(block)) {
+                if (inWorklist.add(dependent)) {
+                    worklist.add(dependent);
+                }
+            }
+        }
+    }
+
+    public BitSet getIn(BasicBlock block) {
+        return inSets.get(block);
+    }
+
+    public BitSet getOut(BasicBlock block) {
+        return outSets.get(block);
+    }
+
+    protected Set<T> toSet(BitSet bits) {
+        Set<T> set = new LinkedHashSet<>();
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            set.add(facts.get(i));
+        }
+        return set;
+    }
+
+    protected Map<BasicBlock, Set<T>> toSets(Map<BasicBlock, BitSet> bitSets) {
+        Map<BasicBlock, Set<T>> sets = new HashMap<>();
+        for (var block : func.getBasicBlocks()) {
+            sets.put(block, toSet(bitSets.get(block)));
+        }
+        return sets;
+    }
+
+    public Map<BasicBlock, Set<T>> getInSets() {
+        return toSets(inSets);
+    }
+
+    public Map<BasicBlock, Set<T>> getOutSets() {
+        return toSets(outSets);
+    }
+}
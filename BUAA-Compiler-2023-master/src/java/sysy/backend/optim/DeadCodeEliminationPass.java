@@ -1,78 +1,57 @@
 package sysy.backend.optim;
 
-import sysy.backend.ir.BasicBlock;
 import sysy.backend.ir.Function;
-import sysy.backend.ir.Module;
 import sysy.backend.ir.inst.*;
 
+import java.util.ArrayDeque;
 import java.util.HashSet;
+import java.util.Queue;
 import java.util.Set;
 
-public class DeadCodeEliminationPass {
-    private final Module irModule;
-
-    public DeadCodeEliminationPass(Module irModule) {
-        this.irModule = irModule;
-    }
-
-    public Module pass() {
-        for (var func : irModule.getFunctions()) {
-            passFunc(func);
-        }
-
-        return irModule;
+// mark from the instructions with side effects along the operands, then sweep every block once
+public class DeadCodeEliminationPass implements Pass {
+    @Override
+    public String getName() {
+        return "dead-code-elimination";
     }
 
-    private void passFunc(Function func) {
-        Set<Instruction> initialUsefulSet = new HashSet<>();
+    @Override
+    public boolean passFunc(Function func) {
+        Set<Instruction> usefulSet = new HashSet<>();
+        Queue<Instruction> workList = new ArrayDeque<>();
 
         for (var block : func.getBasicBlocks()) {
             for (var inst : block.getInstructions()) {
                 if (inst instanceof ReturnInst
                         || inst instanceof BrInst
                         || inst instanceof CallInst
-                        || inst instanceof StoreInst) {
-                    initialUsefulSet.add(inst);
+                        || inst instanceof StoreInst) { // an alloca is kept by its users
+                    usefulSet.add(inst);
+                    workList.add(inst);
                 }
             }
         }
 
-        var usefulSet = getUsefulClosure(initialUsefulSet);
-        for (var block : func.getBasicBlocks()) {
-            var insts = block.getInstructions();
-            for (int i = 0; i < insts.size(); i++) {
-                var inst = insts.get(i);
-                if (!usefulSet.contains(inst) && !(inst instanceof AllocaInst)) {
-                    inst.replaceAllUseWith(null, false);
-                    i--;
+        while (!workList.isEmpty()) {
+            var inst = workList.poll();
+            for (var operand : inst.getOperands()) {
+                if (operand instanceof Instruction instOperand && usefulSet.add(instOperand)) { // phi insts may form a cycle
+                    workList.add(instOperand);
                 }
             }
         }
-    }
 
-    private Set<Instruction> getUsefulClosure(Set<Instruction> instSet) {
-        Set<Instruction> usefulSet = new HashSet<>();
-        for (var inst : instSet) {
-            usefulSet.addAll(getUsefulClosure(inst));
-        }
-        return usefulSet;
-    }
-
-    private Set<Instruction> getUsefulClosure(Instruction inst) {
-        Set<Instruction> usefulSet = new HashSet<>();
-        usefulSet.add(inst);
-        for (var operand : inst.getOperands()) {
-            if (operand instanceof Instruction instOperand) {
-                usefulSet.addAll(getUsefulClosure(instOperand));
-            }
-        }
-        return usefulSet;
-    }
-
-    private void passBlock(BasicBlock block) {
-        var insts = block.getInstructions();
-        for (int i = insts.size() - 1; i >= 0; i--) {
-            var inst = insts.get(i);
+        boolean changed = false;
+        for (var block : func.getBasicBlocks()) {
+            // the users of a dead instruction are dead as well, so only its own operand uses are left to drop
+            changed |= block.getInstructions().removeIf(inst -> {
+                if (usefulSet.contains(inst)) {
+                    return false;
+                }
+                inst.removeOperandUses();
+                return true;
+            });
         }
+        return changed;
     }
 }
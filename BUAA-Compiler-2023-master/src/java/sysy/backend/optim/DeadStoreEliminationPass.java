@@ -2,35 +2,35 @@ package sysy.backend.optim;
 
 import sysy.backend.ir.*;
 import sysy.backend.ir.Module;
-import sysy.backend.ir.inst.AllocaInst;
-import sysy.backend.ir.inst.LoadInst;
-import sysy.backend.ir.inst.StoreInst;
+import sysy.backend.ir.inst.*;
 
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
 
-public class DeadStoreEliminationPass {
-    private final Module irModule;
-    private Map<BasicBlock, Set<AllocaInst>> outSets;
+public class DeadStoreEliminationPass implements Pass {
+    private static final int MAX_OVERWRITTEN_LOCATIONS = 64; // stores looked back at for loads in a block
+
+    private final Module module;
+    private LiveVariableAnalyzer analyzer;
+    private AliasAnalyzer aliasAnalyzer;
     private Set<AllocaInst> varAllocaInstSet;
+    private boolean improve = false;
 
-    public DeadStoreEliminationPass(Module irModule) {
-        this.irModule = irModule;
+    public DeadStoreEliminationPass(Module module) {
+        this.module = module;
     }
 
-    public Module pass() {
-        for (var func : irModule.getFunctions()) {
-            passFunc(func);
-        }
-
-        return irModule;
+    @Override
+    public String getName() {
+        return "dead-store-elimination";
     }
 
-    private void passFunc(Function func) {
-        var analyzer = new LiveVariableAnalyzer(func);
+    @Override
+    public boolean passFunc(Function func) {
+        improve = false;
+
+        analyzer = new LiveVariableAnalyzer(func);
         analyzer.analyze();
-        outSets = analyzer.getOutSets();
+        aliasAnalyzer = AnalysisManager.getInstance().getAliasAnalyzer(module);
 
         varAllocaInstSet = new HashSet<>(func.getFirstBasicBlock().getInstructions()
                 .stream()
@@ -44,32 +44,97 @@ public class DeadStoreEliminationPass {
 
         for (var block : func.getBasicBlocks()) {
             passBlock(block);
+            removeOverwrittenStores(block);
         }
+        removeStoresNeverRead(func);
+        return improve;
     }
 
     private void passBlock(BasicBlock block) {
-        var outSet = outSets.get(block);
-        Set<AllocaInst> needStore = new HashSet<>(outSet);
-
-        var insts = block.getInstructions();
-        for (int i = insts.size()-1; i >= 0; i--) {
-            var inst = insts.get(i);
+        var needStore = (BitSet) analyzer.getOut(block).clone();
 
+        for (var inst = block.getTerminator(); inst != null; inst = inst.getPrevInstruction()) {
             if (inst instanceof LoadInst loadInst) {
                 var ptr = loadInst.getPtr();
                 if (ptr instanceof AllocaInst allocaInstPtr && varAllocaInstSet.contains(allocaInstPtr)) {
-                    needStore.add(allocaInstPtr);
+                    needStore.set(analyzer.getIndex(allocaInstPtr));
                 }
             } else if (inst instanceof StoreInst storeInst) {
                 var ptr = storeInst.getPtr();
                 if (ptr instanceof AllocaInst allocaInstPtr && varAllocaInstSet.contains(allocaInstPtr)) {
-                    if (needStore.contains(allocaInstPtr)) {
-                        needStore.remove(allocaInstPtr);
+                    int index = analyzer.getIndex(allocaInstPtr);
+                    if (needStore.get(index)) {
+                        needStore.clear(index);
                     } else {
                         inst.replaceAllUseWith(null, false); // useList of store inst is empty, so null is safe
+                        improve = true;
+                    }
+                }
+            }
+        }
+    }
+
+    // a store is dead if the same address is stored to later in the block with nothing reading it in between, two
+    // pointers must alias exactly when their locations are equal
+    private void removeOverwrittenStores(BasicBlock block) {
+        Set<AliasAnalyzer.Location> overwrittenLocations = new LinkedHashSet<>();
+        for (var inst = block.getTerminator(); inst != null; ) {
+            var prevInst = inst.getPrevInstruction();
+            if (inst instanceof StoreInst storeInst) {
+                var location = AliasAnalyzer.getLocation(storeInst.getPtr());
+                if (overwrittenLocations.contains(location)) {
+                    inst.replaceAllUseWith(null, false);
+                    improve = true;
+                } else {
+                    overwrittenLocations.add(location);
+                    if (overwrittenLocations.size() > MAX_OVERWRITTEN_LOCATIONS) {
+                        overwrittenLocations.remove(overwrittenLocations.iterator().next());
                     }
                 }
+            } else if (inst instanceof LoadInst loadInst && !overwrittenLocations.isEmpty()) {
+                var location = AliasAnalyzer.getLocation(loadInst.getPtr());
+                overwrittenLocations.removeIf(overwritten ->
+                        aliasAnalyzer.alias(overwritten, location) != AliasAnalyzer.AliasResult.NO_ALIAS);
+            } else if (inst instanceof CallInst callInst) {
+                overwrittenLocations.removeIf(overwritten -> aliasAnalyzer.mayRef(callInst, overwritten.base()));
+            }
+            inst = prevInst;
+        }
+    }
+
+    // a local array only ever stored to, its geps and stores are left for dead code elimination
+    private void removeStoresNeverRead(Function func) {
+        for (var inst : func.getFirstBasicBlock().getInstructions()) {
+            if (!(inst instanceof AllocaInst allocaInst)) {
+                continue;
+            }
+            List<StoreInst> storeInsts = new ArrayList<>();
+            if (collectStores(allocaInst, storeInsts, new HashSet<>())) {
+                for (var storeInst : storeInsts) {
+                    storeInst.replaceAllUseWith(null, false);
+                    improve = true;
+                }
+            }
+        }
+    }
+
+    // false if the pointer may be read, through loads or callees
+    private static boolean collectStores(Value ptr, List<StoreInst> storeInsts, Set<Value> visited) {
+        if (!visited.add(ptr)) {
+            return true;
+        }
+        for (var use : ptr.getUseList()) {
+            var user = use.getUser();
+            if (user instanceof StoreInst storeInst && storeInst.getPtr() == ptr) {
+                storeInsts.add(storeInst);
+            } else if (user instanceof GetElementPtrInst || user instanceof PhiInst) {
+                if (!collectStores((Value) user, storeInsts, visited)) {
+                    return false;
+                }
+            } else {
+                return false;
             }
         }
+        return true;
     }
 }
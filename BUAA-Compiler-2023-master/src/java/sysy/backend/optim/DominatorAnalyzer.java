@@ -0,0 +1,134 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.BasicBlock;
+
+import java.util.*;
+
+public class DominatorAnalyzer {
+    private final ControlFlowAnalyzer cfg;
+    private final List<BasicBlock> reversePostOrder;
+    private final Map<BasicBlock, List<BasicBlock>> predecessors = new HashMap<>();
+    private final Map<BasicBlock, BasicBlock> immediateDominators = new HashMap<>();
+    private final Map<BasicBlock, List<BasicBlock>> dominatorTreeChildren = new HashMap<>();
+    private final Map<BasicBlock, Set<BasicBlock>> dominanceFrontiers = new HashMap<>();
+
+    public DominatorAnalyzer(ControlFlowAnalyzer cfg) {
+        this.cfg = cfg;
+        this.reversePostOrder = cfg.getReversePostOrder();
+    }
+
+    public void analyze() {
+        buildPredecessors();
+        buildImmediateDominators();
+        buildDominanceFrontiers();
+    }
+
+    private void buildPredecessors() {
+        for (var block : reversePostOrder) {
+            List<BasicBlock> preds = new ArrayList<>();
+            for (var pred : cfg.getPredecessors(block)) {
+                if (cfg.isReachable(pred)) {
+                    preds.add(pred);
+                }
+            }
+            predecessors.put(block, preds);
+            dominatorTreeChildren.put(block, new ArrayList<>());
+            dominanceFrontiers.put(block, new LinkedHashSet<>());
+        }
+    }
+
+    // "A Simple, Fast Dominance Algorithm", Cooper, Harvey and Kennedy
+    private void buildImmediateDominators() {
+        var entry = reversePostOrder.get(0);
+        immediateDominators.put(entry, entry);
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var block : reversePostOrder) {
+                if (block == entry) {
+                    continue;
+                }
+                BasicBlock newIdom = null;
+                for (var pred : predecessors.get(block)) {
+                    if (!immediateDominators.containsKey(pred)) {
+                        continue;
+                    }
+                    newIdom = newIdom == null ? pred : intersect(pred, newIdom);
+                }
+                if (immediateDominators.get(block) != newIdom) {
+                    immediateDominators.put(block, newIdom);
+                    changed = true;
+                }
+            }
+        }
+
+        immediateDominators.put(entry, null);
+        for (var block : reversePostOrder) {
+            var idom = immediateDominators.get(block);
+            if (idom != null) {
+                dominatorTreeChildren.get(idom).add(block);
+            }
+        }
+    }
+
+    private BasicBlock intersect(BasicBlock a, BasicBlock b) {
+        while (a != b) {
+            while (cfg.getOrderIndex(a) > cfg.getOrderIndex(b)) {
+                a = immediateDominators.get(a);
+            }
+            while (cfg.getOrderIndex(b) > cfg.getOrderIndex(a)) {
+                b = immediateDominators.get(b);
+            }
+        }
+        return a;
+    }
+
+    private void buildDominanceFrontiers() {
+        for (var block : reversePostOrder) {
+            var preds = predecessors.get(block);
+            if (preds.size() < 2) {
+                continue;
+            }
+            var idom = immediateDominators.get(block);
+            for (var pred : preds) {
+                var runner = pred;
+                while (runner != idom) {
+                    dominanceFrontiers.get(runner).add(block);
+                    runner = immediateDominators.get(runner);
+                }
+            }
+        }
+    }
+
+    public boolean dominates(BasicBlock a, BasicBlock b) {
+        while (b != null) {
+            if (a == b) {
+                return true;
+            }
+            b = immediateDominators.get(b);
+        }
+        return false;
+    }
+
+    public List<BasicBlock> getReversePostOrder() {
+        return reversePostOrder;
+    }
+
+    // only reachable predecessors
+    public List<BasicBlock> getPredecessors(BasicBlock block) {
+        return predecessors.get(block);
+    }
+
+    public BasicBlock getImmediateDominator(BasicBlock block) {
+        return immediateDominators.get(block);
+    }
+
+    public List<BasicBlock> getDominatorTreeChildren(BasicBlock block) {
+        return dominatorTreeChildren.get(block);
+    }
+
+    public Set<BasicBlock> getDominanceFrontier(BasicBlock block) {
+        return dominanceFrontiers.get(block);
+    }
+}
@@ -0,0 +1,238 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.*;
+import sysy.backend.ir.Module;
+import sysy.backend.ir.inst.*;
+
+import java.util.*;
+
+// global value numbering over the dominator tree, an expression computed in a block is available in the blocks it
+// dominates and is dropped from the scoped table once they are left, a load is keyed on the version of the memory
+// it reads, which every write that may reach it bumps, the ones on paths from the dominator included
+public class GVNPass implements Pass {
+    private final Module module;
+    private final Map<Expression, Value> availableValues = new HashMap<>();
+    private final Map<Value, Integer> valueNumbers = new HashMap<>(); // the order commutative operands are sorted in
+    private DominatorAnalyzer domAnalyzer;
+    private AliasAnalyzer aliasAnalyzer;
+    private int nextVersion = 0;
+    private boolean changed = false;
+
+    // an immediate operand is kept by its value, so that equal immediates give equal expressions
+    private record Expression(Object op, Object first, Object second, List<Object> rest) {}
+
+    private static class MemoryState {
+        private final Map<Value, Integer> objectVersions = new HashMap<>(); // of allocas and globals
+        private int unknownVersion = 0; // written through pointers from the caller or by callees
+        private int globalsVersion = 0; // some global written, which a pointer from the caller may point to
+
+        private MemoryState copy() {
+            var state = new MemoryState();
+            state.objectVersions.putAll(objectVersions);
+            state.unknownVersion = unknownVersion;
+            state.globalsVersion = globalsVersion;
+            return state;
+        }
+    }
+
+    private static class Scope {
+        private final BasicBlock block;
+        private final MemoryState memoryState;
+        private final List<Expression> expressions = new ArrayList<>();
+        private boolean visited = false;
+
+        private Scope(BasicBlock block, MemoryState memoryState) {
+            this.block = block;
+            this.memoryState = memoryState;
+        }
+    }
+
+    public GVNPass(Module module) {
+        this.module = module;
+    }
+
+    @Override
+    public String getName() {
+        return "gvn";
+    }
+
+    @Override
+    public Set<Class<?>> getRequiredAnalyses() {
+        return Set.of(DominatorAnalyzer.class);
+    }
+
+    @Override
+    public boolean passFunc(Function func) {
+        domAnalyzer = AnalysisManager.getInstance().getDominatorAnalyzer(func);
+        aliasAnalyzer = AnalysisManager.getInstance().getAliasAnalyzer(module);
+        availableValues.clear();
+        valueNumbers.clear();
+        changed = false;
+        if (func.getFirstBasicBlock() == null) {
+            return false;
+        }
+
+        // children are entered with the memory state their dominator leaves
+        Deque<Scope> stack = new ArrayDeque<>();
+        stack.push(new Scope(func.getFirstBasicBlock(), new MemoryState()));
+        while (!stack.isEmpty()) {
+            var scope = stack.peek();
+            if (scope.visited) {
+                stack.pop();
+                scope.expressions.forEach(availableValues::remove);
+                continue;
+            }
+            scope.visited = true;
+            passBlock(scope);
+            for (var child : domAnalyzer.getDominatorTreeChildren(scope.block)) {
+                var memoryState = scope.memoryState.copy();
+                applyEffects(memoryState, getEffectsBetween(scope.block, child));
+                stack.push(new Scope(child, memoryState));
+            }
+        }
+        return changed;
+    }
+
+    private void passBlock(Scope scope) {
+        var memoryState = scope.memoryState;
+        for (var inst : scope.block.getInstructions()) {
+            if (inst instanceof PhiInst phiInst) {
+                simplifyPhi(phiInst);
+                continue;
+            }
+            if (inst instanceof StoreInst || inst instanceof CallInst) {
+                var effects = new MemoryEffects(aliasAnalyzer);
+                effects.add(inst);
+                applyEffects(memoryState, effects);
+                if (inst instanceof StoreInst storeInst) { // a later load gets the value stored
+                    var expression = getLoadExpression(storeInst.getPtr(), memoryState);
+                    availableValues.put(expression, storeInst.getValue());
+                    scope.expressions.add(expression);
+                }
+                continue;
+            }
+
+            var expression = inst instanceof LoadInst loadInst
+                    ? getLoadExpression(loadInst.getPtr(), memoryState)
+                    : getExpression(inst);
+            if (expression == null) {
+                continue;
+            }
+            var value = availableValues.get(expression);
+            if (value != null) {
+                inst.replaceAllUseWith(value, false);
+                changed = true;
+            } else {
+                availableValues.put(expression, inst);
+                scope.expressions.add(expression);
+            }
+        }
+    }
+
+    // a phi whose incoming values are all the same is that value
+    private void simplifyPhi(PhiInst phiInst) {
+        Object same = null;
+        for (var value : phiInst.getIncomingValues()) {
+            if (value == phiInst) {
+                continue;
+            }
+            if (same != null && !same.equals(getOperandKey(value))) {
+                return;
+            }
+            same = getOperandKey(value);
+        }
+        if (same != null) {
+            phiInst.replaceAllUseWith(same instanceof Integer immediate ? new ImmediateValue(immediate) : (Value) same, false);
+            changed = true;
+        }
+    }
+
+    private Expression getExpression(Instruction inst) {
+        if (inst instanceof BinaryInst binaryInst) {
+            var left = getOperandKey(binaryInst.getLeft());
+            var right = getOperandKey(binaryInst.getRight());
+            var op = binaryInst.getOp();
+            boolean commutative = op == BinaryInstOp.ADD || op == BinaryInstOp.MUL
+                    || op == BinaryInstOp.AND || op == BinaryInstOp.OR;
+            if (commutative && compareOperands(left, right) > 0) {
+                return new Expression(op, right, left, List.of());
+            }
+            return new Expression(op, left, right, List.of());
+        } else if (inst instanceof ICmpInst icmpInst) {
+            var left = getOperandKey(icmpInst.getLeft());
+            var right = getOperandKey(icmpInst.getRight());
+            if (compareOperands(left, right) > 0) {
+                return new Expression(icmpInst.getCond().swapped(), right, left, List.of());
+            }
+            return new Expression(icmpInst.getCond(), left, right, List.of());
+        } else if (inst instanceof GetElementPtrInst gepInst) {
+            List<Object> offsets = new ArrayList<>(gepInst.getOffsets().size());
+            for (var offset : gepInst.getOffsets()) {
+                offsets.add(getOperandKey(offset));
+            }
+            return new Expression(GetElementPtrInst.class, gepInst.getElementBase(), null, offsets);
+        } else if (inst instanceof ZExtInst zextInst) {
+            return new Expression(ZExtInst.class, getOperandKey(zextInst.getValue()), null, List.of());
+        }
+        return null; // allocas, calls and terminators are never the same
+    }
+
+    // a load from a local alloca depends only on its version, a load from a global also on what callees and
+    // pointers from the caller write, while a pointer from the caller may point to any global
+    private static Expression getLoadExpression(Value ptr, MemoryState memoryState) {
+        var base = AliasAnalyzer.getBaseObject(ptr);
+        int objectVersion = memoryState.objectVersions.getOrDefault(base, 0);
+        if (base instanceof AllocaInst) {
+            return new Expression(LoadInst.class, ptr, objectVersion, List.of());
+        } else if (base instanceof GlobalValue) {
+            return new Expression(LoadInst.class, ptr, objectVersion, List.of(memoryState.unknownVersion));
+        }
+        return new Expression(LoadInst.class, ptr, memoryState.unknownVersion, List.of(memoryState.globalsVersion));
+    }
+
+    private void applyEffects(MemoryState memoryState, MemoryEffects effects) {
+        for (var object : effects.getWrittenObjects()) {
+            memoryState.objectVersions.put(object, ++nextVersion);
+        }
+        if (effects.writesGlobals()) {
+            memoryState.globalsVersion = ++nextVersion;
+        }
+        if (effects.writesUnknown()) {
+            memoryState.unknownVersion = ++nextVersion;
+        }
+    }
+
+    // what the blocks on the paths from the dominator to the block write, the block itself included when it is on a
+    // cycle not going through the dominator
+    private MemoryEffects getEffectsBetween(BasicBlock dominator, BasicBlock block) {
+        var preds = domAnalyzer.getPredecessors(block);
+        if (preds.size() == 1 && preds.get(0) == dominator) {
+            return new MemoryEffects(aliasAnalyzer);
+        }
+        Set<BasicBlock> blocks = new HashSet<>();
+        Deque<BasicBlock> workList = new ArrayDeque<>(preds);
+        while (!workList.isEmpty()) {
+            var pred = workList.pop();
+            if (pred != dominator && blocks.add(pred)) {
+                workList.addAll(domAnalyzer.getPredecessors(pred));
+            }
+        }
+        return new MemoryEffects(aliasAnalyzer, blocks);
+    }
+
+    private static Object getOperandKey(Value value) {
+        return value instanceof ImmediateValue immediate ? (Object) immediate.getValue() : value;
+    }
+
+    // values in the order they are first compared, immediates after them
+    private int compareOperands(Object left, Object right) {
+        if (left instanceof Integer leftImmediate) {
+            return right instanceof Integer rightImmediate ? Integer.compare(leftImmediate, rightImmediate) : 1;
+        } else if (right instanceof Integer) {
+            return -1;
+        }
+        int leftNumber = valueNumbers.computeIfAbsent((Value) left, value -> valueNumbers.size());
+        int rightNumber = valueNumbers.computeIfAbsent((Value) right, value -> valueNumbers.size());
+        return Integer.compare(leftNumber, rightNumber);
+    }
+}
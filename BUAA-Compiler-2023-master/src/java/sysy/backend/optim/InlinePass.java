@@ -0,0 +1,175 @@
+package sysy.backend.optim;
+
+import sysy.backend.Instrumentation;
+import sysy.backend.ir.*;
+import sysy.backend.ir.Module;
+import sysy.backend.ir.inst.*;
+
+import java.util.*;
+
+// copies the blocks of small callees into their callers, a call site in a loop is allowed a bigger callee since
+// its overhead is paid on every iteration, recursive functions are never inlined
+public class InlinePass implements Pass {
+    private static final int BASE_THRESHOLD = 20; // instructions of a callee called outside loops
+    private static final int MAX_LOOP_DEPTH = 3; // the threshold is doubled for each loop level up to this
+    private static final int ONLY_CALL_SITE_THRESHOLD = 200; // nothing is duplicated then
+    private static final int MAX_CALLER_SIZE = 4000;
+
+    private final Module module;
+    private CallGraphAnalyzer callGraph = null;
+
+    public InlinePass(Module module) {
+        this.module = module;
+    }
+
+    @Override
+    public String getName() {
+        return "inline";
+    }
+
+    @Override
+    public boolean passFunc(Function func) {
+        if (callGraph == null) { // inlining never makes a function recursive, so the call graph is built once
+            callGraph = new CallGraphAnalyzer(module);
+            callGraph.analyze();
+        }
+
+        List<CallInst> callInsts = new ArrayList<>();
+        for (var block : func.getBasicBlocks()) {
+            for (var inst : block.getInstructions()) {
+                if (inst instanceof CallInst callInst) {
+                    callInsts.add(callInst);
+                }
+            }
+        }
+
+        boolean changed = false;
+        int callerSize = Instrumentation.countInstructions(func);
+        for (var callInst : callInsts) {
+            var callee = callInst.getFunc();
+            if (!shouldInline(func, callInst, callerSize)) {
+                continue;
+            }
+            callerSize += Instrumentation.countInstructions(callee);
+            inline(callInst);
+            changed = true;
+        }
+        return changed;
+    }
+
+    private boolean shouldInline(Function caller, CallInst callInst, int callerSize) {
+        var callee = callInst.getFunc();
+        if (callee == caller || callee.getFirstBasicBlock() == null || callGraph.isRecursive(callee)
+                || !callee.getFirstBasicBlock().getPhiInsts().isEmpty()) { // the entry gets the call site as a new predecessor
+            return false;
+        }
+        int calleeSize = Instrumentation.countInstructions(callee);
+        if (callerSize + calleeSize > MAX_CALLER_SIZE) {
+            return false;
+        }
+        int loopDepth = Math.min(callInst.getBasicBlock().getLoopNum(), MAX_LOOP_DEPTH);
+        int threshold = BASE_THRESHOLD << loopDepth;
+        if (callGraph.getCallSites(callee).size() == 1) {
+            threshold = Math.max(threshold, ONLY_CALL_SITE_THRESHOLD);
+        }
+        return calleeSize <= threshold;
+    }
+
+    private void inline(CallInst callInst) {
+        var callee = callInst.getFunc();
+        var callBlock = callInst.getBasicBlock();
+        var caller = callBlock.getFunction();
+        var returnBlock = callBlock.splitAfter(callInst);
+
+        Map<Value, Value> valueMap = new HashMap<>();
+        for (int i = 0; i < callee.getArguments().size(); i++) {
+            valueMap.put(callee.getArguments().get(i), callInst.getParams().get(i));
+        }
+        var prevBlock = callBlock;
+        for (var block : callee.getBasicBlocks()) {
+            var newBlock = caller.createBasicBlockAfter(prevBlock);
+            newBlock.setLoopNum(block.getLoopNum() + callBlock.getLoopNum());
+            valueMap.put(block, newBlock);
+            prevBlock = newBlock;
+        }
+
+        // operands defined later in the layout are mapped after every instruction is copied
+        List<Instruction> newInsts = new ArrayList<>();
+        Map<BasicBlock, Value> returnValues = new LinkedHashMap<>();
+        for (var block : callee.getBasicBlocks()) {
+            var newBlock = (BasicBlock) valueMap.get(block);
+            for (var inst : block.getInstructions()) {
+                if (inst instanceof AllocaInst allocaInst) {
+                    valueMap.put(inst, caller.getFirstBasicBlock().createAllocaInstAndInsertToFront(allocaInst.getDataType()));
+                } else if (inst instanceof ReturnInst returnInst) {
+                    returnValues.put(newBlock, returnInst.getValue());
+                    newBlock.insertInstruction(new BrInst(returnBlock));
+                } else {
+                    var newInst = copyInstruction(inst, valueMap);
+                    valueMap.put(inst, newInst);
+                    newBlock.insertInstruction(newInst);
+                    newInsts.add(newInst);
+                }
+            }
+        }
+        for (var newInst : newInsts) {
+            var operands = newInst.getOperands();
+            for (int i = 0; i < operands.size(); i++) {
+                if (valueMap.containsKey(operands.get(i))) {
+                    newInst.replaceOperand(i, valueMap.get(operands.get(i)));
+                }
+            }
+        }
+
+        Value returnValue = null;
+        if (returnValues.isEmpty()) { // the callee never returns, so the result is never used
+            returnValue = callee.getRetType().getType() != IRTypeEnum.VOID ? new ImmediateValue(0) : null;
+        } else if (returnValues.size() == 1) {
+            var value = returnValues.values().iterator().next();
+            returnValue = value == null ? null : valueMap.getOrDefault(value, value);
+        } else if (callee.getRetType().getType() != IRTypeEnum.VOID) {
+            var phiInst = (PhiInst) returnBlock.createPhiInstAndInsertToFront(callee.getRetType().clone());
+            returnValues.forEach((block, value) -> phiInst.addIncoming(valueMap.getOrDefault(value, value), block));
+            returnValue = phiInst;
+        }
+        callInst.replaceAllUseWith(returnValue, false);
+        callBlock.insertInstruction(new BrInst((BasicBlock) valueMap.get(callee.getFirstBasicBlock())));
+    }
+
+    // the operands are left to be mapped by the caller, only the blocks jumped to are mapped here
+    static Instruction copyInstruction(Instruction inst, Map<Value, Value> valueMap) {
+        if (inst instanceof BinaryInst binaryInst) {
+            return new BinaryInst(binaryInst.getOp(), binaryInst.getLeft(), binaryInst.getRight());
+        } else if (inst instanceof ICmpInst icmpInst) {
+            return new ICmpInst(icmpInst.getCond(), icmpInst.getLeft(), icmpInst.getRight());
+        } else if (inst instanceof ZExtInst zextInst) {
+            return new ZExtInst(zextInst.getType().clone(), zextInst.getValue());
+        } else if (inst instanceof LoadInst loadInst) {
+            return new LoadInst(loadInst.getPtr());
+        } else if (inst instanceof StoreInst storeInst) {
+            return new StoreInst(storeInst.getValue(), storeInst.getPtr());
+        } else if (inst instanceof GetElementPtrInst gepInst) {
+            return new GetElementPtrInst(gepInst.getElementBase(), gepInst.getOffsets());
+        } else if (inst instanceof CallInst callInst) {
+            return new CallInst(callInst.getFunc(), callInst.getParams());
+        } else if (inst instanceof BrInst brInst) {
+            if (brInst.getCond() == null) {
+                return new BrInst(mapBlock(brInst.getDest(), valueMap));
+            }
+            return new BrInst(brInst.getCond(), mapBlock(brInst.getTrueBranch(), valueMap),
+                    mapBlock(brInst.getFalseBranch(), valueMap));
+        } else if (inst instanceof PhiInst phiInst) {
+            var newPhiInst = new PhiInst(phiInst.getType().clone());
+            for (int i = 0; i < phiInst.getIncomingBlocks().size(); i++) {
+                newPhiInst.addIncoming(phiInst.getIncomingValues().get(i),
+                        mapBlock(phiInst.getIncomingBlocks().get(i), valueMap));
+            }
+            return newPhiInst;
+        }
+        throw new RuntimeException(); // impossible
+    }
+
+    private static BasicBlock mapBlock(BasicBlock block, Map<Value, Value> valueMap) {
+        return (BasicBlock) valueMap.getOrDefault(block, block);
+    }
+}
@@ -0,0 +1,98 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.Value;
+
+import java.util.*;
+
+// a bit matrix answers whether two nodes interfere, adjacency lists give the neighbours of a node
+public class InterferenceGraph {
+    private static final int MAX_MATRIX_NODES = 8192; // 4MB for the lower triangle
+    private final List<Value> nodes = new ArrayList<>();
+    private final Map<Value, Integer> indices = new HashMap<>();
+    private final List<List<Integer>> adjLists = new ArrayList<>();
+    private final long[] matrix;
+    private final Set<Long> edges; // instead of the matrix for huge functions
+
+    public InterferenceGraph(Collection<? extends Value> nodes) {
+        for (var node : nodes) {
+            if (!indices.containsKey(node)) {
+                indices.put(node, this.nodes.size());
+                this.nodes.add(node);
+                adjLists.add(new ArrayList<>());
+            }
+        }
+        int size = this.nodes.size();
+        if (size <= MAX_MATRIX_NODES) {
+            matrix = new long[(int) ((long) size * (size - 1) / 2 / 64 + 1)];
+            edges = null;
+        } else {
+            matrix = null;
+            edges = new HashSet<>();
+        }
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public Value getNode(int index) {
+        return nodes.get(index);
+    }
+
+    // -1 if the value is not a node
+    public int getIndex(Value value) {
+        return indices.getOrDefault(value, -1);
+    }
+
+    private static long getBitIndex(int a, int b) {
+        int high = Math.max(a, b), low = Math.min(a, b);
+        return (long) high * (high - 1) / 2 + low;
+    }
+
+    public boolean isAdjacent(int a, int b) {
+        if (a == b) {
+            return false;
+        }
+        long bit = getBitIndex(a, b);
+        if (matrix != null) {
+            return (matrix[(int) (bit >>> 6)] & (1L << (bit & 63))) != 0;
+        }
+        return edges.contains(bit);
+    }
+
+    // returns false if they already interfere
+    public boolean addEdge(int a, int b) {
+        if (a == b || isAdjacent(a, b)) {
+            return false;
+        }
+        long bit = getBitIndex(a, b);
+        if (matrix != null) {
+            matrix[(int) (bit >>> 6)] |= 1L << (bit & 63);
+        } else {
+            edges.add(bit);
+        }
+        adjLists.get(a).add(b);
+        adjLists.get(b).add(a);
+        return true;
+    }
+
+    public void addEdge(Value a, Value b) {
+        addEdge(indices.get(a), indices.get(b));
+    }
+
+    public void addEdges(ConflictDiagram diagram) {
+        for (var node : diagram.getNodes()) {
+            for (var conflictNode : diagram.getConflict(node)) {
+                addEdge(node, conflictNode);
+            }
+        }
+    }
+
+    public List<Integer> getAdjacent(int index) {
+        return adjLists.get(index);
+    }
+
+    public int getDegree(int index) {
+        return adjLists.get(index).size();
+    }
+}
@@ -8,58 +8,69 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Predicate;
 
-public class LVNPass {
-    private final Module irModule;
+public class LVNPass implements Pass {
+    private final Module module;
     private final Map<Integer, Instruction> hashTable = new HashMap<>();
+    private HashHelper hashHelper;
+    private AliasAnalyzer aliasAnalyzer;
+    private boolean improve = false;
 
-    public LVNPass(Module irModule) {
-        this.irModule = irModule;
+    public LVNPass(Module module) {
+        this.module = module;
     }
 
-    public Module pass() {
-        for (var func : irModule.getFunctions()) {
-            passFunc(func);
-        }
-
-        return irModule;
+    @Override
+    public String getName() {
+        return "lvn";
     }
 
-    private void passFunc(Function func) {
+    @Override
+    public boolean passFunc(Function func) {
+        improve = false;
+        aliasAnalyzer = AnalysisManager.getInstance().getAliasAnalyzer(module);
         for (var block : func.getBasicBlocks()) {
             passBlock(block);
         }
+        return improve;
     }
 
     private void passBlock(BasicBlock block) {
         hashTable.clear();
-        var hashHelper = new HashHelper();
-
-        var insts = block.getInstructions();
-        for (int i = 0; i < insts.size(); i++) {
-            var inst = insts.get(i);
+        hashHelper = new HashHelper();
 
+        for (var inst : block.getInstructions()) {
             if (inst instanceof BrInst || inst instanceof ReturnInst) {
                 continue;
             }
             if (inst instanceof StoreInst storeInst) {
-                var ptr = storeInst.getPtr();
-                while (ptr instanceof GetElementPtrInst gepPtr) {
-                    ptr = gepPtr.getElementBase();
-                }
-                hashHelper.removeHash(storeInst.getPtr());
+                killLoads(loadPtr -> aliasAnalyzer.alias(loadPtr, storeInst.getPtr()) != AliasAnalyzer.AliasResult.NO_ALIAS);
                 continue;
             }
+            if (inst instanceof CallInst callInst) {
+                killLoads(loadPtr -> aliasAnalyzer.mayModify(callInst, loadPtr));
+            }
 
             int hash = hashHelper.hash(inst);
             if (hashTable.containsKey(hash)) {
                 inst.replaceAllUseWith(hashTable.get(hash), false);
-                i--;
+                improve = true;
             } else {
                 hashTable.put(hash, inst);
             }
         }
     }
+
+    private void killLoads(Predicate<Value> mayBeWritten) {
+        hashTable.values().removeIf(inst -> {
+            if (inst instanceof LoadInst loadInst && mayBeWritten.test(loadInst.getPtr())) {
+                hashHelper.removeDesc(loadInst); // later loads from the same address get a new hash
+                return true;
+            }
+            return false;
+        });
+    }
 }
 
 class HashHelper {
@@ -82,6 +93,10 @@ class HashHelper {
             return "imm " + ivalue.getValue();
         }
 
+        if (value instanceof FunctionArgument) {
+            return "arg" + value.hashCode();
+        }
+
         // else value instanceof inst
         if (value instanceof AllocaInst) {
             return "alloca" + value.hashCode();
@@ -91,6 +106,10 @@ class HashHelper {
             return "call" + value.hashCode();
         }
 
+        if (value instanceof PhiInst) {
+            return "phi" + value.hashCode();
+        }
+
         if (value instanceof LoadInst loadInst) {
             return "load "  + hash(loadInst.getPtr());
         }
@@ -113,6 +132,10 @@ class HashHelper {
         return "";
     }
 
+    public void removeDesc(Value value) {
+        descToHash.remove(createValueDesc(value));
+    }
+
     public void removeHash(Value value) {
         var desc = createValueDesc(value);
         valToHash.remove(value);
@@ -0,0 +1,143 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.BasicBlock;
+import sysy.backend.ir.Value;
+import sysy.backend.ir.inst.BrInst;
+import sysy.backend.ir.inst.PhiInst;
+
+import java.util.*;
+
+public class Loop {
+    private final BasicBlock header;
+    private final Set<BasicBlock> blocks = new LinkedHashSet<>();
+    private final List<BasicBlock> latches = new ArrayList<>();
+    private final List<Loop> subLoops = new ArrayList<>();
+    private Loop parent = null;
+    private BasicBlock preheader = null;
+
+    public Loop(BasicBlock header) {
+        this.header = header;
+        blocks.add(header);
+    }
+
+    void addBlock(BasicBlock block) {
+        blocks.add(block);
+    }
+
+    void addLatch(BasicBlock latch) {
+        latches.add(latch);
+    }
+
+    void setParent(Loop parent) {
+        this.parent = parent;
+        parent.subLoops.add(this);
+    }
+
+    public BasicBlock getHeader() {
+        return header;
+    }
+
+    public Set<BasicBlock> getBlocks() {
+        return blocks;
+    }
+
+    public boolean contains(BasicBlock block) {
+        return blocks.contains(block);
+    }
+
+    public List<BasicBlock> getLatches() {
+        return latches;
+    }
+
+    // the only block jumping to the header from outside the loop, a new one is placed before the header if there
+    // are several such blocks or the one jumps elsewhere too, null if the header is the entry of the function
+    public BasicBlock getOrCreatePreheader(ControlFlowAnalyzer cfg) {
+        if (preheader != null) {
+            return preheader;
+        }
+        List<BasicBlock> entries = new ArrayList<>();
+        for (var pred : cfg.getPredecessors(header)) {
+            if (!blocks.contains(pred)) {
+                entries.add(pred);
+            }
+        }
+        if (entries.isEmpty()) {
+            return null;
+        }
+        if (entries.size() == 1 && entries.get(0).getSuccessors().size() == 1) {
+            preheader = entries.get(0);
+            return preheader;
+        }
+
+        preheader = header.getFunction().createBasicBlockAfter(header.getPrevBasicBlock());
+        preheader.setLoopNum(Math.max(header.getLoopNum() - 1, 0));
+        for (var phiInst : header.getPhiInsts()) {
+            Value value;
+            if (entries.size() == 1) {
+                value = phiInst.getIncomingValue(entries.get(0));
+            } else {
+                var newPhiInst = (PhiInst) preheader.createPhiInstAndInsertToFront(phiInst.getType().clone());
+                for (var entry : entries) {
+                    newPhiInst.addIncoming(phiInst.getIncomingValue(entry), entry);
+                }
+                value = newPhiInst;
+            }
+            for (var entry : entries) {
+                phiInst.removeIncoming(entry);
+            }
+            phiInst.addIncoming(value, preheader);
+        }
+        preheader.insertInstruction(new BrInst(header));
+
+        for (var entry : entries) {
+            entry.replaceSuccessor(header, preheader);
+        }
+
+        for (var outerLoop = parent; outerLoop != null; outerLoop = outerLoop.parent) {
+            outerLoop.addBlock(preheader);
+        }
+        return preheader;
+    }
+
+    public Loop getParent() {
+        return parent;
+    }
+
+    public List<Loop> getSubLoops() {
+        return subLoops;
+    }
+
+    public int getDepth() {
+        int depth = 1;
+        for (var loop = parent; loop != null; loop = loop.parent) {
+            depth++;
+        }
+        return depth;
+    }
+
+    // blocks outside the loop which are jumped to from inside
+    public Set<BasicBlock> getExitBlocks() {
+        Set<BasicBlock> exitBlocks = new LinkedHashSet<>();
+        for (var block : blocks) {
+            for (var succ : block.getSuccessors()) {
+                if (!blocks.contains(succ)) {
+                    exitBlocks.add(succ);
+                }
+            }
+        }
+        return exitBlocks;
+    }
+
+    // blocks inside the loop which jump to the outside
+    public Set<BasicBlock> getExitingBlocks() {
+        Set<BasicBlock> exitingBlocks = new LinkedHashSet<>();
+        for (var block : blocks) {
+            for (var succ : block.getSuccessors()) {
+                if (!blocks.contains(succ)) {
+                    exitingBlocks.add(block);
+                }
+            }
+        }
+        return exitingBlocks;
+    }
+}
@@ -0,0 +1,84 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.BasicBlock;
+
+import java.util.*;
+
+public class LoopAnalyzer {
+    private final ControlFlowAnalyzer cfg;
+    private final DominatorAnalyzer domAnalyzer;
+    private final List<Loop> loops = new ArrayList<>();
+    private final List<Loop> topLevelLoops = new ArrayList<>();
+    private final Map<BasicBlock, Loop> innermostLoops = new HashMap<>();
+
+    public LoopAnalyzer(ControlFlowAnalyzer cfg, DominatorAnalyzer domAnalyzer) {
+        this.cfg = cfg;
+        this.domAnalyzer = domAnalyzer;
+    }
+
+    public void analyze() {
+        for (var header : cfg.getReversePostOrder()) {
+            Loop loop = null;
+            for (var pred : domAnalyzer.getPredecessors(header)) {
+                if (domAnalyzer.dominates(header, pred)) { // back edge
+                    if (loop == null) {
+                        loop = new Loop(header);
+                    }
+                    loop.addLatch(pred);
+                }
+            }
+            if (loop != null) {
+                collectLoopBlocks(loop);
+                loops.add(loop);
+            }
+        }
+
+        // natural loops with different headers are either disjoint or nested, visit outer loops first
+        List<Loop> sortedLoops = new ArrayList<>(loops);
+        sortedLoops.sort((a, b) -> b.getBlocks().size() - a.getBlocks().size());
+        for (var loop : sortedLoops) {
+            var parent = innermostLoops.get(loop.getHeader());
+            if (parent == null) {
+                topLevelLoops.add(loop);
+            } else {
+                loop.setParent(parent);
+            }
+            for (var block : loop.getBlocks()) {
+                innermostLoops.put(block, loop);
+            }
+        }
+    }
+
+    private void collectLoopBlocks(Loop loop) {
+        Stack<BasicBlock> workList = new Stack<>();
+        for (var latch : loop.getLatches()) {
+            workList.push(latch);
+        }
+        while (!workList.isEmpty()) {
+            var block = workList.pop();
+            if (loop.contains(block)) {
+                continue;
+            }
+            loop.addBlock(block);
+            workList.addAll(domAnalyzer.getPredecessors(block));
+        }
+    }
+
+    // in reverse post order of headers, so outer loops come before inner ones
+    public List<Loop> getLoops() {
+        return loops;
+    }
+
+    public List<Loop> getTopLevelLoops() {
+        return topLevelLoops;
+    }
+
+    public Loop getLoopFor(BasicBlock block) {
+        return innermostLoops.get(block);
+    }
+
+    public int getLoopDepth(BasicBlock block) {
+        var loop = innermostLoops.get(block);
+        return loop == null ? 0 : loop.getDepth();
+    }
+}
@@ -0,0 +1,163 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.*;
+import sysy.backend.ir.Module;
+import sysy.backend.ir.inst.*;
+
+import java.util.*;
+
+// moves instructions computing the same value in every iteration to the preheader of the loop, inner loops are
+// visited first so what they hoist can be hoisted further by the outer ones
+public class LoopInvariantCodeMotionPass implements Pass {
+    private final Module module;
+    private ControlFlowAnalyzer cfg;
+    private DominatorAnalyzer domAnalyzer;
+    private AliasAnalyzer aliasAnalyzer;
+    private final List<BasicBlock> blockOrder = new ArrayList<>(); // reverse post order with the new preheaders
+    private final Map<BasicBlock, BasicBlock> preheaderHeaders = new HashMap<>();
+
+    public LoopInvariantCodeMotionPass(Module module) {
+        this.module = module;
+    }
+
+    @Override
+    public String getName() {
+        return "loop-invariant-code-motion";
+    }
+
+    @Override
+    public Set<Class<?>> getRequiredAnalyses() {
+        return Set.of(LoopAnalyzer.class);
+    }
+
+    @Override
+    public boolean passFunc(Function func) {
+        var analysisManager = AnalysisManager.getInstance();
+        cfg = analysisManager.getControlFlowAnalyzer(func);
+        domAnalyzer = analysisManager.getDominatorAnalyzer(func);
+        aliasAnalyzer = analysisManager.getAliasAnalyzer(module);
+        var loopAnalyzer = analysisManager.getLoopAnalyzer(func);
+        blockOrder.clear();
+        blockOrder.addAll(cfg.getReversePostOrder());
+        preheaderHeaders.clear();
+
+        boolean changed = false;
+        List<Loop> loops = new ArrayList<>(loopAnalyzer.getLoops());
+        Collections.reverse(loops);
+        for (var loop : loops) {
+            var invariants = collectInvariants(loop);
+            if (invariants.isEmpty()) {
+                continue;
+            }
+            var preheader = loop.getOrCreatePreheader(cfg);
+            if (preheader == null) {
+                continue;
+            }
+            if (!blockOrder.contains(preheader)) { // just created
+                blockOrder.add(blockOrder.indexOf(loop.getHeader()), preheader);
+                preheaderHeaders.put(preheader, loop.getHeader());
+            }
+            for (var inst : invariants) {
+                inst.getBasicBlock().getInstructions().remove(inst);
+                preheader.insertInstructionBefore(preheader.getTerminator(), inst);
+            }
+            changed = true;
+        }
+        return changed;
+    }
+
+    // in the order they are computed, so each one comes after the invariants it uses
+    private List<Instruction> collectInvariants(Loop loop) {
+        List<Instruction> writes = new ArrayList<>();
+        for (var block : loop.getBlocks()) {
+            for (var inst : block.getInstructions()) {
+                if (inst instanceof StoreInst || inst instanceof CallInst) {
+                    writes.add(inst);
+                }
+            }
+        }
+        Set<Instruction> invariantSet = new LinkedHashSet<>();
+        for (var block : blockOrder) {
+            if (!loop.contains(block)) {
+                continue;
+            }
+            for (var inst : block.getInstructions()) {
+                if (!(isPure(inst) || inst instanceof LoadInst loadInst && canHoistLoad(loadInst, loop, writes))) {
+                    continue;
+                }
+                boolean invariant = true;
+                for (var operand : inst.getOperands()) {
+                    if (operand instanceof Instruction instOperand && loop.contains(instOperand.getBasicBlock())
+                            && !invariantSet.contains(instOperand)) {
+                        invariant = false;
+                        break;
+                    }
+                }
+                if (invariant) {
+                    invariantSet.add(inst);
+                }
+            }
+        }
+        return new ArrayList<>(invariantSet);
+    }
+
+    // division never traps on mips, so nothing here has to be guarded
+    private static boolean isPure(Instruction inst) {
+        return inst instanceof BinaryInst
+                || inst instanceof ICmpInst
+                || inst instanceof GetElementPtrInst
+                || inst instanceof ZExtInst;
+    }
+
+    // the load has to be done in every iteration, so that it is not hoisted out of a branch never taken, and its
+    // address has to be valid even when the loop exits before the first one
+    private boolean canHoistLoad(LoadInst loadInst, Loop loop, List<Instruction> writes) {
+        var block = loadInst.getBasicBlock();
+        block = preheaderHeaders.getOrDefault(block, block);
+        for (var latch : loop.getLatches()) {
+            if (!domAnalyzer.dominates(block, latch)) {
+                return false;
+            }
+        }
+        var ptr = loadInst.getPtr();
+        if (!isInBounds(ptr)) {
+            return false;
+        }
+        for (var inst : writes) {
+            if (inst instanceof StoreInst storeInst
+                    ? aliasAnalyzer.alias(storeInst.getPtr(), ptr) != AliasAnalyzer.AliasResult.NO_ALIAS
+                    : aliasAnalyzer.mayModify((CallInst) inst, ptr)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // constant indices inside an array in memory
+    private static boolean isInBounds(Value ptr) {
+        long offset = 0;
+        for (; ptr instanceof GetElementPtrInst gep; ptr = gep.getElementBase()) {
+            var dims = gep.getElementBase().getType().getArrayDims();
+            for (int i = 0; i < gep.getOffsets().size(); i++) {
+                if (!(gep.getOffsets().get(i) instanceof ImmediateValue immediate)) {
+                    return false;
+                }
+                long size = 1;
+                for (int j = i; j < dims.size(); j++) {
+                    size *= dims.get(j);
+                }
+                offset += immediate.getValue() * size;
+            }
+        }
+        if (!(ptr instanceof AllocaInst || ptr instanceof GlobalValue)) {
+            return false;
+        }
+        long total = 1;
+        if (ptr.getType().getPtrNum() == 1) {
+            for (var dim : ptr.getType().getArrayDims()) {
+                total *= dim;
+            }
+        }
+        return offset >= 0 && offset < total;
+    }
+}
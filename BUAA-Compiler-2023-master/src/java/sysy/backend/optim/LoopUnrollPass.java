@@ -0,0 +1,352 @@
+package sysy.backend.optim;
+
+import sysy.backend.Instrumentation;
+import sysy.backend.ir.*;
+import sysy.backend.ir.inst.*;
+
+import java.util.*;
+
+// unrolls innermost loops testing an induction variable against an invariant bound in the header, a loop with a
+// small constant trip count is replaced by copies of its body, otherwise the body is copied into a loop running
+// while several iterations are left, the original loop running the remaining ones
+public class LoopUnrollPass implements Pass {
+    private final UnrollBudget budget;
+    private ControlFlowAnalyzer cfg;
+    private BasicBlock entry; // the only block jumping to the header from outside
+    private final Set<BasicBlock> visitedHeaders = new HashSet<>();
+
+    // the loop runs while counter cond bound holds, the counter going from init by step in every iteration
+    private record LoopBound(PhiInst counter, Value init, int step, ICmpInstCond cond, Value bound) {}
+
+    public LoopUnrollPass() {
+        this(UnrollBudget.DEFAULT);
+    }
+
+    public LoopUnrollPass(UnrollBudget budget) {
+        this.budget = budget;
+    }
+
+    @Override
+    public String getName() {
+        return "loop-unroll";
+    }
+
+    @Override
+    public Set<Class<?>> getRequiredAnalyses() {
+        return Set.of(LoopAnalyzer.class);
+    }
+
+    @Override
+    public boolean passFunc(Function func) {
+        var analysisManager = AnalysisManager.getInstance();
+        visitedHeaders.clear();
+
+        // the loops are found again after each unrolling, a fully unrolled loop may leave its parent innermost
+        boolean changed = false;
+        boolean unrolled = true;
+        while (unrolled) {
+            unrolled = false;
+            cfg = analysisManager.getControlFlowAnalyzer(func);
+            for (var loop : analysisManager.getLoopAnalyzer(func).getLoops()) {
+                if (loop.getSubLoops().isEmpty() && visitedHeaders.add(loop.getHeader())
+                        && unroll(loop, budget.maxFunctionSize() - Instrumentation.countInstructions(func))) {
+                    unrolled = true;
+                    break;
+                }
+            }
+            changed |= unrolled;
+        }
+        return changed;
+    }
+
+    private boolean unroll(Loop loop, int sizeLeft) {
+        var bound = analyzeBound(loop);
+        if (bound == null) {
+            return false;
+        }
+        int loopSize = 0;
+        for (var block : loop.getBlocks()) {
+            loopSize += block.getInstructions().size();
+        }
+
+        int trips = getTripCount(bound, budget.maxFullUnrollTrips());
+        if (trips >= 0 && trips * loopSize <= Math.min(budget.fullUnrollSize(), sizeLeft)) {
+            fullyUnroll(loop, trips);
+            return true;
+        }
+        int factor = Math.min(budget.factor(), Math.min(budget.partialUnrollSize(), sizeLeft) / loopSize);
+        return factor >= 2 && partiallyUnroll(loop, bound, factor);
+    }
+
+    // the header is the only block leaving the loop, on an icmp of a counter phi and an invariant
+    private LoopBound analyzeBound(Loop loop) {
+        var header = loop.getHeader();
+        if (loop.getLatches().size() != 1 || loop.getLatches().get(0) == header
+                || !loop.getExitingBlocks().equals(Set.of(header))) {
+            return null;
+        }
+        var entries = cfg.getPredecessors(header).stream().filter(pred -> !loop.contains(pred)).toList();
+        if (entries.size() != 1) {
+            return null;
+        }
+        entry = entries.get(0);
+        var brInst = (BrInst) header.getTerminator();
+        if (!(brInst.getCond() instanceof ICmpInst icmpInst) || icmpInst.getBasicBlock() != header) {
+            return null;
+        }
+
+        var cond = icmpInst.getCond();
+        var counterSide = icmpInst.getLeft();
+        var bound = icmpInst.getRight();
+        if (!isCounter(counterSide, header)) {
+            cond = cond.swapped();
+            counterSide = icmpInst.getRight();
+            bound = icmpInst.getLeft();
+        }
+        if (!loop.contains(brInst.getTrueBranch())) {
+            cond = cond.negated();
+        }
+        if (!isCounter(counterSide, header) || bound instanceof Instruction inst && loop.contains(inst.getBasicBlock())) {
+            return null;
+        }
+
+        var counter = (PhiInst) counterSide;
+        var init = counter.getIncomingValue(entry);
+        if (!(counter.getIncomingValue(loop.getLatches().get(0)) instanceof BinaryInst next)) {
+            return null;
+        }
+        var left = next.getLeft();
+        var right = next.getRight();
+        if (next.getOp() == BinaryInstOp.ADD && left == counter && right instanceof ImmediateValue step) {
+            return new LoopBound(counter, init, step.getValue(), cond, bound);
+        } else if (next.getOp() == BinaryInstOp.ADD && right == counter && left instanceof ImmediateValue step) {
+            return new LoopBound(counter, init, step.getValue(), cond, bound);
+        } else if (next.getOp() == BinaryInstOp.SUB && left == counter && right instanceof ImmediateValue step) {
+            return new LoopBound(counter, init, -step.getValue(), cond, bound);
+        }
+        return null;
+    }
+
+    private static boolean isCounter(Value value, BasicBlock header) {
+        return value instanceof PhiInst phiInst && phiInst.getBasicBlock() == header
+                && phiInst.getIncomingBlocks().size() == 2;
+    }
+
+    // the iterations are simulated for a constant init and bound, -1 if there are too many or they are unknown
+    private static int getTripCount(LoopBound bound, int maxTrips) {
+        if (!(bound.init() instanceof ImmediateValue init) || !(bound.bound() instanceof ImmediateValue limit)) {
+            return -1;
+        }
+        int value = init.getValue();
+        for (int trips = 0; trips <= maxTrips; trips++) {
+            if (!bound.cond().evaluate(value, limit.getValue())) {
+                return trips;
+            }
+            value += bound.step();
+        }
+        return -1;
+    }
+
+    // the copies are chained from the entry, the last one only evaluating the header before leaving
+    private void fullyUnroll(Loop loop, int trips) {
+        var header = loop.getHeader();
+        var latch = loop.getLatches().get(0);
+        var brInst = (BrInst) header.getTerminator();
+        var body = loop.contains(brInst.getTrueBranch()) ? brInst.getTrueBranch() : brInst.getFalseBranch();
+        var exit = loop.contains(brInst.getTrueBranch()) ? brInst.getFalseBranch() : brInst.getTrueBranch();
+        var blocks = getBlocksInLayoutOrder(loop);
+
+        Map<Value, Value> phiValues = new HashMap<>();
+        for (var phiInst : header.getPhiInsts()) {
+            phiValues.put(phiInst, phiInst.getIncomingValue(entry));
+        }
+        var pos = header.getPrevBasicBlock();
+        var prevLatch = entry;
+        var prevHeader = header;
+        for (int i = 0; i <= trips; i++) {
+            Map<Value, Value> valueMap = new HashMap<>(phiValues);
+            pos = cloneBlocks(i < trips ? blocks : List.of(header), i < trips ? body : exit, valueMap, pos);
+            var headerCopy = (BasicBlock) valueMap.get(header);
+            prevLatch.replaceSuccessor(prevHeader, headerCopy);
+            if (i == trips) {
+                replaceUsesOutside(loop, valueMap);
+                for (var phiInst : exit.getPhiInsts()) {
+                    phiInst.replaceIncomingBlock(header, headerCopy);
+                }
+                break;
+            }
+            prevHeader = headerCopy;
+            prevLatch = (BasicBlock) valueMap.get(latch);
+            for (var phiInst : header.getPhiInsts()) {
+                var next = phiInst.getIncomingValue(latch);
+                phiValues.put(phiInst, valueMap.getOrDefault(next, next));
+            }
+        }
+
+        for (var block : blocks) {
+            for (var inst : block.getInstructions()) {
+                inst.removeOperandUses();
+            }
+            header.getFunction().removeBasicBlock(block);
+        }
+    }
+
+    // only values of the header are used after the loop, since it is the only block leaving it
+    private static void replaceUsesOutside(Loop loop, Map<Value, Value> valueMap) {
+        for (var inst : loop.getHeader().getInstructions()) {
+            for (var use : new ArrayList<>(inst.getUseList())) {
+                if (use.getUser() instanceof Instruction user && !loop.contains(user.getBasicBlock())) {
+                    user.replaceOperand(use.getPos(), valueMap.get(inst));
+                }
+            }
+        }
+    }
+
+    // the new loop tests the counter factor - 1 steps ahead, so that the copies in between need no test, which
+    // holds as long as the counter moves towards the bound and the limit does not wrap around, a bound only known at
+    // run time is checked in the preheader, which goes to the original loop if the limit would wrap
+    private boolean partiallyUnroll(Loop loop, LoopBound bound, int factor) {
+        var cond = bound.cond();
+        boolean towardsBound = switch (cond) {
+            case SLT, SLE -> bound.step() > 0;
+            case SGT, SGE -> bound.step() < 0;
+            case EQ, NE -> false;
+        };
+        long offset = (long) (factor - 1) * bound.step();
+        if (!towardsBound || offset != (int) offset) {
+            return false;
+        }
+        Value limit = null;
+        if (bound.bound() instanceof ImmediateValue immediateBound) {
+            long value = immediateBound.getValue() - offset;
+            if (value != (int) value) {
+                return false;
+            }
+            limit = new ImmediateValue((int) value);
+        }
+
+        var header = loop.getHeader();
+        var latch = loop.getLatches().get(0);
+        var brInst = (BrInst) header.getTerminator();
+        var body = loop.contains(brInst.getTrueBranch()) ? brInst.getTrueBranch() : brInst.getFalseBranch();
+        var blocks = getBlocksInLayoutOrder(loop);
+        var preheader = loop.getOrCreatePreheader(cfg);
+        ICmpInst guardInst = null;
+        if (limit == null) {
+            long edge = offset > 0 ? Integer.MIN_VALUE + offset : Integer.MAX_VALUE + offset;
+            guardInst = new ICmpInst(offset > 0 ? ICmpInstCond.SGE : ICmpInstCond.SLE, bound.bound(),
+                    new ImmediateValue((int) edge));
+            preheader.insertInstructionBefore(preheader.getTerminator(), guardInst);
+            var limitInst = new BinaryInst(BinaryInstOp.SUB, bound.bound(), new ImmediateValue((int) offset));
+            preheader.insertInstructionBefore(preheader.getTerminator(), limitInst);
+            limit = limitInst;
+        }
+
+        var newHeader = header.getFunction().createBasicBlockAfter(header.getPrevBasicBlock());
+        newHeader.setLoopNum(header.getLoopNum());
+        Map<PhiInst, PhiInst> newPhiInsts = new LinkedHashMap<>();
+        Map<Value, Value> phiValues = new HashMap<>();
+        for (var phiInst : header.getPhiInsts()) {
+            var newPhiInst = (PhiInst) newHeader.createPhiInstAndInsertToFront(phiInst.getType().clone());
+            newPhiInst.addIncoming(phiInst.getIncomingValue(preheader), preheader);
+            newPhiInsts.put(phiInst, newPhiInst);
+            phiValues.put(phiInst, newPhiInst);
+        }
+        var icmpInst = new ICmpInst(cond, newPhiInsts.get(bound.counter()), limit);
+        newHeader.insertInstruction(icmpInst);
+
+        var pos = newHeader;
+        BasicBlock firstHeader = null;
+        BasicBlock prevHeader = null;
+        BasicBlock prevLatch = null;
+        for (int i = 0; i < factor; i++) {
+            Map<Value, Value> valueMap = new HashMap<>(phiValues);
+            pos = cloneBlocks(blocks, body, valueMap, pos);
+            var headerCopy = (BasicBlock) valueMap.get(header);
+            if (prevLatch == null) {
+                firstHeader = headerCopy;
+            } else {
+                prevLatch.replaceSuccessor(prevHeader, headerCopy);
+            }
+            prevHeader = headerCopy;
+            prevLatch = (BasicBlock) valueMap.get(latch);
+            for (var phiInst : header.getPhiInsts()) {
+                var next = phiInst.getIncomingValue(latch);
+                phiValues.put(phiInst, valueMap.getOrDefault(next, next));
+            }
+        }
+        prevLatch.replaceSuccessor(prevHeader, newHeader);
+        newHeader.insertInstruction(new BrInst(icmpInst, firstHeader, header));
+
+        // the original loop runs the remaining iterations, or all of them if the guard fails
+        for (var phiInst : header.getPhiInsts()) {
+            var newPhiInst = newPhiInsts.get(phiInst);
+            newPhiInst.addIncoming(phiValues.get(phiInst), prevLatch);
+            if (guardInst == null) {
+                phiInst.removeIncoming(preheader);
+            }
+            phiInst.addIncoming(newPhiInst, newHeader);
+        }
+        if (guardInst == null) {
+            preheader.replaceSuccessor(header, newHeader);
+        } else {
+            var oldBrInst = preheader.getTerminator();
+            var guardBrInst = new BrInst(guardInst, newHeader, header);
+            preheader.getInstructions().replace(oldBrInst, guardBrInst);
+            guardBrInst.setBasicBlock(preheader);
+            oldBrInst.removeOperandUses();
+            header.getFunction().markCFGModified();
+        }
+        visitedHeaders.add(newHeader);
+        return true;
+    }
+
+    private static List<BasicBlock> getBlocksInLayoutOrder(Loop loop) {
+        List<BasicBlock> blocks = new ArrayList<>();
+        blocks.add(loop.getHeader());
+        for (var block : loop.getHeader().getFunction().getBasicBlocks()) {
+            if (loop.contains(block) && block != loop.getHeader()) {
+                blocks.add(block);
+            }
+        }
+        return blocks;
+    }
+
+    // the blocks are copied after pos, the header first, whose phi insts are given in the value map and whose copy
+    // jumps to the copy of headerSucc, the copy of the latch is left jumping to the copy of the header
+    private static BasicBlock cloneBlocks(List<BasicBlock> blocks, BasicBlock headerSucc, Map<Value, Value> valueMap,
+                                          BasicBlock pos) {
+        var header = blocks.get(0);
+        for (var block : blocks) {
+            var newBlock = header.getFunction().createBasicBlockAfter(pos);
+            newBlock.setLoopNum(block.getLoopNum());
+            valueMap.put(block, newBlock);
+            pos = newBlock;
+        }
+
+        List<Instruction> newInsts = new ArrayList<>();
+        for (var block : blocks) {
+            var newBlock = (BasicBlock) valueMap.get(block);
+            for (var inst : block.getInstructions()) {
+                if (block == header && inst instanceof PhiInst) {
+                    continue;
+                }
+                var newInst = block == header && inst == header.getTerminator()
+                        ? new BrInst((BasicBlock) valueMap.getOrDefault(headerSucc, headerSucc))
+                        : InlinePass.copyInstruction(inst, valueMap);
+                valueMap.put(inst, newInst);
+                newBlock.insertInstruction(newInst);
+                newInsts.add(newInst);
+            }
+        }
+        for (var newInst : newInsts) {
+            var operands = newInst.getOperands();
+            for (int i = 0; i < operands.size(); i++) {
+                if (valueMap.containsKey(operands.get(i))) {
+                    newInst.replaceOperand(i, valueMap.get(operands.get(i)));
+                }
+            }
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,178 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.*;
+import sysy.backend.ir.inst.*;
+
+import java.util.*;
+
+public class Mem2RegPass implements Pass {
+    private final Map<PhiInst, AllocaInst> phiAllocaMap = new HashMap<>();
+    private DominatorAnalyzer domAnalyzer;
+
+    @Override
+    public String getName() {
+        return "mem2reg";
+    }
+
+    @Override
+    public Set<Class<?>> getRequiredAnalyses() {
+        return Set.of(DominatorAnalyzer.class);
+    }
+
+    @Override
+    public boolean passFunc(Function func) {
+        boolean changed = false;
+        for (var block : func.getBasicBlocks()) {
+            changed |= removeInstsAfterTerminator(block);
+        }
+
+        domAnalyzer = AnalysisManager.getInstance().getDominatorAnalyzer(func);
+        changed |= SimplifyCFGPass.removeUnreachableBlocks(func);
+
+        var allocaInsts = getPromotableAllocaInsts(func);
+        if (allocaInsts.isEmpty()) {
+            return changed;
+        }
+
+        phiAllocaMap.clear();
+        insertPhiInsts(allocaInsts);
+        rename(func.getFirstBasicBlock(), new HashSet<>(allocaInsts));
+
+        for (var allocaInst : allocaInsts) {
+            allocaInst.replaceAllUseWith(null, false);
+        }
+        return true;
+    }
+
+    private boolean removeInstsAfterTerminator(BasicBlock block) {
+        var insts = block.getInstructions();
+        for (var inst : insts) {
+            if (inst instanceof BrInst || inst instanceof ReturnInst) {
+                boolean changed = insts.getLast() != inst;
+                while (insts.getLast() != inst) {
+                    insts.getLast().replaceAllUseWith(null, false);
+                }
+                return changed;
+            }
+        }
+        return false;
+    }
+
+    private List<AllocaInst> getPromotableAllocaInsts(Function func) {
+        List<AllocaInst> allocaInsts = new ArrayList<>();
+        for (var inst : func.getFirstBasicBlock().getInstructions()) {
+            if (inst instanceof AllocaInst allocaInst
+                    && (allocaInst.getDataType().getArrayDims().isEmpty() || allocaInst.getDataType().getPtrNum() > 0)) {
+                allocaInsts.add(allocaInst);
+            }
+        }
+
+        Set<AllocaInst> escapedAllocaInsts = new HashSet<>();
+        for (var block : func.getBasicBlocks()) {
+            for (var inst : block.getInstructions()) {
+                var operands = inst.getOperands();
+                for (int pos = 0; pos < operands.size(); pos++) {
+                    if (!(operands.get(pos) instanceof AllocaInst allocaInst)) {
+                        continue;
+                    }
+                    boolean isLoadOrStorePtr = inst instanceof LoadInst || (inst instanceof StoreInst && pos == 1);
+                    if (!isLoadOrStorePtr) {
+                        escapedAllocaInsts.add(allocaInst);
+                    }
+                }
+            }
+        }
+
+        allocaInsts.removeAll(escapedAllocaInsts);
+        return allocaInsts;
+    }
+
+    private void insertPhiInsts(List<AllocaInst> allocaInsts) {
+        for (var allocaInst : allocaInsts) {
+            Set<BasicBlock> defBlocks = new LinkedHashSet<>();
+            for (var use : allocaInst.getUseList()) {
+                if (use.getUser() instanceof StoreInst storeInst) {
+                    defBlocks.add(storeInst.getBasicBlock());
+                }
+            }
+
+            Set<BasicBlock> phiBlocks = new HashSet<>();
+            Queue<BasicBlock> workList = new ArrayDeque<>(defBlocks);
+            while (!workList.isEmpty()) {
+                var block = workList.poll();
+                for (var frontier : domAnalyzer.getDominanceFrontier(block)) {
+                    if (phiBlocks.add(frontier)) {
+                        var phiInst = (PhiInst) frontier.createPhiInstAndInsertToFront(allocaInst.getDataType());
+                        phiAllocaMap.put(phiInst, allocaInst);
+                        if (!defBlocks.contains(frontier)) {
+                            workList.add(frontier);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private record RenameFrame(Iterator<BasicBlock> children, List<AllocaInst> definedAllocaInsts) {}
+
+    // walks the dominator tree with an explicit stack, each alloca has a stack of its values, the top being current,
+    // and a block pops what it pushed when left
+    private void rename(BasicBlock entry, Set<AllocaInst> allocaInsts) {
+        Map<AllocaInst, Deque<Value>> valueStacks = new HashMap<>();
+        for (var allocaInst : allocaInsts) {
+            valueStacks.put(allocaInst, new ArrayDeque<>());
+        }
+
+        Deque<RenameFrame> frames = new ArrayDeque<>();
+        frames.push(renameBlock(entry, valueStacks));
+        while (!frames.isEmpty()) {
+            var frame = frames.peek();
+            if (frame.children().hasNext()) {
+                frames.push(renameBlock(frame.children().next(), valueStacks));
+                continue;
+            }
+            frames.pop();
+            for (var allocaInst : frame.definedAllocaInsts()) {
+                valueStacks.get(allocaInst).pop();
+            }
+        }
+    }
+
+    private RenameFrame renameBlock(BasicBlock block, Map<AllocaInst, Deque<Value>> valueStacks) {
+        List<AllocaInst> definedAllocaInsts = new ArrayList<>();
+        for (var inst : block.getInstructions()) {
+            if (inst instanceof PhiInst phiInst && phiAllocaMap.containsKey(phiInst)) {
+                valueStacks.get(phiAllocaMap.get(phiInst)).push(phiInst);
+                definedAllocaInsts.add(phiAllocaMap.get(phiInst));
+            } else if (inst instanceof LoadInst loadInst
+                    && loadInst.getPtr() instanceof AllocaInst allocaInst
+                    && valueStacks.containsKey(allocaInst)) {
+                inst.replaceAllUseWith(getCurrValue(valueStacks.get(allocaInst)), false);
+            } else if (inst instanceof StoreInst storeInst
+                    && storeInst.getPtr() instanceof AllocaInst allocaInst
+                    && valueStacks.containsKey(allocaInst)) {
+                valueStacks.get(allocaInst).push(storeInst.getValue());
+                definedAllocaInsts.add(allocaInst);
+                inst.replaceAllUseWith(null, false);
+            }
+        }
+
+        for (var succ : block.getSuccessors()) {
+            for (var phiInst : succ.getPhiInsts()) {
+                if (phiAllocaMap.containsKey(phiInst)) {
+                    phiInst.addIncoming(getCurrValue(valueStacks.get(phiAllocaMap.get(phiInst))), block);
+                }
+            }
+        }
+
+        return new RenameFrame(domAnalyzer.getDominatorTreeChildren(block).iterator(), definedAllocaInsts);
+    }
+
+    private static Value getCurrValue(Deque<Value> valueStack) {
+        var value = valueStack.peek();
+        if (value == null) { // read before any store, the value is undefined
+            return new ImmediateValue(0);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,58 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.*;
+import sysy.backend.ir.inst.*;
+
+import java.util.*;
+
+// memory some instructions may write to, a pointer from the caller never points to a local alloca, while a callee
+// writes to what its summary says
+public class MemoryEffects {
+    private final AliasAnalyzer aliasAnalyzer;
+    private final Set<Value> writtenObjects = new HashSet<>();
+    private boolean writesGlobals = false;
+    private boolean writesUnknown = false; // through pointers passed by the caller
+
+    public MemoryEffects(AliasAnalyzer aliasAnalyzer) {
+        this.aliasAnalyzer = aliasAnalyzer;
+    }
+
+    public MemoryEffects(AliasAnalyzer aliasAnalyzer, Collection<BasicBlock> blocks) {
+        this(aliasAnalyzer);
+        for (var block : blocks) {
+            for (var inst : block.getInstructions()) {
+                add(inst);
+            }
+        }
+    }
+
+    public void add(Instruction inst) {
+        if (inst instanceof StoreInst storeInst) {
+            addObject(AliasAnalyzer.getBaseObject(storeInst.getPtr()));
+        } else if (inst instanceof CallInst callInst) {
+            aliasAnalyzer.getModifiedObjects(callInst).forEach(this::addObject);
+        }
+    }
+
+    private void addObject(Value base) {
+        if (AliasAnalyzer.isIdentifiedObject(base)) {
+            writtenObjects.add(base);
+            writesGlobals |= base instanceof GlobalValue;
+        } else {
+            writesUnknown = true;
+        }
+    }
+
+    // allocas and globals written to by their own address or by a callee they are passed to
+    public Set<Value> getWrittenObjects() {
+        return writtenObjects;
+    }
+
+    public boolean writesGlobals() {
+        return writesGlobals;
+    }
+
+    public boolean writesUnknown() {
+        return writesUnknown;
+    }
+}
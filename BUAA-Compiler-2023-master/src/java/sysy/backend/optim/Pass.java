@@ -0,0 +1,22 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.Function;
+
+import java.util.Set;
+
+public interface Pass {
+    String getName();
+
+    // returns true if the function is modified
+    boolean passFunc(Function func);
+
+    // analyses which are computed by the pass manager before the pass runs
+    default Set<Class<?>> getRequiredAnalyses() {
+        return Set.of();
+    }
+
+    // analyses which are still valid after the pass modified a function
+    default Set<Class<?>> getPreservedAnalyses() {
+        return AnalysisManager.CFG_ANALYSES;
+    }
+}
@@ -0,0 +1,130 @@
+package sysy.backend.optim;
+
+import sysy.backend.Instrumentation;
+import sysy.backend.ir.Function;
+import sysy.backend.ir.Module;
+
+import java.util.*;
+
+public class PassManager {
+    private static final int MAX_ITERATIONS = 32;
+
+    private final Module irModule;
+    private final List<Stage> stages = new ArrayList<>();
+    private final AnalysisManager analysisManager = AnalysisManager.getInstance();
+    private final Instrumentation instrumentation = Instrumentation.getInstance();
+
+    private record Stage(List<Pass> passes, boolean fixedPoint) {}
+
+    public PassManager(Module irModule) {
+        this.irModule = irModule;
+    }
+
+    public static PassManager createPipeline(Module irModule, int optLevel) {
+        return createPipeline(irModule, optLevel, UnrollBudget.DEFAULT);
+    }
+
+    public static PassManager createPipeline(Module irModule, int optLevel, UnrollBudget unrollBudget) {
+        var passManager = new PassManager(irModule);
+        if (optLevel <= 0) {
+            return passManager;
+        }
+
+        passManager.addPass(new Mem2RegPass());
+        passManager.addPass(new TailRecursionEliminationPass()); // functions left not recursive may be inlined
+        passManager.addPass(new InlinePass(irModule));
+        if (optLevel == 1) {
+            passManager.addFixedPointPasses(new SparseConditionalConstantPropagationPass(), new ConstFoldPass());
+            passManager.addPass(new LVNPass(irModule));
+            passManager.addPass(new DeadStoreEliminationPass(irModule));
+            passManager.addPass(new DeadCodeEliminationPass());
+        } else {
+            // loops are unrolled before strength reduction replaces their counters
+            passManager.addFixedPointPasses(
+                    new SparseConditionalConstantPropagationPass(),
+                    new ConstFoldPass(),
+                    new GVNPass(irModule),
+                    new LoopInvariantCodeMotionPass(irModule),
+                    new DeadStoreEliminationPass(irModule),
+                    new AggressiveDeadCodeEliminationPass()
+            );
+            passManager.addPass(new LoopUnrollPass(unrollBudget));
+            passManager.addFixedPointPasses(
+                    new SparseConditionalConstantPropagationPass(),
+                    new ConstFoldPass(),
+                    new GVNPass(irModule),
+                    new LoopInvariantCodeMotionPass(irModule),
+                    new StrengthReductionPass(),
+                    new DeadStoreEliminationPass(irModule),
+                    new AggressiveDeadCodeEliminationPass()
+            );
+        }
+        passManager.addPass(new SimplifyCFGPass()); // the shape of loops other passes look for is not kept
+        return passManager;
+    }
+
+    public PassManager addPass(Pass pass) {
+        stages.add(new Stage(List.of(pass), false));
+        return this;
+    }
+
+    // the passes are run in order on a function again and again until none of them modifies it
+    public PassManager addFixedPointPasses(Pass... passes) {
+        stages.add(new Stage(List.of(passes), true));
+        return this;
+    }
+
+    public Module run() {
+        for (var stage : stages) {
+            runStage(stage);
+        }
+        analysisManager.clear();
+        return irModule;
+    }
+
+    // functions are visited callees first, so a caller sees them optimized
+    private void runStage(Stage stage) {
+        var callGraph = new CallGraphAnalyzer(irModule);
+        callGraph.analyze();
+        Queue<Function> workList = new ArrayDeque<>(callGraph.getBottomUpOrder());
+        Map<Function, Integer> iterations = new LinkedHashMap<>();
+        while (!workList.isEmpty()) {
+            var func = workList.poll();
+            int iteration = iterations.merge(func, 1, Integer::sum);
+
+            boolean changed = false;
+            for (var pass : stage.passes()) {
+                changed |= runPass(pass, func, iteration);
+            }
+            if (changed && stage.fixedPoint() && iteration < MAX_ITERATIONS) {
+                workList.add(func);
+            }
+        }
+
+        if (stage.fixedPoint()) {
+            var stageName = String.join("+", stage.passes().stream().map(Pass::getName).toList());
+            iterations.forEach((func, count) -> instrumentation.recordIterations(stageName, func.getName(), count));
+        }
+    }
+
+    private boolean runPass(Pass pass, Function func, int iteration) {
+        for (var analysis : pass.getRequiredAnalyses()) {
+            var measurement = instrumentation.begin(analysis.getSimpleName(), func, iteration);
+            analysisManager.getAnalysis(analysis, func);
+            if (measurement != null) {
+                measurement.end(func, false);
+            }
+        }
+
+        var measurement = instrumentation.begin(pass.getName(), func, iteration);
+        boolean changed = pass.passFunc(func);
+        if (measurement != null) {
+            measurement.end(func, changed);
+        }
+
+        if (changed) {
+            analysisManager.invalidate(func, pass.getPreservedAnalyses());
+        }
+        return changed;
+    }
+}
@@ -0,0 +1,155 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.BasicBlock;
+
+import java.util.*;
+
+// dominators on the reverse CFG, whose root is a virtual exit after all returning blocks,
+// blocks which never reach a return (infinite loops) are left out
+public class PostDominatorAnalyzer {
+    private final ControlFlowAnalyzer cfg;
+    private final List<BasicBlock> order = new ArrayList<>(); // reverse postorder on the reverse CFG, exit excluded
+    private final Map<BasicBlock, Integer> orderIndex = new HashMap<>();
+    private final Map<BasicBlock, BasicBlock> immediatePostDominators = new HashMap<>(); // null means the exit
+    private final Map<BasicBlock, Set<BasicBlock>> controlDependences = new HashMap<>();
+
+    public PostDominatorAnalyzer(ControlFlowAnalyzer cfg) {
+        this.cfg = cfg;
+    }
+
+    public void analyze() {
+        buildOrder();
+        buildImmediatePostDominators();
+        buildControlDependences();
+    }
+
+    private static boolean isExiting(List<BasicBlock> successors) {
+        return successors.isEmpty();
+    }
+
+    private void buildOrder() {
+        List<BasicBlock> postOrder = new ArrayList<>();
+        Set<BasicBlock> visited = new HashSet<>();
+        Stack<BasicBlock> blockStack = new Stack<>();
+        Stack<Iterator<BasicBlock>> predStack = new Stack<>();
+
+        for (var exit : cfg.getReversePostOrder()) {
+            if (!isExiting(cfg.getSuccessors(exit)) || !visited.add(exit)) {
+                continue;
+            }
+            blockStack.push(exit);
+            predStack.push(cfg.getPredecessors(exit).iterator());
+            while (!blockStack.isEmpty()) {
+                var preds = predStack.peek();
+                if (preds.hasNext()) {
+                    var pred = preds.next();
+                    if (cfg.isReachable(pred) && visited.add(pred)) {
+                        blockStack.push(pred);
+                        predStack.push(cfg.getPredecessors(pred).iterator());
+                    }
+                } else {
+                    postOrder.add(blockStack.pop());
+                    predStack.pop();
+                }
+            }
+        }
+
+        for (int i = postOrder.size()-1; i >= 0; i--) {
+            orderIndex.put(postOrder.get(i), order.size() + 1); // 0 is the exit
+            order.add(postOrder.get(i));
+        }
+    }
+
+    // "A Simple, Fast Dominance Algorithm", Cooper, Harvey and Kennedy
+    private void buildImmediatePostDominators() {
+        Set<BasicBlock> processed = new HashSet<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var block : order) {
+                var successors = cfg.getSuccessors(block);
+                BasicBlock newIpdom = null;
+                boolean found = isExiting(successors); // the exit is processed from the beginning
+                for (var succ : successors) {
+                    if (!processed.contains(succ)) {
+                        continue;
+                    }
+                    newIpdom = found ? intersect(succ, newIpdom) : succ;
+                    found = true;
+                }
+                if (!found) {
+                    continue;
+                }
+                if (!processed.contains(block) || immediatePostDominators.get(block) != newIpdom) {
+                    immediatePostDominators.put(block, newIpdom);
+                    processed.add(block);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private int getIndex(BasicBlock block) {
+        return block == null ? 0 : orderIndex.get(block);
+    }
+
+    private BasicBlock intersect(BasicBlock a, BasicBlock b) {
+        while (a != b) {
+            while (getIndex(a) > getIndex(b)) {
+                a = immediatePostDominators.get(a);
+            }
+            while (getIndex(b) > getIndex(a)) {
+                b = immediatePostDominators.get(b);
+            }
+        }
+        return a;
+    }
+
+    // post dominance frontiers, a block is control dependent on the branches in its frontier
+    private void buildControlDependences() {
+        for (var block : order) {
+            controlDependences.put(block, new LinkedHashSet<>());
+        }
+        for (var block : order) {
+            var successors = cfg.getSuccessors(block);
+            if (successors.size() < 2) {
+                continue;
+            }
+            var ipdom = immediatePostDominators.get(block);
+            for (var succ : successors) {
+                if (!orderIndex.containsKey(succ)) {
+                    continue;
+                }
+                var runner = succ;
+                while (runner != ipdom && runner != null) {
+                    controlDependences.get(runner).add(block);
+                    runner = immediatePostDominators.get(runner);
+                }
+            }
+        }
+    }
+
+    // false for blocks in infinite loops or unreachable ones
+    public boolean reachesExit(BasicBlock block) {
+        return orderIndex.containsKey(block);
+    }
+
+    // null if the block is post dominated by the exit only
+    public BasicBlock getImmediatePostDominator(BasicBlock block) {
+        return immediatePostDominators.get(block);
+    }
+
+    public boolean postDominates(BasicBlock a, BasicBlock b) {
+        while (b != null) {
+            if (a == b) {
+                return true;
+            }
+            b = immediatePostDominators.get(b);
+        }
+        return false;
+    }
+
+    public Set<BasicBlock> getControlDependences(BasicBlock block) {
+        return controlDependences.getOrDefault(block, Set.of());
+    }
+}
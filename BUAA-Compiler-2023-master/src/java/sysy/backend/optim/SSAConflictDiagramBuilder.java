@@ -0,0 +1,59 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.Function;
+import sysy.backend.ir.Value;
+import sysy.backend.ir.inst.PhiInst;
+
+import java.util.*;
+
+public class SSAConflictDiagramBuilder {
+    private final ConflictDiagram diagram;
+
+    public SSAConflictDiagramBuilder(Function func, SSALiveVariableAnalyzer analyzer) {
+        this(func, analyzer, analyzer.getVariables());
+    }
+
+    // values alive in a single block may be nodes as well, they are born and die while walking the block
+    public SSAConflictDiagramBuilder(Function func, SSALiveVariableAnalyzer analyzer, Collection<? extends Value> nodes) {
+        Set<Value> variables = new HashSet<>(nodes);
+        var outSets = analyzer.getOutSets();
+
+        diagram = new ConflictDiagram(new ArrayList<>(nodes));
+
+        for (var block : func.getBasicBlocks()) {
+            Set<Value> liveSet = new HashSet<>(outSets.get(block));
+            liveSet.retainAll(variables);
+
+            for (var inst = block.getTerminator(); inst != null && !(inst instanceof PhiInst); inst = inst.getPrevInstruction()) {
+                // operands are regarded as alive while writing the result, so they never share a register
+                for (var operand : inst.getOperands()) {
+                    if (variables.contains(operand)) {
+                        liveSet.add(operand);
+                    }
+                }
+                if (variables.contains(inst)) {
+                    addConflicts(inst, liveSet);
+                    liveSet.remove(inst);
+                }
+            }
+
+            var phiInsts = block.getPhiInsts().stream().filter(variables::contains).toList();
+            liveSet.addAll(phiInsts); // phi insts are written at the same time
+            for (var phiInst : phiInsts) {
+                addConflicts(phiInst, liveSet);
+            }
+        }
+    }
+
+    private void addConflicts(Value value, Set<Value> liveSet) {
+        for (var live : liveSet) {
+            if (live != value) {
+                diagram.addConflict(value, live);
+            }
+        }
+    }
+
+    public ConflictDiagram getDiagram() {
+        return diagram;
+    }
+}
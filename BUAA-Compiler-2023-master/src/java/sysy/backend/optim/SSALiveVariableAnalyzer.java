@@ -0,0 +1,87 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.BasicBlock;
+import sysy.backend.ir.Function;
+import sysy.backend.ir.Value;
+import sysy.backend.ir.inst.*;
+
+import java.util.*;
+
+public class SSALiveVariableAnalyzer extends DataflowAnalyzer<Value> {
+    private final Set<Value> variables = new LinkedHashSet<>(); // values which live across blocks
+    private final Map<BasicBlock, BitSet> phiUseSets = new HashMap<>();
+
+    public SSALiveVariableAnalyzer(Function func) {
+        super(func);
+    }
+
+    @Override
+    protected boolean isForward() {
+        return false;
+    }
+
+    @Override
+    protected boolean isMay() {
+        return true;
+    }
+
+    @Override
+    protected void initialize() {
+        for (var block : func.getBasicBlocks()) {
+            for (var inst : block.getInstructions()) {
+                if (inst instanceof PhiInst) {
+                    variables.add(inst);
+                }
+                for (var operand : inst.getOperands()) {
+                    if (operand instanceof Instruction instOperand
+                            && !(operand instanceof AllocaInst)
+                            && (instOperand.getBasicBlock() != block || inst instanceof PhiInst)) {
+                        variables.add(instOperand);
+                    }
+                }
+            }
+        }
+        variables.forEach(this::addFact);
+
+        for (var block : func.getBasicBlocks()) {
+            var defSet = getKillSet(block);
+            var useSet = getGenSet(block);
+            for (var inst : block.getInstructions()) {
+                if (!(inst instanceof PhiInst)) { // phi operands are used at the end of predecessors
+                    for (var operand : inst.getOperands()) {
+                        int index = getIndex(operand);
+                        if (index >= 0 && !defSet.get(index)) {
+                            useSet.set(index);
+                        }
+                    }
+                }
+                if (getIndex(inst) >= 0) {
+                    defSet.set(getIndex(inst));
+                }
+            }
+            phiUseSets.put(block, new BitSet());
+        }
+
+        for (var block : func.getBasicBlocks()) {
+            for (var phiInst : block.getPhiInsts()) {
+                var incomingBlocks = phiInst.getIncomingBlocks();
+                var incomingValues = phiInst.getIncomingValues();
+                for (int i = 0; i < incomingBlocks.size(); i++) {
+                    int index = getIndex(incomingValues.get(i));
+                    if (index >= 0) {
+                        phiUseSets.get(incomingBlocks.get(i)).set(index);
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void addBoundaryFacts(BasicBlock block, BitSet value) {
+        value.or(phiUseSets.get(block));
+    }
+
+    public Set<Value> getVariables() {
+        return variables;
+    }
+}
@@ -0,0 +1,232 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.BasicBlock;
+import sysy.backend.ir.Function;
+import sysy.backend.ir.ImmediateValue;
+import sysy.backend.ir.inst.BrInst;
+import sysy.backend.ir.inst.PhiInst;
+
+import java.util.*;
+
+// unreachable blocks are removed, a block holding only a jump is bypassed by its predecessors, and a block is merged
+// into its only predecessor when it is the only successor of that one, then the blocks are laid out so that each one
+// is followed by a successor where possible, for which the target needs no jump
+public class SimplifyCFGPass implements Pass {
+    private final Set<BasicBlock> touchedBlocks = new HashSet<>(); // whose edges are stale in the cfg analyzed
+
+    @Override
+    public String getName() {
+        return "simplify-cfg";
+    }
+
+    @Override
+    public boolean passFunc(Function func) {
+        if (func.getFirstBasicBlock() == null) {
+            return false;
+        }
+        boolean changed = false;
+        boolean simplified = true;
+        while (simplified) {
+            simplified = removeUnreachableBlocks(func);
+            simplified |= foldBranches(func);
+            simplified |= threadJumps(func);
+            simplified |= mergeBlocks(func);
+            changed |= simplified;
+        }
+        return layoutBlocks(func) || changed;
+    }
+
+    // shared by the passes leaving blocks unreachable, the phi insts of reachable successors lose their incomings
+    static boolean removeUnreachableBlocks(Function func) {
+        var cfg = AnalysisManager.getInstance().getControlFlowAnalyzer(func);
+        boolean changed = false;
+        for (var block : new ArrayList<>(func.getBasicBlocks())) {
+            if (cfg.isReachable(block)) {
+                continue;
+            }
+            for (var succ : block.getSuccessors()) {
+                if (cfg.isReachable(succ)) {
+                    for (var phiInst : succ.getPhiInsts()) {
+                        phiInst.removeIncoming(block);
+                    }
+                }
+            }
+            for (var inst : block.getInstructions()) {
+                inst.removeOperandUses();
+            }
+            func.removeBasicBlock(block);
+            changed = true;
+        }
+        return changed;
+    }
+
+    // a branch on a constant or to one block either way jumps unconditionally
+    private boolean foldBranches(Function func) {
+        boolean changed = false;
+        for (var block : func.getBasicBlocks()) {
+            if (!(block.getTerminator() instanceof BrInst brInst) || brInst.getCond() == null) {
+                continue;
+            }
+            BasicBlock dest;
+            if (brInst.getTrueBranch() == brInst.getFalseBranch()) {
+                dest = brInst.getTrueBranch();
+            } else if (brInst.getCond() instanceof ImmediateValue immediate) {
+                dest = immediate.getValue() != 0 ? brInst.getTrueBranch() : brInst.getFalseBranch();
+                var notTaken = immediate.getValue() != 0 ? brInst.getFalseBranch() : brInst.getTrueBranch();
+                for (var phiInst : notTaken.getPhiInsts()) {
+                    phiInst.removeIncoming(block);
+                }
+            } else {
+                continue;
+            }
+            brInst.replaceAllUseWith(new BrInst(dest), true);
+            changed = true;
+        }
+        return changed;
+    }
+
+    // the predecessors of a block holding only a jump go to its target instead, unless the target has phi insts
+    // which would get different values from one of them, or the block is where the copies for them are placed on a
+    // conditional edge, which the target would have to split again
+    private boolean threadJumps(Function func) {
+        var cfg = AnalysisManager.getInstance().getControlFlowAnalyzer(func);
+        touchedBlocks.clear();
+        boolean changed = false;
+        for (var block : new ArrayList<>(func.getBasicBlocks())) {
+            if (block == func.getFirstBasicBlock() || block.getInstructions().size() != 1
+                    || !(block.getTerminator() instanceof BrInst brInst) || brInst.getCond() != null) {
+                continue;
+            }
+            var dest = brInst.getDest();
+            var preds = cfg.getPredecessors(block);
+            if (dest == block || touchedBlocks.contains(block) || touchedBlocks.contains(dest)
+                    || preds.stream().anyMatch(touchedBlocks::contains)) {
+                continue;
+            }
+
+            var destPreds = cfg.getPredecessors(dest);
+            var phiInsts = dest.getPhiInsts();
+            boolean allThreaded = true;
+            for (var pred : preds) {
+                boolean isDestPred = destPreds.contains(pred);
+                boolean isConditional = ((BrInst) pred.getTerminator()).getCond() != null;
+                if (!phiInsts.isEmpty() && isConditional || isDestPred && !phiInsts.stream().allMatch(phiInst ->
+                        phiInst.getIncomingValue(pred) == phiInst.getIncomingValue(block))) {
+                    allThreaded = false;
+                    continue;
+                }
+                pred.replaceSuccessor(block, dest);
+                if (!isDestPred) {
+                    for (var phiInst : phiInsts) {
+                        phiInst.addIncoming(phiInst.getIncomingValue(block), pred);
+                    }
+                }
+                touchedBlocks.add(pred);
+                changed = true;
+            }
+            touchedBlocks.add(block);
+            touchedBlocks.add(dest);
+            if (allThreaded && !preds.isEmpty()) {
+                for (var phiInst : phiInsts) {
+                    phiInst.removeIncoming(block);
+                }
+                brInst.removeOperandUses();
+                func.removeBasicBlock(block);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    // a block jumping to a block whose only predecessor it is takes its instructions
+    private boolean mergeBlocks(Function func) {
+        var cfg = AnalysisManager.getInstance().getControlFlowAnalyzer(func);
+        touchedBlocks.clear();
+        boolean changed = false;
+        for (var block : new ArrayList<>(func.getBasicBlocks())) {
+            if (!func.getBasicBlocks().contains(block) || touchedBlocks.contains(block)
+                    || !(block.getTerminator() instanceof BrInst brInst) || brInst.getCond() != null) {
+                continue;
+            }
+            var succ = brInst.getDest();
+            if (succ == block || succ == func.getFirstBasicBlock() || touchedBlocks.contains(succ)
+                    || cfg.getPredecessors(succ).size() != 1) {
+                continue;
+            }
+
+            for (var phiInst : succ.getPhiInsts()) {
+                phiInst.replaceAllUseWith(phiInst.getIncomingValue(block), false);
+            }
+            brInst.replaceAllUseWith(null, false);
+            for (var inst : new ArrayList<>(succ.getInstructions())) {
+                succ.getInstructions().remove(inst);
+                block.insertInstruction(inst);
+            }
+            for (var next : block.getSuccessors()) {
+                for (var phiInst : next.getPhiInsts()) {
+                    phiInst.replaceIncomingBlock(succ, block);
+                }
+            }
+            block.setLoopNum(Math.max(block.getLoopNum(), succ.getLoopNum()));
+            func.removeBasicBlock(succ);
+            touchedBlocks.add(block);
+            touchedBlocks.addAll(block.getSuccessors());
+            changed = true;
+        }
+        return changed;
+    }
+
+    // each block is followed by a successor whose predecessors are all placed but those through back edges, which
+    // is the one staying in the deeper loop and then one with no phi insts, whose copies need a jump anyway, or else
+    // by the first unplaced block in the order they were in
+    private boolean layoutBlocks(Function func) {
+        var cfg = AnalysisManager.getInstance().getControlFlowAnalyzer(func);
+        var loopAnalyzer = AnalysisManager.getInstance().getLoopAnalyzer(func);
+        List<BasicBlock> blocks = new ArrayList<>(func.getBasicBlocks());
+        List<BasicBlock> order = new ArrayList<>(blocks.size());
+        Set<BasicBlock> placed = new HashSet<>();
+        int scanIndex = 0;
+        for (var block = func.getFirstBasicBlock(); block != null; ) {
+            order.add(block);
+            placed.add(block);
+
+            BasicBlock next = null;
+            for (var succ : block.getSuccessors()) {
+                if (!placed.contains(succ) && isReadyToPlace(succ, placed, cfg)
+                        && (next == null || compareFallThrough(succ, next, loopAnalyzer) > 0)) {
+                    next = succ;
+                }
+            }
+            if (next == null) {
+                while (scanIndex < blocks.size() && placed.contains(blocks.get(scanIndex))) {
+                    scanIndex++;
+                }
+                next = scanIndex < blocks.size() ? blocks.get(scanIndex) : null;
+            }
+            block = next;
+        }
+
+        if (order.equals(blocks)) {
+            return false;
+        }
+        func.getBasicBlocks().clear();
+        order.forEach(func.getBasicBlocks()::add);
+        return true;
+    }
+
+    // a join placed after one of its predecessors would make the others jump to it, which may be the frequent path
+    private static boolean isReadyToPlace(BasicBlock block, Set<BasicBlock> placed, ControlFlowAnalyzer cfg) {
+        int index = cfg.getOrderIndex(block);
+        return cfg.getPredecessors(block).stream().allMatch(pred -> placed.contains(pred)
+                || cfg.getOrderIndex(pred) >= index);
+    }
+
+    private static int compareFallThrough(BasicBlock block1, BasicBlock block2, LoopAnalyzer loopAnalyzer) {
+        int depthOrder = Integer.compare(loopAnalyzer.getLoopDepth(block1), loopAnalyzer.getLoopDepth(block2));
+        if (depthOrder != 0) {
+            return depthOrder;
+        }
+        return Boolean.compare(!(block1.getInstructions().getFirst() instanceof PhiInst),
+                !(block2.getInstructions().getFirst() instanceof PhiInst));
+    }
+}
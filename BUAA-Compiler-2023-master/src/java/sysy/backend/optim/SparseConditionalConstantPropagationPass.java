@@ -0,0 +1,221 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.*;
+import sysy.backend.ir.inst.*;
+
+import java.util.*;
+
+// "Constant Propagation with Conditional Branches", Wegman and Zadeck, values are undefined and edges are not
+// executed until proven otherwise, so a constant flowing around a loop and the branches it decides are found
+// together, the branches are then folded and the blocks never reached are removed
+public class SparseConditionalConstantPropagationPass implements Pass {
+    private final Map<Value, LatticeValue> latticeValues = new HashMap<>();
+    private final Set<BasicBlock> executableBlocks = new HashSet<>();
+    private final Set<List<BasicBlock>> executableEdges = new HashSet<>();
+    private final Deque<List<BasicBlock>> edgeWorkList = new ArrayDeque<>();
+    private final Deque<Instruction> instWorkList = new ArrayDeque<>();
+
+    private enum State {
+        UNDEFINED,
+        CONSTANT,
+        OVERDEFINED,
+    }
+
+    private record LatticeValue(State state, int constant) {
+        private static final LatticeValue UNDEFINED = new LatticeValue(State.UNDEFINED, 0);
+        private static final LatticeValue OVERDEFINED = new LatticeValue(State.OVERDEFINED, 0);
+
+        private static LatticeValue of(int constant) {
+            return new LatticeValue(State.CONSTANT, constant);
+        }
+
+        private boolean isConstant() {
+            return state == State.CONSTANT;
+        }
+
+        private LatticeValue meet(LatticeValue other) {
+            if (state == State.UNDEFINED) {
+                return other;
+            } else if (other.state == State.UNDEFINED) {
+                return this;
+            }
+            return this.equals(other) ? this : OVERDEFINED;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "sccp";
+    }
+
+    @Override
+    public boolean passFunc(Function func) {
+        latticeValues.clear();
+        executableBlocks.clear();
+        executableEdges.clear();
+        if (func.getFirstBasicBlock() == null) {
+            return false;
+        }
+
+        executableBlocks.add(func.getFirstBasicBlock());
+        func.getFirstBasicBlock().getInstructions().forEach(this::visit);
+        while (!edgeWorkList.isEmpty() || !instWorkList.isEmpty()) {
+            while (!edgeWorkList.isEmpty()) {
+                var block = edgeWorkList.poll().get(1);
+                if (executableBlocks.add(block)) {
+                    block.getInstructions().forEach(this::visit);
+                } else {
+                    block.getPhiInsts().forEach(this::visit);
+                }
+            }
+            while (!instWorkList.isEmpty()) {
+                var inst = instWorkList.poll();
+                if (executableBlocks.contains(inst.getBasicBlock())) {
+                    visit(inst);
+                }
+            }
+        }
+
+        boolean changed = replaceConstants(func);
+        changed |= SimplifyCFGPass.removeUnreachableBlocks(func);
+        return changed;
+    }
+
+    private LatticeValue getLatticeValue(Value value) {
+        if (value instanceof ImmediateValue immediate) {
+            return LatticeValue.of(immediate.getValue());
+        } else if (value instanceof Instruction) {
+            return latticeValues.getOrDefault(value, LatticeValue.UNDEFINED);
+        }
+        return LatticeValue.OVERDEFINED; // arguments and globals
+    }
+
+    private void visit(Instruction inst) {
+        if (inst instanceof BrInst brInst) {
+            visitBrInst(brInst);
+            return;
+        }
+        var oldValue = getLatticeValue(inst);
+        if (oldValue.state() == State.OVERDEFINED) {
+            return;
+        }
+        var newValue = evaluate(inst);
+        if (oldValue.isConstant() && !newValue.equals(oldValue)) {
+            newValue = LatticeValue.OVERDEFINED; // values only move down the lattice
+        }
+        if (!newValue.equals(oldValue)) {
+            latticeValues.put(inst, newValue);
+            for (var use : inst.getUseList()) {
+                instWorkList.add((Instruction) use.getUser());
+            }
+        }
+    }
+
+    // a branch on a value not known yet is taken both ways, which only happens in code never executed
+    private void visitBrInst(BrInst brInst) {
+        var block = brInst.getBasicBlock();
+        if (brInst.getCond() == null) {
+            markEdgeExecutable(block, brInst.getDest());
+            return;
+        }
+        var cond = getLatticeValue(brInst.getCond());
+        if (!cond.isConstant() || cond.constant() != 0) {
+            markEdgeExecutable(block, brInst.getTrueBranch());
+        }
+        if (!cond.isConstant() || cond.constant() == 0) {
+            markEdgeExecutable(block, brInst.getFalseBranch());
+        }
+    }
+
+    private void markEdgeExecutable(BasicBlock from, BasicBlock to) {
+        var edge = List.of(from, to);
+        if (executableEdges.add(edge)) {
+            edgeWorkList.add(edge);
+        }
+    }
+
+    private LatticeValue evaluate(Instruction inst) {
+        if (inst instanceof PhiInst phiInst) {
+            var result = LatticeValue.UNDEFINED;
+            for (int i = 0; i < phiInst.getIncomingBlocks().size(); i++) {
+                if (executableEdges.contains(List.of(phiInst.getIncomingBlocks().get(i), phiInst.getBasicBlock()))) {
+                    result = result.meet(getLatticeValue(phiInst.getIncomingValues().get(i)));
+                }
+            }
+            return result;
+        } else if (inst instanceof BinaryInst binaryInst) {
+            var left = getLatticeValue(binaryInst.getLeft());
+            var right = getLatticeValue(binaryInst.getRight());
+            var op = binaryInst.getOp();
+            if ((op == BinaryInstOp.MUL || op == BinaryInstOp.AND) && (isZero(left) || isZero(right))) {
+                return LatticeValue.of(0);
+            } else if (left.isConstant() && right.isConstant()) {
+                return fold(op, left.constant(), right.constant());
+            }
+            return left.state() == State.OVERDEFINED || right.state() == State.OVERDEFINED
+                    ? LatticeValue.OVERDEFINED : LatticeValue.UNDEFINED;
+        } else if (inst instanceof ICmpInst icmpInst) {
+            var left = getLatticeValue(icmpInst.getLeft());
+            var right = getLatticeValue(icmpInst.getRight());
+            if (left.isConstant() && right.isConstant()) {
+                return LatticeValue.of(icmpInst.getCond().evaluate(left.constant(), right.constant()) ? 1 : 0);
+            }
+            return left.state() == State.OVERDEFINED || right.state() == State.OVERDEFINED
+                    ? LatticeValue.OVERDEFINED : LatticeValue.UNDEFINED;
+        } else if (inst instanceof ZExtInst zextInst) {
+            return getLatticeValue(zextInst.getValue());
+        }
+        return LatticeValue.OVERDEFINED; // memory and calls
+    }
+
+    private static boolean isZero(LatticeValue value) {
+        return value.isConstant() && value.constant() == 0;
+    }
+
+    // division by zero is left to run, since it does not trap
+    private static LatticeValue fold(BinaryInstOp op, int left, int right) {
+        return switch (op) {
+            case ADD -> LatticeValue.of(left + right);
+            case SUB -> LatticeValue.of(left - right);
+            case MUL -> LatticeValue.of(left * right);
+            case SDIV -> right == 0 ? LatticeValue.OVERDEFINED : LatticeValue.of(left / right);
+            case SREM -> right == 0 ? LatticeValue.OVERDEFINED : LatticeValue.of(left % right);
+            case AND -> LatticeValue.of(left & right);
+            case OR -> LatticeValue.of(left | right);
+        };
+    }
+
+    private boolean replaceConstants(Function func) {
+        boolean changed = false;
+        for (var block : func.getBasicBlocks()) {
+            if (!executableBlocks.contains(block)) {
+                continue;
+            }
+            for (var inst : block.getInstructions()) {
+                var value = latticeValues.get(inst);
+                if (value != null && value.isConstant()) {
+                    inst.replaceAllUseWith(new ImmediateValue(value.constant()), false);
+                    changed = true;
+                }
+            }
+
+            if (block.getTerminator() instanceof BrInst brInst && brInst.getCond() != null) {
+                boolean trueTaken = executableEdges.contains(List.of(block, brInst.getTrueBranch()));
+                boolean falseTaken = executableEdges.contains(List.of(block, brInst.getFalseBranch()));
+                if (trueTaken == falseTaken) {
+                    continue;
+                }
+                var dest = trueTaken ? brInst.getTrueBranch() : brInst.getFalseBranch();
+                var notTaken = trueTaken ? brInst.getFalseBranch() : brInst.getTrueBranch();
+                if (notTaken != dest) {
+                    for (var phiInst : notTaken.getPhiInsts()) {
+                        phiInst.removeIncoming(block);
+                    }
+                }
+                brInst.replaceAllUseWith(new BrInst(dest), true);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+}
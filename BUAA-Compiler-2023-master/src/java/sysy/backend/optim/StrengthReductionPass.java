@@ -0,0 +1,399 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.*;
+import sysy.backend.ir.inst.*;
+
+import java.util.*;
+
+// an address base + i * stride with i an induction variable becomes a pointer advanced by the stride in every
+// iteration, a counter left only for the loop test is then replaced by the pointer, see "Operator Strength
+// Reduction", Cooper, Simpson and Vick
+public class StrengthReductionPass implements Pass {
+    private ControlFlowAnalyzer cfg;
+    private Loop loop;
+    private BasicBlock entry; // where the loop is entered from, replaced by the preheader once something is reduced
+    private BasicBlock latch;
+    private final Map<PhiInst, InductionVariable> inductionVariables = new LinkedHashMap<>();
+    // by the counter it comes from, kept between runs since the other uses of the counter may be removed later
+    private final Map<PhiInst, ReducedPointer> reducedPointers = new HashMap<>();
+    private final Map<List<Object>, PhiInst> sharedPointers = new HashMap<>(); // by the base and the indices
+
+    // the phi starts with init and steps by step in every iteration, in bytes for a pointer
+    private record InductionVariable(PhiInst phiInst, Value init, Instruction next, int step) {}
+
+    // the pointer phi and its value before the loop, advanced by units elements in every iteration
+    private record ReducedPointer(PhiInst phiInst, Value init, int units) {}
+
+    @Override
+    public String getName() {
+        return "strength-reduction";
+    }
+
+    @Override
+    public Set<Class<?>> getRequiredAnalyses() {
+        return Set.of(LoopAnalyzer.class);
+    }
+
+    @Override
+    public boolean passFunc(Function func) {
+        cfg = AnalysisManager.getInstance().getControlFlowAnalyzer(func);
+        var loopAnalyzer = AnalysisManager.getInstance().getLoopAnalyzer(func);
+
+        boolean changed = false;
+        for (var loop : loopAnalyzer.getLoops()) {
+            changed |= passLoop(loop);
+        }
+        return changed;
+    }
+
+    private boolean passLoop(Loop loop) {
+        if (loop.getLatches().size() != 1) {
+            return false;
+        }
+        this.loop = loop;
+        latch = loop.getLatches().get(0);
+        var entries = cfg.getPredecessors(loop.getHeader()).stream().filter(pred -> !loop.contains(pred)).toList();
+        if (entries.size() != 1) {
+            return false;
+        }
+        entry = entries.get(0);
+        sharedPointers.clear();
+
+        // a reduced pointer is an induction variable as well, the geps based on it are reduced in the next round
+        boolean changed = false;
+        boolean reduced = true;
+        while (reduced) {
+            reduced = false;
+            findInductionVariables();
+            for (var gepInst : collectGEPInsts()) {
+                reduced |= reduce(gepInst);
+            }
+            changed |= reduced;
+        }
+        for (var phiInst : loop.getHeader().getPhiInsts()) {
+            var pointer = reducedPointers.get(phiInst);
+            if (inductionVariables.containsKey(phiInst) && pointer != null && isReducedPointer(pointer)
+                    && replaceLoopTest(inductionVariables.get(phiInst), pointer)) {
+                reducedPointers.remove(phiInst);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private List<GetElementPtrInst> collectGEPInsts() {
+        List<GetElementPtrInst> gepInsts = new ArrayList<>();
+        for (var block : loop.getBlocks()) {
+            for (var inst : block.getInstructions()) {
+                if (inst instanceof GetElementPtrInst gepInst) {
+                    gepInsts.add(gepInst);
+                }
+            }
+        }
+        return gepInsts;
+    }
+
+    // header phis going from the preheader value by a constant in every iteration
+    private void findInductionVariables() {
+        inductionVariables.clear();
+        for (var phiInst : loop.getHeader().getPhiInsts()) {
+            if (phiInst.getIncomingBlocks().size() != 2) {
+                continue;
+            }
+            var init = phiInst.getIncomingValue(entry);
+            var next = phiInst.getIncomingValue(latch);
+            if (init == null || next == null) {
+                continue;
+            }
+            if (next instanceof BinaryInst binaryInst && phiInst.getType().getPtrNum() == 0) {
+                var left = binaryInst.getLeft();
+                var right = binaryInst.getRight();
+                if (binaryInst.getOp() == BinaryInstOp.ADD && left == phiInst && right instanceof ImmediateValue step) {
+                    addInductionVariable(phiInst, init, binaryInst, step.getValue());
+                } else if (binaryInst.getOp() == BinaryInstOp.ADD && right == phiInst && left instanceof ImmediateValue step) {
+                    addInductionVariable(phiInst, init, binaryInst, step.getValue());
+                } else if (binaryInst.getOp() == BinaryInstOp.SUB && left == phiInst && right instanceof ImmediateValue step) {
+                    addInductionVariable(phiInst, init, binaryInst, -step.getValue());
+                }
+            } else if (next instanceof GetElementPtrInst gepInst && gepInst.getElementBase() == phiInst
+                    && gepInst.getOffsets().size() == 1 && gepInst.getOffsets().get(0) instanceof ImmediateValue step) {
+                addInductionVariable(phiInst, init, gepInst, step.getValue() * getElementSize(phiInst.getType()));
+            }
+        }
+    }
+
+    private void addInductionVariable(PhiInst phiInst, Value init, Instruction next, int step) {
+        if (step != 0) {
+            inductionVariables.put(phiInst, new InductionVariable(phiInst, init, next, step));
+        }
+    }
+
+    // the gep has either a pointer induction variable as the base, or a single index being an induction variable
+    // plus an invariant, the other operands are invariant
+    private boolean reduce(GetElementPtrInst gepInst) {
+        var base = gepInst.getElementBase();
+        var offsets = gepInst.getOffsets();
+        int elementSize = getElementSize(gepInst.getType());
+
+        // a constant away from a pointer induction variable, as left by unrolling
+        int baseDistance = 0;
+        if (base instanceof GetElementPtrInst baseInst && isCounter(baseInst.getElementBase())
+                && baseInst.getOffsets().size() == 1 && baseInst.getOffsets().get(0) instanceof ImmediateValue distance) {
+            base = baseInst.getElementBase();
+            baseDistance = distance.getValue() * getElementSize(base.getType());
+        }
+        if (isCounter(base)) {
+            if (!offsets.stream().allMatch(this::isInvariant) || offsets.stream().allMatch(o -> o instanceof ImmediateValue)
+                    || baseDistance % elementSize != 0) {
+                return false; // nothing is multiplied
+            }
+            var pointer = inductionVariables.get((PhiInst) base);
+            if (pointer.step() % elementSize != 0) {
+                return false;
+            }
+            List<Object> key = new ArrayList<>();
+            key.add(base);
+            offsets.forEach(value -> key.add(value instanceof ImmediateValue immediate ? immediate.getValue() : value));
+            var reduced = sharedPointers.get(key);
+            if (reduced == null) {
+                reduced = createPointer(pointer.init(), offsets, gepInst, pointer.step() / elementSize);
+                sharedPointers.put(key, reduced);
+            }
+            replaceWithDistance(gepInst, reduced, baseDistance / elementSize);
+            return true;
+        }
+        if (!isInvariant(base)) {
+            return false;
+        }
+
+        int variantPos = -1;
+        for (int i = 0; i < offsets.size(); i++) {
+            if (!isInvariant(offsets.get(i))) {
+                if (variantPos >= 0) {
+                    return false;
+                }
+                variantPos = i;
+            }
+        }
+        if (variantPos < 0) {
+            return false;
+        }
+        var offset = offsets.get(variantPos);
+        InductionVariable counter;
+        BinaryInst variantOffset = null; // counter plus an invariant
+        if (isCounter(offset)) {
+            counter = inductionVariables.get((PhiInst) offset);
+        } else if (offset instanceof BinaryInst binaryInst && isCounterPlusInvariant(binaryInst)) {
+            counter = inductionVariables.get((PhiInst) (isCounter(binaryInst.getLeft())
+                    ? binaryInst.getLeft() : binaryInst.getRight()));
+            variantOffset = binaryInst;
+        } else {
+            return false;
+        }
+        if (counter.phiInst().getType().getPtrNum() != 0) {
+            return false;
+        }
+        var dims = base.getType().getArrayDims();
+        int stride = 4; // bytes between the elements the index selects
+        for (int i = variantPos; i < dims.size(); i++) {
+            stride *= dims.get(i);
+        }
+        if (stride % elementSize != 0) {
+            return false;
+        }
+        int units = counter.step() * (stride / elementSize);
+
+        List<Value> initOffsets = new ArrayList<>(offsets);
+        if (variantOffset == null || getImmediateAddend(variantOffset) != null) {
+            // geps whose indices differ by a constant share a pointer and are offsets from it
+            List<Object> key = new ArrayList<>();
+            key.add(base);
+            for (var value : offsets) { // immediates are compared by value
+                key.add(value == offset ? counter.phiInst() : value instanceof ImmediateValue immediate ? immediate.getValue() : value);
+            }
+            var pointer = sharedPointers.get(key);
+            if (pointer == null) {
+                initOffsets.set(variantPos, counter.init());
+                pointer = createPointer(base, initOffsets, gepInst, units);
+                sharedPointers.put(key, pointer);
+                recordReducedPointer(counter, pointer, units);
+            }
+            replaceWithDistance(gepInst, pointer, variantOffset == null ? 0 : getImmediateAddend(variantOffset) * (stride / elementSize));
+            return true;
+        }
+
+        // the invariant is added to the initial value of the counter before the loop
+        var preheader = getPreheader();
+        var left = variantOffset.getLeft();
+        var right = variantOffset.getRight();
+        var initOffset = isInvariant(left)
+                ? new BinaryInst(variantOffset.getOp(), left, counter.init())
+                : new BinaryInst(variantOffset.getOp(), counter.init(), right);
+        preheader.insertInstructionBefore(preheader.getTerminator(), initOffset);
+        initOffsets.set(variantPos, initOffset);
+        var pointer = createPointer(base, initOffsets, gepInst, units);
+        gepInst.replaceAllUseWith(pointer, false);
+        recordReducedPointer(counter, pointer, units);
+        return true;
+    }
+
+    private static void replaceWithDistance(GetElementPtrInst gepInst, PhiInst pointer, int distance) {
+        if (distance == 0) {
+            gepInst.replaceAllUseWith(pointer, false);
+        } else {
+            gepInst.replaceAllUseWith(new GetElementPtrInst(pointer, List.of(new ImmediateValue(distance))), true);
+        }
+    }
+
+    // a pointer phi starting at gep(initBase, initOffsets) in the preheader, advanced by units in the latch
+    private PhiInst createPointer(Value initBase, List<Value> initOffsets, GetElementPtrInst gepInst, int units) {
+        var preheader = getPreheader();
+        var initInst = new GetElementPtrInst(initBase, initOffsets);
+        preheader.insertInstructionBefore(preheader.getTerminator(), initInst);
+        var phiInst = (PhiInst) loop.getHeader().createPhiInstAndInsertToFront(gepInst.getType().clone());
+        var nextInst = new GetElementPtrInst(phiInst, List.of(new ImmediateValue(units)));
+        latch.insertInstructionBefore(latch.getTerminator(), nextInst);
+        phiInst.addIncoming(initInst, preheader);
+        phiInst.addIncoming(nextInst, latch);
+        return phiInst;
+    }
+
+    private void recordReducedPointer(InductionVariable counter, PhiInst pointer, int units) {
+        if (!reducedPointers.containsKey(counter.phiInst())) {
+            reducedPointers.put(counter.phiInst(), new ReducedPointer(pointer, pointer.getIncomingValue(entry), units));
+        }
+    }
+
+    // created on the first use, the values coming from the entry come from it then
+    private BasicBlock getPreheader() {
+        entry = loop.getOrCreatePreheader(cfg);
+        return entry;
+    }
+
+    private boolean isCounterPlusInvariant(BinaryInst binaryInst) {
+        var left = binaryInst.getLeft();
+        var right = binaryInst.getRight();
+        if (binaryInst.getOp() == BinaryInstOp.ADD) {
+            return isCounter(left) && isInvariant(right) || isCounter(right) && isInvariant(left);
+        }
+        return binaryInst.getOp() == BinaryInstOp.SUB && isCounter(left) && isInvariant(right);
+    }
+
+    // c for i + c, c + i and i - c
+    private static Integer getImmediateAddend(BinaryInst binaryInst) {
+        if (binaryInst.getOp() == BinaryInstOp.ADD && binaryInst.getRight() instanceof ImmediateValue immediate) {
+            return immediate.getValue();
+        } else if (binaryInst.getOp() == BinaryInstOp.ADD && binaryInst.getLeft() instanceof ImmediateValue immediate) {
+            return immediate.getValue();
+        } else if (binaryInst.getOp() == BinaryInstOp.SUB && binaryInst.getRight() instanceof ImmediateValue immediate) {
+            return -immediate.getValue();
+        }
+        return null;
+    }
+
+    private boolean isCounter(Value value) {
+        return value instanceof PhiInst phiInst && inductionVariables.containsKey(phiInst);
+    }
+
+    private boolean isReducedPointer(ReducedPointer pointer) {
+        var phiInst = pointer.phiInst();
+        return phiInst.getBasicBlock() == loop.getHeader() && inductionVariables.containsKey(phiInst)
+                && phiInst.getIncomingValue(entry) == pointer.init();
+    }
+
+    // linear function test replacement, the counter stepping by 1 and used by nothing but the test and its own
+    // increment is compared through the pointer, init + (n - init) * units is where the pointer is when i reaches n,
+    // which is only done for a test being the only exit with constant init and n, and a limit not past the array the
+    // pointer goes through, since addresses compared wrap around much earlier than the counter
+    private boolean replaceLoopTest(InductionVariable counter, ReducedPointer pointer) {
+        if (counter.step() != 1 || pointer.units() <= 0) {
+            return false;
+        }
+        ICmpInst icmpInst = null;
+        for (var value : List.of(counter.phiInst(), counter.next())) {
+            for (var use : value.getUseList()) {
+                var user = use.getUser();
+                if (user == counter.phiInst() || user == counter.next()) {
+                    continue;
+                }
+                if (!(user instanceof ICmpInst userICmpInst) || icmpInst != null && icmpInst != userICmpInst) {
+                    return false;
+                }
+                icmpInst = userICmpInst;
+            }
+        }
+        if (icmpInst == null) {
+            return false;
+        }
+
+        boolean counterOnLeft = icmpInst.getLeft() == counter.phiInst() || icmpInst.getLeft() == counter.next();
+        var counterSide = counterOnLeft ? icmpInst.getLeft() : icmpInst.getRight();
+        var bound = counterOnLeft ? icmpInst.getRight() : icmpInst.getLeft();
+        var exitingBlocks = loop.getExitingBlocks();
+        if (!(bound instanceof ImmediateValue immediateBound) || !(counter.init() instanceof ImmediateValue init)
+                || exitingBlocks.size() != 1
+                || !(exitingBlocks.iterator().next().getTerminator() instanceof BrInst brInst)
+                || brInst.getCond() != icmpInst) {
+            return false;
+        }
+
+        // comparing i + 1 with n is comparing i with n - 1
+        long distance = (long) immediateBound.getValue() - init.getValue();
+        if (counterSide == counter.next()) {
+            distance--;
+        }
+        distance *= pointer.units();
+        long span = distance * getElementSize(pointer.phiInst().getType());
+        if (span < 0 || span > getBytesToEnd(pointer.init())) {
+            return false;
+        }
+        var preheader = getPreheader();
+        var limit = new GetElementPtrInst(pointer.init(), List.of(new ImmediateValue((int) distance)));
+        preheader.insertInstructionBefore(preheader.getTerminator(), limit);
+
+        var newICmpInst = counterOnLeft
+                ? new ICmpInst(icmpInst.getCond(), pointer.phiInst(), limit)
+                : new ICmpInst(icmpInst.getCond(), limit, pointer.phiInst());
+        icmpInst.replaceAllUseWith(newICmpInst, true);
+        return true;
+    }
+
+    // bytes from the pointer to the end of the array in memory it points into through constant indices, -1 if unknown
+    private static long getBytesToEnd(Value ptr) {
+        long offset = 0;
+        for (; ptr instanceof GetElementPtrInst gep; ptr = gep.getElementBase()) {
+            var dims = gep.getElementBase().getType().getArrayDims();
+            for (int i = 0; i < gep.getOffsets().size(); i++) {
+                if (!(gep.getOffsets().get(i) instanceof ImmediateValue immediate)) {
+                    return -1;
+                }
+                long size = 1;
+                for (int j = i; j < dims.size(); j++) {
+                    size *= dims.get(j);
+                }
+                offset += immediate.getValue() * size;
+            }
+        }
+        if (!(ptr instanceof AllocaInst || ptr instanceof GlobalValue) || ptr.getType().getPtrNum() != 1) {
+            return -1;
+        }
+        long total = 1;
+        for (var dim : ptr.getType().getArrayDims()) {
+            total *= dim;
+        }
+        return offset >= 0 && offset <= total ? 4 * (total - offset) : -1;
+    }
+
+    private boolean isInvariant(Value value) {
+        return !(value instanceof Instruction inst) || !loop.contains(inst.getBasicBlock());
+    }
+
+    // bytes between two elements the pointer points to
+    private static int getElementSize(IRType pointerType) {
+        int size = 4;
+        for (var dim : pointerType.getArrayDims()) {
+            size *= dim;
+        }
+        return size;
+    }
+}
@@ -0,0 +1,139 @@
+package sysy.backend.optim;
+
+import sysy.backend.ir.*;
+import sysy.backend.ir.inst.*;
+
+import java.util.*;
+
+// a call whose result is returned right away becomes a tail call, a block which only returns is copied into the
+// blocks jumping to it after a call so that the call is followed by the return, a tail call to the function itself
+// then jumps back to its entry with the arguments passed through phi insts, others are left for the target to jump
+public class TailRecursionEliminationPass implements Pass {
+    @Override
+    public String getName() {
+        return "tail-recursion-elimination";
+    }
+
+    @Override
+    public boolean passFunc(Function func) {
+        if (func.getFirstBasicBlock() == null) {
+            return false;
+        }
+        boolean changed = foldReturns(func);
+
+        List<CallInst> tailCalls = new ArrayList<>();
+        for (var block : func.getBasicBlocks()) {
+            var callInst = getTailCall(block);
+            if (callInst != null && callInst.getFunc() == func && !passesLocalMemory(callInst)) {
+                tailCalls.add(callInst);
+            }
+        }
+        if (tailCalls.isEmpty()) {
+            return changed;
+        }
+
+        // allocas are moved to a new entry so that they are not in the loop
+        var header = func.getFirstBasicBlock();
+        var entry = new BasicBlock(func);
+        func.getBasicBlocks().addFirst(entry);
+        func.markCFGModified();
+        for (var inst : new ArrayList<>(header.getInstructions())) {
+            if (inst instanceof AllocaInst) {
+                header.getInstructions().remove(inst);
+                entry.insertInstruction(inst);
+            }
+        }
+        entry.insertInstruction(new BrInst(header));
+
+        List<PhiInst> argPhiInsts = new ArrayList<>();
+        for (var arg : func.getArguments()) {
+            var phiInst = (PhiInst) header.createPhiInstAndInsertToFront(arg.getType().clone());
+            for (var use : new ArrayList<>(arg.getUseList())) {
+                use.getUser().replaceOperand(use.getPos(), phiInst);
+            }
+            phiInst.addIncoming(arg, entry);
+            argPhiInsts.add(phiInst);
+        }
+        for (var callInst : tailCalls) {
+            var block = callInst.getBasicBlock();
+            for (int i = 0; i < argPhiInsts.size(); i++) {
+                argPhiInsts.get(i).addIncoming(callInst.getParams().get(i), block);
+            }
+            block.getTerminator().replaceAllUseWith(new BrInst(header), true);
+            callInst.replaceAllUseWith(null, false); // only used by the return
+        }
+        return true;
+    }
+
+    // the call right before the return of the block, whose result is the one returned
+    public static CallInst getTailCall(BasicBlock block) {
+        if (!(block.getTerminator() instanceof ReturnInst returnInst)
+                || !(returnInst.getPrevInstruction() instanceof CallInst callInst)
+                || isBuildInFunction(callInst.getFunc())) {
+            return null;
+        }
+        if (returnInst.getValue() == null ? callInst.getType().getType() != IRTypeEnum.VOID
+                : returnInst.getValue() != callInst || callInst.getUseList().size() != 1) {
+            return null;
+        }
+        return callInst;
+    }
+
+    // the callee would see the memory of the caller, which a tail call reuses
+    public static boolean passesLocalMemory(CallInst callInst) {
+        return callInst.getParams().stream().anyMatch(param -> AliasAnalyzer.getBaseObject(param) instanceof AllocaInst);
+    }
+
+    // a block of phi insts and a return, jumped to by blocks ending with a call of what it returns, gets a return
+    // in each of them instead
+    private boolean foldReturns(Function func) {
+        boolean changed = false;
+        for (var block : new ArrayList<>(func.getBasicBlocks())) {
+            if (!(block.getTerminator() instanceof ReturnInst returnInst) || block == func.getFirstBasicBlock()
+                    || block.getInstructions().size() != block.getPhiInsts().size() + 1) {
+                continue;
+            }
+            var returnValue = returnInst.getValue();
+            boolean phisUsedOutside = block.getPhiInsts().stream().anyMatch(phiInst -> phiInst.getUseList().stream()
+                    .anyMatch(use -> ((Instruction) use.getUser()).getBasicBlock() != block));
+            if (phisUsedOutside) {
+                continue;
+            }
+
+            var preds = new ArrayList<>(AnalysisManager.getInstance().getControlFlowAnalyzer(func).getPredecessors(block));
+            for (var pred : new ArrayList<>(preds)) {
+                if (!(pred.getTerminator() instanceof BrInst brInst) || brInst.getDest() != block
+                        || !(brInst.getPrevInstruction() instanceof CallInst callInst)
+                        || isBuildInFunction(callInst.getFunc())) {
+                    continue;
+                }
+                Value value = returnValue instanceof PhiInst phiInst && phiInst.getBasicBlock() == block
+                        ? phiInst.getIncomingValue(pred) : returnValue;
+                if (value != callInst && !(value == null && callInst.getType().getType() == IRTypeEnum.VOID)) {
+                    continue;
+                }
+                for (var phiInst : block.getPhiInsts()) {
+                    phiInst.removeIncoming(pred);
+                }
+                brInst.replaceAllUseWith(value == null ? new ReturnInst() : new ReturnInst(value), true);
+                preds.remove(pred);
+                changed = true;
+            }
+            if (preds.isEmpty()) {
+                for (var inst : block.getInstructions()) {
+                    inst.removeOperandUses();
+                }
+                func.removeBasicBlock(block);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    private static boolean isBuildInFunction(Function func) {
+        return func == Function.BUILD_IN_GETINT
+                || func == Function.BUILD_IN_PUTINT
+                || func == Function.BUILD_IN_PUTCH
+                || func == Function.BUILD_IN_PUTSTR;
+    }
+}
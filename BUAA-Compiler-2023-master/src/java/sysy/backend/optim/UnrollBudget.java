@@ -0,0 +1,21 @@
+package sysy.backend.optim;
+
+// the limits of loop unrolling, sizes are counted in ir instructions, a loop is fully unrolled if its trip count is
+// known and all the copies fit in fullUnrollSize, otherwise up to factor copies fitting in partialUnrollSize are made,
+// and nothing is unrolled once a function has grown to maxFunctionSize
+public record UnrollBudget(int maxFullUnrollTrips, int fullUnrollSize, int factor, int partialUnrollSize,
+                           int maxFunctionSize) {
+    public static final UnrollBudget DEFAULT = new UnrollBudget(32, 256, 4, 128, 4000);
+
+    public UnrollBudget withFullUnrollSize(int fullUnrollSize) {
+        return new UnrollBudget(maxFullUnrollTrips, fullUnrollSize, factor, partialUnrollSize, maxFunctionSize);
+    }
+
+    public UnrollBudget withFactor(int factor) {
+        return new UnrollBudget(maxFullUnrollTrips, fullUnrollSize, factor, partialUnrollSize, maxFunctionSize);
+    }
+
+    public UnrollBudget withPartialUnrollSize(int partialUnrollSize) {
+        return new UnrollBudget(maxFullUnrollTrips, fullUnrollSize, factor, partialUnrollSize, maxFunctionSize);
+    }
+}
@@ -0,0 +1,16 @@
+package sysy.backend.target;
+
+// the weights by which the instruction selector compares sequences doing the same, an immediate loaded by li takes
+// one instruction if it fits in 16 bits or its lower half is zero, and two otherwise
+public record CostTable(int alu, int shift, int mul, int loadImmediate, int loadWideImmediate) {
+    public static final CostTable DEFAULT = new CostTable(1, 1, 3, 1, 2);
+
+    public CostTable withMul(int mul) {
+        return new CostTable(alu, shift, mul, loadImmediate, loadWideImmediate);
+    }
+
+    public int getLoadImmediateCost(int value) {
+        boolean narrow = value >= Short.MIN_VALUE && value <= 0xffff || (value & 0xffff) == 0;
+        return narrow ? loadImmediate : loadWideImmediate;
+    }
+}
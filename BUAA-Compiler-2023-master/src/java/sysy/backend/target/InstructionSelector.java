@@ -0,0 +1,340 @@
+package sysy.backend.target;
+
+import sysy.backend.ir.inst.BinaryInstOp;
+import sysy.backend.ir.inst.ICmpInstCond;
+import sysy.backend.target.inst.Opcode;
+import sysy.backend.target.inst.TextInst;
+import sysy.backend.target.value.Immediate;
+import sysy.backend.target.value.Register;
+import sysy.backend.target.value.TargetValue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// picks the instructions computing an arithmetic or compare result, immediates fitting the field of an instruction are
+// given to it rather than loaded, and constant multiplications and divisions become shifts and adds where cheaper
+public class InstructionSelector {
+    private final Target asmTarget;
+    private CostTable costTable = CostTable.DEFAULT;
+
+    public InstructionSelector(Target asmTarget) {
+        this.asmTarget = asmTarget;
+    }
+
+    public void setCostTable(CostTable costTable) {
+        this.costTable = costTable;
+    }
+
+    public void selectBinary(BinaryInstOp op, Register target, TargetValue left, TargetValue right) {
+        boolean commutative = op == BinaryInstOp.ADD || op == BinaryInstOp.MUL
+                || op == BinaryInstOp.AND || op == BinaryInstOp.OR;
+        if (commutative && left instanceof Immediate && !(right instanceof Immediate)) {
+            var temp = left;
+            left = right;
+            right = temp;
+        }
+
+        if (left instanceof Immediate) {
+            asmTarget.addText(new TextInst(Opcode.LI, target, left));
+            left = target;
+        }
+
+        if (right instanceof Immediate immediate) {
+            int value = immediate.getValue();
+            if (selectBinaryImmediate(op, target, (Register) left, value)) {
+                return;
+            }
+            var tmpReg = Register.allocateTempRegister();
+            asmTarget.addText(new TextInst(Opcode.LI, tmpReg, right));
+            right = tmpReg;
+        }
+
+        switch (op) {
+            case ADD -> asmTarget.addText(new TextInst(Opcode.ADDU, target, left, right)); // addu and subu never trap
+            case SUB -> asmTarget.addText(new TextInst(Opcode.SUBU, target, left, right));
+            case MUL -> asmTarget.addText(new TextInst(Opcode.MUL, target, left, right));
+            case AND -> asmTarget.addText(new TextInst(Opcode.AND, target, left, right));
+            case OR -> asmTarget.addText(new TextInst(Opcode.OR, target, left, right));
+            case SDIV -> {
+                asmTarget.addText(new TextInst(Opcode.DIV, left, right));
+                asmTarget.addText(new TextInst(Opcode.MFLO, target));
+            }
+            case SREM -> {
+                asmTarget.addText(new TextInst(Opcode.DIV, left, right));
+                asmTarget.addText(new TextInst(Opcode.MFHI, target));
+            }
+        }
+    }
+
+    private boolean selectBinaryImmediate(BinaryInstOp op, Register target, Register left, int value) {
+        switch (op) {
+            case ADD:
+                if (isSigned16(value)) {
+                    asmTarget.addText(new TextInst(Opcode.ADDIU, target, left, new Immediate(value)));
+                    return true;
+                }
+                return false;
+            case SUB:
+                if (value != Integer.MIN_VALUE && isSigned16(-value)) {
+                    asmTarget.addText(new TextInst(Opcode.ADDIU, target, left, new Immediate(-value)));
+                    return true;
+                }
+                return false;
+            case AND:
+            case OR:
+                if (isUnsigned16(value)) {
+                    asmTarget.addText(new TextInst(op == BinaryInstOp.AND ? Opcode.ANDI : Opcode.ORI, target, left, new Immediate(value)));
+                    return true;
+                }
+                return false;
+            case MUL:
+                selectMultiplyByConstant(target, left, value);
+                return true;
+            case SDIV:
+            case SREM:
+                if (value != 0 && value != Integer.MIN_VALUE) {
+                    selectDivisionByConstant(op == BinaryInstOp.SREM, target, left, value);
+                    return true;
+                }
+                return false;
+        }
+        return false;
+    }
+
+    // a compare with an immediate is made of slti and its negation by xori, equality of xori and sltiu
+    public void selectCompare(ICmpInstCond cond, Register target, TargetValue left, TargetValue right) {
+        if (left instanceof Immediate && !(right instanceof Immediate)) {
+            var temp = left;
+            left = right;
+            right = temp;
+            cond = cond.swapped();
+        }
+
+        if (left instanceof Immediate) {
+            asmTarget.addText(new TextInst(Opcode.LI, target, left));
+            left = target;
+        }
+
+        if (right instanceof Immediate immediate) {
+            if (selectCompareImmediate(cond, target, (Register) left, immediate.getValue())) {
+                return;
+            }
+            var tmpReg = Register.allocateTempRegister();
+            asmTarget.addText(new TextInst(Opcode.LI, tmpReg, right));
+            right = tmpReg;
+        }
+
+        Opcode opcode = switch (cond) {
+            case EQ -> Opcode.SEQ;
+            case NE -> Opcode.SNE;
+            case SGE -> Opcode.SGE;
+            case SGT -> Opcode.SGT;
+            case SLE -> Opcode.SLE;
+            case SLT -> Opcode.SLT;
+        };
+        asmTarget.addText(new TextInst(opcode, target, left, right));
+    }
+
+    private boolean selectCompareImmediate(ICmpInstCond cond, Register target, Register left, int value) {
+        switch (cond) {
+            case SLT:
+            case SGE: // not less than
+                if (!isSigned16(value)) {
+                    return false;
+                }
+                asmTarget.addText(new TextInst(Opcode.SLTI, target, left, new Immediate(value)));
+                break;
+            case SLE:
+            case SGT: // less than the next, not so
+                if (value == Integer.MAX_VALUE || !isSigned16(value + 1)) {
+                    return false;
+                }
+                asmTarget.addText(new TextInst(Opcode.SLTI, target, left, new Immediate(value + 1)));
+                break;
+            case EQ:
+            case NE: // the difference in bits is zero or not
+                if (!isUnsigned16(value)) {
+                    return false;
+                }
+                var diff = left;
+                if (value != 0) {
+                    asmTarget.addText(new TextInst(Opcode.XORI, target, left, new Immediate(value)));
+                    diff = target;
+                }
+                if (cond == ICmpInstCond.EQ) {
+                    asmTarget.addText(new TextInst(Opcode.SLTIU, target, diff, new Immediate(1)));
+                } else {
+                    asmTarget.addText(new TextInst(Opcode.SLTU, target, Register.ZERO, diff));
+                }
+                return true;
+        }
+        if (cond == ICmpInstCond.SGE || cond == ICmpInstCond.SGT) {
+            asmTarget.addText(new TextInst(Opcode.XORI, target, target, new Immediate(1)));
+        }
+        return true;
+    }
+
+    // x * c is the sum of x shifted by the nonzero digits of c in the non-adjacent form, which has the fewest of them,
+    // when the shifts and adds are cheaper than loading c for mul, v1 and t7 are taken, the target is written only at
+    // the end as it may be x
+    public void selectMultiplyByConstant(Register target, Register x, int c) {
+        var digits = getSignedDigits(c);
+        if (digits.isEmpty()) {
+            asmTarget.addText(new TextInst(Opcode.LI, target, new Immediate(0)));
+            return;
+        }
+
+        boolean negated = digits.stream().noneMatch(digit -> digit[0] > 0); // -x * -c then
+        int cost = (digits.size() - 1) * costTable.alu() + (negated ? costTable.alu() : 0);
+        for (var digit : digits) {
+            cost += digit[1] > 0 ? costTable.shift() : 0;
+        }
+        var v1 = Register.V1;
+        if (cost > costTable.getLoadImmediateCost(c) + costTable.mul()) {
+            asmTarget.addText(new TextInst(Opcode.LI, v1, new Immediate(c)));
+            asmTarget.addText(new TextInst(Opcode.MUL, target, x, v1));
+            return;
+        }
+
+        var acc = target != x ? target : Register.T7; // x is never in t7
+        var first = digits.get(0); // the highest positive digit, if any
+        Register sum = x;
+        if (first[1] > 0) {
+            sum = digits.size() == 1 && !negated ? target : acc;
+            asmTarget.addText(new TextInst(Opcode.SLL, sum, x, new Immediate(first[1])));
+        } else if (digits.size() == 1 && !negated) {
+            asmTarget.addText(new TextInst(Opcode.MOVE, target, x));
+        }
+        for (int i = 1; i < digits.size(); i++) {
+            var digit = digits.get(i);
+            Register term = x;
+            if (digit[1] > 0) {
+                term = v1;
+                asmTarget.addText(new TextInst(Opcode.SLL, term, x, new Immediate(digit[1])));
+            }
+            var dst = i == digits.size() - 1 && !negated ? target : acc;
+            asmTarget.addText(new TextInst(digit[0] > 0 != negated ? Opcode.ADDU : Opcode.SUBU, dst, sum, term));
+            sum = dst;
+        }
+        if (negated) {
+            asmTarget.addText(new TextInst(Opcode.NEGU, target, sum));
+        }
+    }
+
+    // pairs of the sign and the position, the positive ones first and the higher first
+    private static List<int[]> getSignedDigits(int c) {
+        List<int[]> digits = new ArrayList<>();
+        long n = c;
+        for (int position = 0; n != 0; position++, n >>= 1) {
+            if ((n & 1) != 0) {
+                int digit = 2 - Math.floorMod(n, 4); // 1 or -1, so that the next digit is zero
+                digits.add(new int[]{digit, position});
+                n -= digit;
+            }
+        }
+        digits.sort((a, b) -> a[0] != b[0] ? b[0] - a[0] : b[1] - a[1]);
+        return digits;
+    }
+
+    // the quotient rounds toward zero, x % c is x - x / c * c, the target is written only at the end as it may be x
+    private void selectDivisionByConstant(boolean isRem, Register target, Register left, int divisor) {
+        var quotient = Register.allocateTempRegister();
+        var v1 = Register.V1;
+        int absDivisor = Math.abs(divisor);
+        if (absDivisor == 1) {
+            if (isRem) {
+                asmTarget.addText(new TextInst(Opcode.LI, target, new Immediate(0)));
+            } else {
+                asmTarget.addText(new TextInst(divisor > 0 ? Opcode.MOVE : Opcode.NEGU, target, left));
+            }
+            return;
+        }
+
+        if ((absDivisor & (absDivisor - 1)) == 0) { // 2^k - 1 is added to a negative x before shifting
+            int k = Integer.numberOfTrailingZeros(absDivisor);
+            if (k == 1) {
+                asmTarget.addText(new TextInst(Opcode.SRL, quotient, left, new Immediate(31)));
+            } else {
+                asmTarget.addText(new TextInst(Opcode.SRA, quotient, left, new Immediate(31)));
+                asmTarget.addText(new TextInst(Opcode.SRL, quotient, quotient, new Immediate(32 - k)));
+            }
+            asmTarget.addText(new TextInst(Opcode.ADDU, quotient, quotient, left));
+            if (isRem) { // the sign of the remainder follows x whichever the sign of c
+                asmTarget.addText(new TextInst(Opcode.SRA, quotient, quotient, new Immediate(k)));
+                asmTarget.addText(new TextInst(Opcode.SLL, quotient, quotient, new Immediate(k)));
+                asmTarget.addText(new TextInst(Opcode.SUBU, target, left, quotient));
+            } else {
+                asmTarget.addText(new TextInst(Opcode.SRA, target, quotient, new Immediate(k)));
+                if (divisor < 0) {
+                    asmTarget.addText(new TextInst(Opcode.NEGU, target, target));
+                }
+            }
+            return;
+        }
+
+        var magic = getDivisionMagic(divisor);
+        asmTarget.addText(new TextInst(Opcode.LI, quotient, new Immediate(magic[0])));
+        asmTarget.addText(new TextInst(Opcode.MULT, left, quotient));
+        asmTarget.addText(new TextInst(Opcode.MFHI, quotient));
+        if (divisor > 0 && magic[0] < 0) {
+            asmTarget.addText(new TextInst(Opcode.ADDU, quotient, quotient, left));
+        } else if (divisor < 0 && magic[0] > 0) {
+            asmTarget.addText(new TextInst(Opcode.SUBU, quotient, quotient, left));
+        }
+        if (magic[1] > 0) {
+            asmTarget.addText(new TextInst(Opcode.SRA, quotient, quotient, new Immediate(magic[1])));
+        }
+        asmTarget.addText(new TextInst(Opcode.SRL, v1, quotient, new Immediate(31))); // one more for a negative quotient
+        if (isRem) {
+            asmTarget.addText(new TextInst(Opcode.ADDU, quotient, quotient, v1));
+            if (target != left) {
+                selectMultiplyByConstant(target, quotient, divisor);
+                asmTarget.addText(new TextInst(Opcode.SUBU, target, left, target));
+            } else {
+                asmTarget.addText(new TextInst(Opcode.LI, v1, new Immediate(divisor)));
+                asmTarget.addText(new TextInst(Opcode.MUL, quotient, quotient, v1));
+                asmTarget.addText(new TextInst(Opcode.SUBU, target, left, quotient));
+            }
+        } else {
+            asmTarget.addText(new TextInst(Opcode.ADDU, target, quotient, v1));
+        }
+    }
+
+    // the magic number and the shift for 2 <= |d| < 2^31, "Hacker's Delight" 10-1 after Granlund and Montgomery
+    private static int[] getDivisionMagic(int divisor) {
+        final long twoTo31 = 0x80000000L, mask = 0xffffffffL;
+        long absDivisor = Math.abs((long) divisor);
+        long t = twoTo31 + ((divisor & mask) >>> 31);
+        long absNc = t - 1 - t % absDivisor;
+        int p = 31;
+        long q1 = twoTo31 / absNc, r1 = twoTo31 - q1 * absNc;
+        long q2 = twoTo31 / absDivisor, r2 = twoTo31 - q2 * absDivisor;
+        long delta;
+        do {
+            p++;
+            q1 = 2 * q1 & mask;
+            r1 = 2 * r1 & mask;
+            if (r1 >= absNc) {
+                q1 = q1 + 1 & mask;
+                r1 = r1 - absNc & mask;
+            }
+            q2 = 2 * q2 & mask;
+            r2 = 2 * r2 & mask;
+            if (r2 >= absDivisor) {
+                q2 = q2 + 1 & mask;
+                r2 = r2 - absDivisor & mask;
+            }
+            delta = absDivisor - r2;
+        } while (q1 < delta || q1 == delta && r1 == 0);
+        long magic = q2 + 1;
+        return new int[]{(int) (divisor < 0 ? -magic : magic), p - 32};
+    }
+
+    private static boolean isSigned16(int value) {
+        return value >= Short.MIN_VALUE && value <= Short.MAX_VALUE;
+    }
+
+    private static boolean isUnsigned16(int value) {
+        return value >= 0 && value <= 0xffff;
+    }
+}
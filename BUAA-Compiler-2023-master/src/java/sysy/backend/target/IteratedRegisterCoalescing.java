@@ -0,0 +1,324 @@
+package sysy.backend.target;
+
+import sysy.backend.ir.Value;
+import sysy.backend.optim.InterferenceGraph;
+import sysy.backend.target.value.Register;
+
+import java.util.*;
+
+// "Iterated Register Coalescing", George and Appel, there are no precolored nodes since arguments are pinned beforehand
+public class IteratedRegisterCoalescing {
+    private enum NodeState { INITIAL, SIMPLIFY, FREEZE, SPILL, COALESCED, SELECTED, COLORED, SPILLED }
+    private enum MoveState { WORKLIST, ACTIVE, COALESCED, CONSTRAINED, FROZEN }
+
+    private final InterferenceGraph graph;
+    private final List<Register> registers;
+    private final int colorNum;
+    private final int[] degrees;
+    private final int[] aliases;
+    private final double[] spillCosts;
+    private final NodeState[] nodeStates;
+    private final Register[] colors;
+    private final List<List<Integer>> moveLists = new ArrayList<>();
+    private final List<int[]> moves = new ArrayList<>(); // dst and src
+    private final List<Double> moveWeights = new ArrayList<>();
+    private final List<MoveState> moveStates = new ArrayList<>();
+
+    private final Set<Integer> simplifyWorklist = new LinkedHashSet<>();
+    private final Set<Integer> freezeWorklist = new LinkedHashSet<>();
+    private final Set<Integer> spillWorklist = new LinkedHashSet<>();
+    private final Set<Integer> worklistMoves = new LinkedHashSet<>();
+    private final Set<Integer> activeMoves = new HashSet<>();
+    private final Deque<Integer> selectStack = new ArrayDeque<>();
+    private final List<Integer> coalescedNodes = new ArrayList<>();
+
+    public IteratedRegisterCoalescing(InterferenceGraph graph, List<Register> registers, Map<Value, Double> spillCosts) {
+        this.graph = graph;
+        this.registers = registers;
+        this.colorNum = registers.size();
+        int size = graph.size();
+        degrees = new int[size];
+        aliases = new int[size];
+        this.spillCosts = new double[size];
+        nodeStates = new NodeState[size];
+        colors = new Register[size];
+        for (int i = 0; i < size; i++) {
+            this.spillCosts[i] = spillCosts.getOrDefault(graph.getNode(i), 1.0);
+            nodeStates[i] = NodeState.INITIAL;
+            moveLists.add(new ArrayList<>());
+        }
+    }
+
+    // assigning them the same register removes the copy
+    public void addMove(Value dst, Value src, double weight) {
+        int dstIdx = graph.getIndex(dst), srcIdx = graph.getIndex(src);
+        if (dstIdx < 0 || srcIdx < 0 || dstIdx == srcIdx) {
+            return;
+        }
+        moves.add(new int[]{dstIdx, srcIdx});
+        moveWeights.add(weight);
+        moveStates.add(MoveState.WORKLIST);
+    }
+
+    public void allocate() {
+        build();
+        makeWorklist();
+        while (!simplifyWorklist.isEmpty() || !worklistMoves.isEmpty()
+                || !freezeWorklist.isEmpty() || !spillWorklist.isEmpty()) {
+            if (!simplifyWorklist.isEmpty()) {
+                simplify();
+            } else if (!worklistMoves.isEmpty()) {
+                coalesce();
+            } else if (!freezeWorklist.isEmpty()) {
+                freeze();
+            } else {
+                selectSpill();
+            }
+        }
+        assignColors();
+    }
+
+    // null if spilled
+    public Map<Value, Register> getColoring() {
+        Map<Value, Register> coloring = new LinkedHashMap<>();
+        for (int i = 0; i < graph.size(); i++) {
+            if (colors[i] != null) {
+                coloring.put(graph.getNode(i), colors[i]);
+            }
+        }
+        return coloring;
+    }
+
+    private void build() {
+        for (int i = 0; i < graph.size(); i++) {
+            degrees[i] = graph.getDegree(i);
+        }
+        List<Integer> moveOrder = new ArrayList<>();
+        for (int i = 0; i < moves.size(); i++) {
+            moveOrder.add(i);
+        }
+        moveOrder.sort((a, b) -> Double.compare(moveWeights.get(b), moveWeights.get(a))); // hot copies first
+        for (var move : moveOrder) {
+            worklistMoves.add(move);
+            moveLists.get(moves.get(move)[0]).add(move);
+            moveLists.get(moves.get(move)[1]).add(move);
+        }
+    }
+
+    private void makeWorklist() {
+        for (int i = 0; i < graph.size(); i++) {
+            if (degrees[i] >= colorNum) {
+                setNodeState(i, NodeState.SPILL);
+            } else if (isMoveRelated(i)) {
+                setNodeState(i, NodeState.FREEZE);
+            } else {
+                setNodeState(i, NodeState.SIMPLIFY);
+            }
+        }
+    }
+
+    private void setNodeState(int node, NodeState state) {
+        switch (nodeStates[node]) {
+            case SIMPLIFY -> simplifyWorklist.remove(node);
+            case FREEZE -> freezeWorklist.remove(node);
+            case SPILL -> spillWorklist.remove(node);
+        }
+        nodeStates[node] = state;
+        switch (state) {
+            case SIMPLIFY -> simplifyWorklist.add(node);
+            case FREEZE -> freezeWorklist.add(node);
+            case SPILL -> spillWorklist.add(node);
+            case SELECTED -> selectStack.push(node);
+            case COALESCED -> coalescedNodes.add(node);
+        }
+    }
+
+    // neighbours still in the graph
+    private List<Integer> getAdjacent(int node) {
+        List<Integer> adjacent = new ArrayList<>();
+        for (var adj : graph.getAdjacent(node)) {
+            if (nodeStates[adj] != NodeState.SELECTED && nodeStates[adj] != NodeState.COALESCED) {
+                adjacent.add(adj);
+            }
+        }
+        return adjacent;
+    }
+
+    private List<Integer> getNodeMoves(int node) {
+        List<Integer> nodeMoves = new ArrayList<>();
+        for (var move : moveLists.get(node)) {
+            if (moveStates.get(move) == MoveState.ACTIVE || moveStates.get(move) == MoveState.WORKLIST) {
+                nodeMoves.add(move);
+            }
+        }
+        return nodeMoves;
+    }
+
+    private boolean isMoveRelated(int node) {
+        for (var move : moveLists.get(node)) {
+            if (moveStates.get(move) == MoveState.ACTIVE || moveStates.get(move) == MoveState.WORKLIST) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void simplify() {
+        int node = simplifyWorklist.iterator().next();
+        setNodeState(node, NodeState.SELECTED);
+        for (var adj : getAdjacent(node)) {
+            decrementDegree(adj);
+        }
+    }
+
+    private void decrementDegree(int node) {
+        int degree = degrees[node]--;
+        if (degree == colorNum && nodeStates[node] == NodeState.SPILL) {
+            enableMoves(node);
+            for (var adj : getAdjacent(node)) {
+                enableMoves(adj);
+            }
+            setNodeState(node, isMoveRelated(node) ? NodeState.FREEZE : NodeState.SIMPLIFY);
+        }
+    }
+
+    private void enableMoves(int node) {
+        for (var move : getNodeMoves(node)) {
+            if (moveStates.get(move) == MoveState.ACTIVE) {
+                activeMoves.remove(move);
+                moveStates.set(move, MoveState.WORKLIST);
+                worklistMoves.add(move);
+            }
+        }
+    }
+
+    private void coalesce() {
+        int move = worklistMoves.iterator().next();
+        worklistMoves.remove(move);
+        int u = getAlias(moves.get(move)[0]);
+        int v = getAlias(moves.get(move)[1]);
+
+        if (u == v) {
+            moveStates.set(move, MoveState.COALESCED);
+            addWorklist(u);
+        } else if (graph.isAdjacent(u, v)) {
+            moveStates.set(move, MoveState.CONSTRAINED);
+            addWorklist(u);
+            addWorklist(v);
+        } else if (canCoalesceByGeorge(u, v) || canCoalesceByBriggs(u, v)) {
+            moveStates.set(move, MoveState.COALESCED);
+            combine(u, v);
+            addWorklist(u);
+        } else {
+            moveStates.set(move, MoveState.ACTIVE);
+            activeMoves.add(move);
+        }
+    }
+
+    private void addWorklist(int node) {
+        if (nodeStates[node] == NodeState.FREEZE && !isMoveRelated(node) && degrees[node] < colorNum) {
+            setNodeState(node, NodeState.SIMPLIFY);
+        }
+    }
+
+    // every neighbour of v is insignificant or already interferes with u
+    private boolean canCoalesceByGeorge(int u, int v) {
+        for (var adj : getAdjacent(v)) {
+            if (degrees[adj] >= colorNum && !graph.isAdjacent(adj, u)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the combined node has fewer significant neighbours than colors
+    private boolean canCoalesceByBriggs(int u, int v) {
+        Set<Integer> adjacent = new HashSet<>(getAdjacent(u));
+        adjacent.addAll(getAdjacent(v));
+        int significant = 0;
+        for (var adj : adjacent) {
+            if (degrees[adj] >= colorNum) {
+                significant++;
+            }
+        }
+        return significant < colorNum;
+    }
+
+    private void combine(int u, int v) {
+        setNodeState(v, NodeState.COALESCED);
+        aliases[v] = u;
+        moveLists.get(u).addAll(moveLists.get(v));
+        spillCosts[u] += spillCosts[v];
+        enableMoves(v);
+        for (var adj : getAdjacent(v)) {
+            if (graph.addEdge(adj, u)) {
+                degrees[adj]++;
+                degrees[u]++;
+            }
+            decrementDegree(adj);
+        }
+        if (degrees[u] >= colorNum && nodeStates[u] == NodeState.FREEZE) {
+            setNodeState(u, NodeState.SPILL);
+        }
+    }
+
+    private int getAlias(int node) {
+        while (nodeStates[node] == NodeState.COALESCED) {
+            node = aliases[node];
+        }
+        return node;
+    }
+
+    private void freeze() {
+        int node = freezeWorklist.iterator().next();
+        setNodeState(node, NodeState.SIMPLIFY);
+        freezeMoves(node);
+    }
+
+    private void freezeMoves(int node) {
+        for (var move : getNodeMoves(node)) {
+            int x = moves.get(move)[0], y = moves.get(move)[1];
+            int other = getAlias(y) == getAlias(node) ? getAlias(x) : getAlias(y);
+            activeMoves.remove(move);
+            worklistMoves.remove(move);
+            moveStates.set(move, MoveState.FROZEN);
+            if (nodeStates[other] == NodeState.FREEZE && !isMoveRelated(other) && degrees[other] < colorNum) {
+                setNodeState(other, NodeState.SIMPLIFY);
+            }
+        }
+    }
+
+    // the cheapest node per removed interference is pushed optimistically
+    private void selectSpill() {
+        int candidate = -1;
+        for (var node : spillWorklist) {
+            if (candidate < 0 || spillCosts[node] / degrees[node] < spillCosts[candidate] / degrees[candidate]) {
+                candidate = node;
+            }
+        }
+        setNodeState(candidate, NodeState.SIMPLIFY);
+        freezeMoves(candidate);
+    }
+
+    private void assignColors() {
+        while (!selectStack.isEmpty()) {
+            int node = selectStack.pop();
+            Set<Register> okColors = new LinkedHashSet<>(registers);
+            for (var adj : graph.getAdjacent(node)) {
+                int alias = getAlias(adj);
+                if (nodeStates[alias] == NodeState.COLORED) {
+                    okColors.remove(colors[alias]);
+                }
+            }
+            if (okColors.isEmpty()) {
+                nodeStates[node] = NodeState.SPILLED;
+            } else {
+                nodeStates[node] = NodeState.COLORED;
+                colors[node] = okColors.iterator().next();
+            }
+        }
+        for (var node : coalescedNodes) {
+            colors[node] = colors[getAlias(node)];
+        }
+    }
+}
@@ -0,0 +1,414 @@
+package sysy.backend.target;
+
+import sysy.backend.ir.BasicBlock;
+import sysy.backend.ir.Function;
+import sysy.backend.ir.Value;
+import sysy.backend.ir.inst.*;
+import sysy.backend.optim.AnalysisManager;
+import sysy.backend.target.value.Register;
+
+import java.util.*;
+
+// "Linear Scan Register Allocation on SSA Form", Wimmer and Franz, without register hints and fixed intervals
+public class LinearScanAllocator {
+    private final Function func;
+    private final Set<Value> variables;
+    private final List<Register> registers;
+    private final List<BasicBlock> blockOrder = new ArrayList<>();
+    private final Map<Instruction, Integer> positions = new HashMap<>();
+    private final Map<BasicBlock, Integer> blockStarts = new HashMap<>();
+    private final Map<BasicBlock, Integer> blockEnds = new HashMap<>();
+    private final Set<Integer> blockStartPositions = new HashSet<>();
+    private final Map<BasicBlock, Set<Value>> liveIns = new HashMap<>();
+    private final Map<BasicBlock, Set<Value>> liveOuts = new HashMap<>();
+    private final Map<Value, LiveInterval> intervals = new LinkedHashMap<>();
+    private final Map<Value, List<LiveInterval>> splitChildren = new LinkedHashMap<>();
+    private final Map<Integer, List<Value>> splitPositions = new HashMap<>();
+
+    // variables are ssa values and allocas which are only loaded and stored directly
+    public LinearScanAllocator(Function func, Set<Value> variables, List<Register> registers) {
+        this.func = func;
+        this.variables = variables;
+        this.registers = registers;
+    }
+
+    public void allocate() {
+        numberInstructions();
+        computeLiveSets();
+        buildIntervals();
+        walkIntervals();
+        collectSplitPositions();
+    }
+
+    private void numberInstructions() {
+        var cfg = AnalysisManager.getInstance().getControlFlowAnalyzer(func);
+        blockOrder.addAll(cfg.getReversePostOrder());
+        for (var block : func.getBasicBlocks()) {
+            if (!cfg.isReachable(block)) {
+                blockOrder.add(block);
+            }
+        }
+
+        int pos = 0;
+        for (var block : blockOrder) {
+            blockStarts.put(block, pos);
+            blockStartPositions.add(pos);
+            for (var inst : block.getInstructions()) {
+                positions.put(inst, pos);
+                pos += 2;
+            }
+            blockEnds.put(block, pos);
+        }
+    }
+
+    private void computeLiveSets() {
+        Map<BasicBlock, Set<Value>> useSets = new HashMap<>();
+        Map<BasicBlock, Set<Value>> defSets = new HashMap<>();
+        for (var block : blockOrder) {
+            Set<Value> useSet = new LinkedHashSet<>();
+            Set<Value> defSet = new HashSet<>();
+            for (var inst : block.getInstructions()) {
+                if (!(inst instanceof PhiInst)) { // phi operands are used at the end of predecessors
+                    for (var use : getUses(inst)) {
+                        if (!defSet.contains(use)) {
+                            useSet.add(use);
+                        }
+                    }
+                }
+                var def = getDef(inst);
+                if (def != null) {
+                    defSet.add(def);
+                }
+            }
+            useSets.put(block, useSet);
+            defSets.put(block, defSet);
+            liveIns.put(block, new LinkedHashSet<>(useSet));
+            liveOuts.put(block, new LinkedHashSet<>());
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = blockOrder.size()-1; i >= 0; i--) {
+                var block = blockOrder.get(i);
+                var liveOut = liveOuts.get(block);
+                for (var succ : block.getSuccessors()) {
+                    for (var value : liveIns.get(succ)) {
+                        if (!(value instanceof PhiInst phiInst && phiInst.getBasicBlock() == succ)) {
+                            liveOut.add(value);
+                        }
+                    }
+                    for (var phiInst : succ.getPhiInsts()) {
+                        var incomingValue = phiInst.getIncomingValue(block);
+                        if (variables.contains(incomingValue)) {
+                            liveOut.add(incomingValue);
+                        }
+                    }
+                }
+
+                var liveIn = liveIns.get(block);
+                int preSize = liveIn.size();
+                for (var value : liveOut) {
+                    if (!defSets.get(block).contains(value)) {
+                        liveIn.add(value);
+                    }
+                }
+                changed |= liveIn.size() != preSize;
+            }
+        }
+    }
+
+    private void buildIntervals() {
+        var loopAnalyzer = AnalysisManager.getInstance().getLoopAnalyzer(func);
+        for (var variable : variables) {
+            intervals.put(variable, new LiveInterval(variable));
+        }
+
+        for (int i = blockOrder.size()-1; i >= 0; i--) {
+            var block = blockOrder.get(i);
+            int blockFrom = blockStarts.get(block), blockTo = blockEnds.get(block);
+            double weight = Math.pow(10, Math.min(loopAnalyzer.getLoopDepth(block), 6));
+
+            for (var value : liveOuts.get(block)) {
+                intervals.get(value).addRange(blockFrom, blockTo);
+            }
+
+            for (var inst = block.getTerminator(); inst != null; inst = inst.getPrevInstruction()) {
+                int pos = positions.get(inst);
+                if (inst instanceof PhiInst) { // all phi insts are defined at the beginning of the block
+                    if (variables.contains(inst)) {
+                        intervals.get(inst).setFrom(blockFrom);
+                        intervals.get(inst).addUse(blockFrom, weight);
+                    }
+                    continue;
+                }
+                var def = getDef(inst);
+                if (def != null) {
+                    intervals.get(def).setFrom(pos);
+                    intervals.get(def).addUse(pos, weight);
+                }
+                for (var use : getUses(inst)) {
+                    intervals.get(use).addRange(blockFrom, pos+1);
+                    intervals.get(use).addUse(pos, weight);
+                }
+            }
+        }
+
+        // phi operands are read by the copies at the end of predecessors
+        for (var block : blockOrder) {
+            for (var phiInst : block.getPhiInsts()) {
+                for (var pred : phiInst.getIncomingBlocks()) {
+                    var incomingValue = phiInst.getIncomingValue(pred);
+                    if (variables.contains(incomingValue) && blockEnds.containsKey(pred)) {
+                        double weight = Math.pow(10, Math.min(loopAnalyzer.getLoopDepth(pred), 6));
+                        intervals.get(incomingValue).addUse(blockEnds.get(pred)-2, weight);
+                    }
+                }
+            }
+        }
+    }
+
+    private Value getDef(Instruction inst) {
+        if (inst instanceof StoreInst storeInst) {
+            return variables.contains(storeInst.getPtr()) ? storeInst.getPtr() : null;
+        }
+        return variables.contains(inst) ? inst : null;
+    }
+
+    private List<Value> getUses(Instruction inst) {
+        List<Value> uses = new ArrayList<>();
+        var operands = inst.getOperands();
+        for (int i = 0; i < operands.size(); i++) {
+            if (inst instanceof StoreInst && i == 1 && operands.get(i) instanceof AllocaInst) { // the var is written
+                continue;
+            }
+            if (variables.contains(operands.get(i)) && !uses.contains(operands.get(i))) {
+                uses.add(operands.get(i));
+            }
+        }
+        return uses;
+    }
+
+    private void walkIntervals() {
+        PriorityQueue<LiveInterval> unhandled = new PriorityQueue<>(Comparator.comparingInt(LiveInterval::getStart));
+        for (var interval : intervals.values()) {
+            if (!interval.isEmpty()) {
+                unhandled.add(interval);
+                splitChildren.put(interval.getValue(), new ArrayList<>(List.of(interval)));
+            }
+        }
+
+        List<LiveInterval> active = new ArrayList<>();
+        List<LiveInterval> inactive = new ArrayList<>();
+        while (!unhandled.isEmpty()) {
+            var current = unhandled.poll();
+            int position = current.getStart();
+
+            for (var iter = active.iterator(); iter.hasNext(); ) {
+                var interval = iter.next();
+                if (interval.getEnd() <= position) {
+                    iter.remove();
+                } else if (!interval.covers(position)) {
+                    iter.remove();
+                    inactive.add(interval);
+                }
+            }
+            for (var iter = inactive.iterator(); iter.hasNext(); ) {
+                var interval = iter.next();
+                if (interval.getEnd() <= position) {
+                    iter.remove();
+                } else if (interval.covers(position)) {
+                    iter.remove();
+                    active.add(interval);
+                }
+            }
+
+            if (!tryAllocateFreeRegister(current, inactive, active, unhandled)) {
+                allocateBlockedRegister(current, active, inactive, unhandled);
+            }
+            if (current.getRegister() != null) {
+                active.add(current);
+            }
+        }
+    }
+
+    private boolean tryAllocateFreeRegister(LiveInterval current, List<LiveInterval> inactive,
+                                            List<LiveInterval> active, PriorityQueue<LiveInterval> unhandled) {
+        Map<Register, Integer> freeUntil = new HashMap<>();
+        for (var reg : registers) {
+            freeUntil.put(reg, Integer.MAX_VALUE);
+        }
+        for (var interval : active) {
+            freeUntil.put(interval.getRegister(), 0);
+        }
+        for (var interval : inactive) {
+            int intersection = interval.nextIntersection(current);
+            if (intersection >= 0) {
+                freeUntil.merge(interval.getRegister(), intersection, Math::min);
+            }
+        }
+
+        Register bestReg = null;
+        for (var reg : registers) {
+            if (bestReg == null || freeUntil.get(reg) > freeUntil.get(bestReg)) {
+                bestReg = reg;
+            }
+        }
+        if (bestReg == null || freeUntil.get(bestReg) <= current.getStart()) {
+            return false;
+        }
+
+        if (freeUntil.get(bestReg) < current.getEnd()) { // the register is free for the first part only
+            splitAndQueue(current, freeUntil.get(bestReg), unhandled);
+        }
+        current.setRegister(bestReg);
+        return true;
+    }
+
+    private void allocateBlockedRegister(LiveInterval current, List<LiveInterval> active,
+                                         List<LiveInterval> inactive, PriorityQueue<LiveInterval> unhandled) {
+        Register bestReg = null;
+        double bestCost = Double.MAX_VALUE;
+        for (var reg : registers) {
+            double cost = 0;
+            for (var interval : getBlockingIntervals(reg, current, active, inactive)) {
+                cost += interval.getSpillWeight();
+            }
+            if (cost < bestCost) {
+                bestCost = cost;
+                bestReg = reg;
+            }
+        }
+
+        if (bestReg == null || current.getSpillWeight() <= bestCost) {
+            spill(current, current.getStart(), unhandled);
+            return;
+        }
+
+        for (var interval : getBlockingIntervals(bestReg, current, active, inactive)) {
+            active.remove(interval);
+            inactive.remove(interval);
+            if (interval.getStart() < current.getStart()) {
+                var child = interval.splitAt(current.getStart());
+                if (!child.isEmpty()) {
+                    splitChildren.get(child.getValue()).add(child);
+                    spill(child, current.getStart(), unhandled);
+                }
+            } else {
+                spill(interval, current.getStart(), unhandled);
+            }
+        }
+        current.setRegister(bestReg);
+    }
+
+    private static List<LiveInterval> getBlockingIntervals(Register reg, LiveInterval current,
+                                                           List<LiveInterval> active, List<LiveInterval> inactive) {
+        List<LiveInterval> blockingIntervals = new ArrayList<>();
+        for (var interval : active) {
+            if (interval.getRegister() == reg) {
+                blockingIntervals.add(interval);
+            }
+        }
+        for (var interval : inactive) {
+            if (interval.getRegister() == reg && interval.nextIntersection(current) >= 0) {
+                blockingIntervals.add(interval);
+            }
+        }
+        return blockingIntervals;
+    }
+
+    // the interval stays in memory until its next use, where it tries to get a register again
+    private void spill(LiveInterval interval, int position, PriorityQueue<LiveInterval> unhandled) {
+        interval.setRegister(null);
+        int nextUse = interval.nextUseAfter(position);
+        if (nextUse > interval.getStart()) {
+            splitAndQueue(interval, nextUse, unhandled);
+        }
+    }
+
+    private void splitAndQueue(LiveInterval interval, int position, PriorityQueue<LiveInterval> unhandled) {
+        var child = interval.splitAt(position);
+        if (!child.isEmpty()) {
+            splitChildren.get(child.getValue()).add(child);
+            unhandled.add(child);
+        }
+    }
+
+    public Set<Value> getAllocatedValues() {
+        return splitChildren.keySet();
+    }
+
+    public List<LiveInterval> getSplitChildren(Value value) {
+        return splitChildren.get(value);
+    }
+
+    // the part of the value's lifetime which contains the position
+    public LiveInterval getIntervalAt(Value value, int position) {
+        LiveInterval result = null;
+        for (var child : splitChildren.get(value)) {
+            if (child.getStart() <= position && (result == null || child.getStart() > result.getStart())) {
+                result = child;
+            }
+        }
+        return result == null ? splitChildren.get(value).get(0) : result;
+    }
+
+    private void collectSplitPositions() {
+        for (var children : splitChildren.values()) {
+            for (int i = 1; i < children.size(); i++) {
+                var child = children.get(i);
+                splitPositions.computeIfAbsent(child.getStart(), k -> new ArrayList<>()).add(child.getValue());
+            }
+        }
+    }
+
+    // values moved to another location right before the position, moves at block starts are done on edges
+    public List<Value> getMovedValues(int position) {
+        List<Value> movedValues = new ArrayList<>();
+        if (blockStartPositions.contains(position)) {
+            return movedValues;
+        }
+        for (var value : splitPositions.getOrDefault(position, List.of())) {
+            var prev = getIntervalAt(value, position-1);
+            var next = getIntervalAt(value, position);
+            if (prev.covers(position-1) && next.covers(position) && prev.getRegister() != next.getRegister()) {
+                movedValues.add(value);
+            }
+        }
+        return movedValues;
+    }
+
+    // registers holding values other than the inst itself which are alive both before and after the inst
+    public Set<Register> getRegistersLiveAcross(Instruction inst) {
+        int position = positions.get(inst);
+        Set<Register> registersLiveAcross = new LinkedHashSet<>();
+        for (var entry : splitChildren.entrySet()) {
+            if (entry.getKey() == inst) {
+                continue;
+            }
+            for (var child : entry.getValue()) {
+                if (child.getRegister() != null && child.covers(position) && child.covers(position+1)) {
+                    registersLiveAcross.add(child.getRegister());
+                }
+            }
+        }
+        return registersLiveAcross;
+    }
+
+    public int getPosition(Instruction inst) {
+        return positions.get(inst);
+    }
+
+    public int getBlockStart(BasicBlock block) {
+        return blockStarts.get(block);
+    }
+
+    // the position of the terminator
+    public int getBlockEnd(BasicBlock block) {
+        return blockEnds.get(block) - 2;
+    }
+
+    public Set<Value> getLiveIn(BasicBlock block) {
+        return liveIns.get(block);
+    }
+}
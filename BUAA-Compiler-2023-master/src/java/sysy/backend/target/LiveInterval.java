@@ -0,0 +1,151 @@
+package sysy.backend.target;
+
+import sysy.backend.ir.Value;
+import sysy.backend.target.value.Register;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// positions where a value is alive, as sorted and disjoint ranges [from, to)
+public class LiveInterval {
+    private final Value value;
+    private final List<int[]> ranges = new ArrayList<>();
+    private final List<Integer> usePositions = new ArrayList<>(); // sorted
+    private final List<Double> useWeights = new ArrayList<>();
+    private Register register = null; // null means in memory
+
+    public LiveInterval(Value value) {
+        this.value = value;
+    }
+
+    public Value getValue() {
+        return value;
+    }
+
+    public Register getRegister() {
+        return register;
+    }
+
+    public void setRegister(Register register) {
+        this.register = register;
+    }
+
+    public boolean isEmpty() {
+        return ranges.isEmpty();
+    }
+
+    public int getStart() {
+        return ranges.get(0)[0];
+    }
+
+    public int getEnd() {
+        return ranges.get(ranges.size()-1)[1];
+    }
+
+    public void addRange(int from, int to) {
+        int idx = 0;
+        while (idx < ranges.size() && ranges.get(idx)[1] < from) {
+            idx++;
+        }
+        // merge all ranges overlapping or adjacent to [from, to)
+        while (idx < ranges.size() && ranges.get(idx)[0] <= to) {
+            var range = ranges.remove(idx);
+            from = Math.min(from, range[0]);
+            to = Math.max(to, range[1]);
+        }
+        ranges.add(idx, new int[]{from, to});
+    }
+
+    // the value is defined at pos, so it is not alive before
+    public void setFrom(int pos) {
+        if (ranges.isEmpty() || ranges.get(0)[0] > pos) { // never used
+            ranges.add(0, new int[]{pos, pos+1});
+        } else {
+            ranges.get(0)[0] = pos;
+        }
+    }
+
+    public void addUse(int pos, double weight) {
+        int idx = 0;
+        while (idx < usePositions.size() && usePositions.get(idx) < pos) {
+            idx++;
+        }
+        usePositions.add(idx, pos);
+        useWeights.add(idx, weight);
+    }
+
+    public boolean covers(int pos) {
+        for (var range : ranges) {
+            if (range[0] <= pos && pos < range[1]) {
+                return true;
+            }
+            if (range[0] > pos) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    // the first position where both intervals are alive, -1 if none
+    public int nextIntersection(LiveInterval other) {
+        int i = 0, j = 0;
+        while (i < ranges.size() && j < other.ranges.size()) {
+            var a = ranges.get(i);
+            var b = other.ranges.get(j);
+            if (a[0] < b[1] && b[0] < a[1]) {
+                return Math.max(a[0], b[0]);
+            }
+            if (a[1] <= b[1]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return -1;
+    }
+
+    public int nextUseAfter(int pos) {
+        for (var usePos : usePositions) {
+            if (usePos > pos) {
+                return usePos;
+            }
+        }
+        return -1;
+    }
+
+    // uses per instruction covered, weighted by the loop depth of every use
+    public double getSpillWeight() {
+        double weight = 0;
+        for (var useWeight : useWeights) {
+            weight += useWeight;
+        }
+        return weight / Math.max(1, (getEnd() - getStart()) / 2);
+    }
+
+    // this interval keeps the part before pos, the returned one starts at pos
+    public LiveInterval splitAt(int pos) {
+        var child = new LiveInterval(value);
+        for (int i = 0; i < ranges.size(); i++) {
+            var range = ranges.get(i);
+            if (range[1] <= pos) {
+                continue;
+            }
+            if (range[0] < pos) {
+                child.ranges.add(new int[]{pos, range[1]});
+                range[1] = pos;
+                i++;
+            }
+            while (i < ranges.size()) {
+                child.ranges.add(ranges.remove(i));
+            }
+        }
+        for (int i = 0; i < usePositions.size(); i++) {
+            if (usePositions.get(i) >= pos) {
+                child.usePositions.add(usePositions.remove(i));
+                child.useWeights.add(useWeights.remove(i));
+                i--;
+            }
+        }
+        return child;
+    }
+}
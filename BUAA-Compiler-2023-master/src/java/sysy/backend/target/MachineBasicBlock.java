@@ -0,0 +1,41 @@
+package sysy.backend.target;
+
+import sysy.backend.target.inst.TextInst;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// instructions entered only at the first and left only after the last, a block without a label is entered by falling
+// through from the branch before it
+public class MachineBasicBlock {
+    private final String label;
+    private final List<TextInst> insts = new ArrayList<>();
+    private final List<MachineBasicBlock> successors = new ArrayList<>();
+
+    MachineBasicBlock(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public List<TextInst> getInsts() {
+        return insts;
+    }
+
+    // out of the texts split, such as the callee of a tail call, are left out
+    public List<MachineBasicBlock> getSuccessors() {
+        return successors;
+    }
+
+    void addInst(TextInst inst) {
+        insts.add(inst);
+    }
+
+    void addSuccessor(MachineBasicBlock block) {
+        if (!successors.contains(block)) {
+            successors.add(block);
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package sysy.backend.target;
+
+public enum RegisterAllocStrategy {
+    BASIC,
+    REF_COUNT,
+    GRAPH_COLORING,
+    LINEAR_SCAN,
+}
@@ -0,0 +1,182 @@
+package sysy.backend.target;
+
+import sysy.backend.ir.BasicBlock;
+import sysy.backend.ir.Function;
+import sysy.backend.ir.Value;
+import sysy.backend.ir.inst.AllocaInst;
+import sysy.backend.ir.inst.GetElementPtrInst;
+import sysy.backend.ir.inst.Instruction;
+import sysy.backend.ir.inst.PhiInst;
+import sysy.backend.optim.AnalysisManager;
+import sysy.backend.optim.ConflictDiagram;
+import sysy.backend.optim.SSAConflictDiagramBuilder;
+import sysy.backend.optim.SSALiveVariableAnalyzer;
+
+import java.util.*;
+
+// values never alive at the same time share a slot, allocas whose lifetimes are disjoint share their storage,
+// allocas are placed at the bottom of the area and slots of values above them
+public class StackSlotAllocator {
+    private final Function func;
+    private final List<Instruction> values = new ArrayList<>();
+    private final List<AllocaInst> allocaInsts = new ArrayList<>();
+    private final Set<? extends Value> unshared;
+    private final Map<Instruction, Integer> offsets = new HashMap<>();
+    private int size = 0;
+
+    // unshared values are written where they may be dead, such as the values split by linear scan
+    public StackSlotAllocator(Function func, List<Instruction> insts, Set<? extends Value> unshared) {
+        this.func = func;
+        this.unshared = unshared;
+        for (var inst : insts) {
+            if (inst instanceof AllocaInst allocaInst) {
+                allocaInsts.add(allocaInst);
+            } else {
+                values.add(inst);
+            }
+        }
+    }
+
+    public void allocate() {
+        size = allocateAllocas();
+        size = allocateValues(size);
+    }
+
+    // from the bottom of the area
+    public int getOffset(Instruction inst) {
+        return offsets.get(inst);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    // greedily in the order of definition, each value takes the lowest slot none of its conflicts has, values alive
+    // across blocks share no slot with those in a single block, which the translator writes back as leaving a block
+    private int allocateValues(int base) {
+        var analyzer = new SSALiveVariableAnalyzer(func);
+        analyzer.analyze();
+        var sharedValues = values.stream().filter(value -> !unshared.contains(value)).toList();
+        var diagram = new SSAConflictDiagramBuilder(func, analyzer, sharedValues).getDiagram();
+
+        Map<Value, Integer> slots = new HashMap<>();
+        int slotNum = colorValues(sharedValues.stream().filter(analyzer.getVariables()::contains).toList(),
+                diagram, slots, 0);
+        slotNum = colorValues(sharedValues.stream().filter(value -> !analyzer.getVariables().contains(value)).toList(),
+                diagram, slots, slotNum);
+        for (var value : values) {
+            if (unshared.contains(value)) {
+                slots.put(value, slotNum++);
+            }
+        }
+
+        for (var value : values) {
+            offsets.put(value, base + 4 * slots.get(value));
+        }
+        return base + 4 * slotNum;
+    }
+
+    private static int colorValues(List<Instruction> group, ConflictDiagram diagram, Map<Value, Integer> slots,
+                                   int firstSlot) {
+        int slotNum = firstSlot;
+        for (var value : group) {
+            Set<Integer> taken = new HashSet<>();
+            for (var conflict : diagram.getConflict(value)) {
+                if (slots.containsKey(conflict)) {
+                    taken.add(slots.get(conflict));
+                }
+            }
+            int slot = firstSlot;
+            while (taken.contains(slot)) {
+                slot++;
+            }
+            slots.put(value, slot);
+            slotNum = Math.max(slotNum, slot + 1);
+        }
+        return slotNum;
+    }
+
+    // the larger first, each alloca takes the lowest offset where it overlaps no alloca alive at the same time
+    private int allocateAllocas() {
+        Map<AllocaInst, BitSet> lifetimes = new HashMap<>();
+        for (var allocaInst : allocaInsts) {
+            lifetimes.put(allocaInst, getLifetime(allocaInst));
+        }
+
+        List<AllocaInst> allocaOrder = new ArrayList<>(allocaInsts);
+        allocaOrder.sort(Comparator.comparingInt((AllocaInst allocaInst) -> ValueManager.getMemorySize(allocaInst)).reversed());
+        List<AllocaInst> placed = new ArrayList<>();
+        int areaSize = 0;
+        for (var allocaInst : allocaOrder) {
+            int allocaSize = ValueManager.getMemorySize(allocaInst);
+            List<int[]> takenRanges = new ArrayList<>();
+            for (var other : placed) {
+                if (lifetimes.get(other).intersects(lifetimes.get(allocaInst))) {
+                    int start = offsets.get(other);
+                    takenRanges.add(new int[]{start, start + ValueManager.getMemorySize(other)});
+                }
+            }
+            takenRanges.sort(Comparator.comparingInt(range -> range[0]));
+
+            int offset = 0;
+            for (var range : takenRanges) {
+                if (offset + allocaSize <= range[0]) {
+                    break;
+                }
+                offset = Math.max(offset, range[1]);
+            }
+            offsets.put(allocaInst, offset);
+            placed.add(allocaInst);
+            areaSize = Math.max(areaSize, offset + allocaSize);
+        }
+        return areaSize;
+    }
+
+    // blocks lying on a path from a use of the alloca or of a pointer into it to another such use, the storage may
+    // be reused anywhere else since a callee has it only while called
+    private BitSet getLifetime(AllocaInst allocaInst) {
+        var blocks = new ArrayList<>(func.getBasicBlocks());
+        var lifetime = new BitSet(blocks.size());
+        if (unshared.contains(allocaInst)) {
+            lifetime.set(0, blocks.size());
+            return lifetime;
+        }
+
+        Set<BasicBlock> useBlocks = new HashSet<>();
+        Set<Value> pointers = new HashSet<>(List.of(allocaInst));
+        Queue<Value> worklist = new ArrayDeque<>(pointers);
+        while (!worklist.isEmpty()) {
+            for (var use : worklist.poll().getUseList()) {
+                var user = (Instruction) use.getUser();
+                useBlocks.add(user.getBasicBlock());
+                if ((user instanceof GetElementPtrInst || user instanceof PhiInst) && pointers.add(user)) {
+                    worklist.add(user);
+                }
+            }
+        }
+
+        var cfg = AnalysisManager.getInstance().getControlFlowAnalyzer(func);
+        var reached = reachBlocks(useBlocks, BasicBlock::getSuccessors);
+        var reaching = reachBlocks(useBlocks, cfg::getPredecessors);
+        for (int i = 0; i < blocks.size(); i++) {
+            if (reached.contains(blocks.get(i)) && reaching.contains(blocks.get(i))) {
+                lifetime.set(i);
+            }
+        }
+        return lifetime;
+    }
+
+    private static Set<BasicBlock> reachBlocks(Set<BasicBlock> startBlocks,
+                                               java.util.function.Function<BasicBlock, List<BasicBlock>> nextBlocks) {
+        Set<BasicBlock> reached = new HashSet<>(startBlocks);
+        Queue<BasicBlock> worklist = new ArrayDeque<>(startBlocks);
+        while (!worklist.isEmpty()) {
+            for (var next : nextBlocks.apply(worklist.poll())) {
+                if (reached.add(next)) {
+                    worklist.add(next);
+                }
+            }
+        }
+        return reached;
+    }
+}
@@ -1,15 +1,16 @@
 package sysy.backend.target;
 
+import sysy.backend.target.inst.Opcode;
 import sysy.backend.target.inst.TextComment;
 import sysy.backend.target.inst.TextEntry;
 import sysy.backend.target.inst.TextInst;
 import sysy.backend.target.inst.TextLabel;
+import sysy.backend.target.value.Label;
 import sysy.backend.target.value.Offset;
 import sysy.backend.target.value.Register;
 
 import java.io.PrintStream;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 public class Target {
     private final List<Data> dataList = new ArrayList<>();
@@ -23,6 +24,67 @@ public class Target {
         textList.add(entry);
     }
 
+    public int getTextSize() {
+        return textList.size();
+    }
+
+    public List<TextEntry> getTexts(int fromIndex) {
+        return textList.subList(fromIndex, textList.size());
+    }
+
+    public void removeTexts(int fromIndex, Set<TextEntry> texts) {
+        getTexts(fromIndex).removeIf(texts::contains);
+    }
+
+    // the texts from the index split at labels and after branches, jumps and returns
+    public List<MachineBasicBlock> getBasicBlocks(int fromIndex) {
+        List<MachineBasicBlock> blocks = new ArrayList<>();
+        Map<String, MachineBasicBlock> labelBlocks = new HashMap<>();
+        MachineBasicBlock block = null;
+        for (var text : getTexts(fromIndex)) {
+            if (text instanceof TextLabel label) {
+                block = new MachineBasicBlock(label.getLabelName());
+                blocks.add(block);
+                labelBlocks.put(label.getLabelName(), block);
+            } else if (text instanceof TextInst inst) {
+                if (block == null) {
+                    block = new MachineBasicBlock(null);
+                    blocks.add(block);
+                }
+                block.addInst(inst);
+                if (inst.getOpcode().isTerminator()) {
+                    block = null;
+                }
+            }
+        }
+
+        for (int i = 0; i < blocks.size(); i++) {
+            var insts = blocks.get(i).getInsts();
+            var flow = insts.isEmpty() ? Opcode.Flow.NEXT : insts.get(insts.size() - 1).getOpcode().getFlow();
+            if (flow == Opcode.Flow.BRANCH || flow == Opcode.Flow.JUMP) {
+                var values = insts.get(insts.size() - 1).getValues();
+                var target = labelBlocks.get(values.get(values.size() - 1).toString());
+                if (target != null) {
+                    blocks.get(i).addSuccessor(target);
+                }
+            }
+            if (flow != Opcode.Flow.JUMP && flow != Opcode.Flow.RETURN && i + 1 < blocks.size()) {
+                blocks.get(i).addSuccessor(blocks.get(i + 1));
+            }
+        }
+        return blocks;
+    }
+
+    public int countTextInsts(int fromIndex) {
+        int count = 0;
+        for (int i = fromIndex; i < textList.size(); i++) {
+            if (textList.get(i) instanceof TextInst) {
+                count++;
+            }
+        }
+        return count;
+    }
+
     public void dump(PrintStream out, boolean debugMode) {
         out.print(".data\n");
         for (var data: dataList) {
@@ -53,9 +115,9 @@ public class Target {
         target.addData(new Data("a", "word", List.of(1, 2, 3, 4, 5)));
         target.addData(new Data("str", "asciiz", List.of("\"this is string\"")));
 
-        target.addText(new TextInst("add", new Register("t0"), new Register("t1"), new Register("t2")));
-        target.addText(new TextInst("sub", new Register("t0"), new Offset(new Register("t1"), -4)));
-        target.addText(new TextInst("erjfe", new Register("t0")));
+        target.addText(new TextInst(Opcode.ADDU, Register.REGS.get("t0"), Register.REGS.get("t1"), Register.REGS.get("t2")));
+        target.addText(new TextInst(Opcode.LW, Register.REGS.get("t0"), new Offset(Register.REGS.get("t1"), -4)));
+        target.addText(new TextInst(Opcode.J, new Label("label1")));
         target.addText(new TextLabel("label1"));
 
         target.dump(System.out, true);
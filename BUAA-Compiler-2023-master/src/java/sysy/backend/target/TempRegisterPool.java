@@ -1,11 +1,13 @@
 package sysy.backend.target;
 
+import sysy.backend.target.inst.Opcode;
 import sysy.backend.target.inst.TextInst;
 import sysy.backend.target.value.Immediate;
 import sysy.backend.target.value.Offset;
 import sysy.backend.target.value.Register;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 public class TempRegisterPool {
     private final Target target;
@@ -14,6 +16,7 @@ public class TempRegisterPool {
     private final Map<Offset, Register> addrRegisterMap = new HashMap<>();
     private final Map<Register, Offset> registerAddrMap = new HashMap<>();
     private final Queue<Register> timeQueue = new ArrayDeque<>();
+    private int dirtyRegisters = 0; // mask of registers whose values are not written back yet
 
     public TempRegisterPool(Target target, List<Register> registers) {
         this.target = target;
@@ -26,6 +29,9 @@ public class TempRegisterPool {
             var reg = getRegister(addr);
             timeQueue.remove(reg);
             timeQueue.add(reg);
+            if (firstTime) { // another value sharing the slot, the one cached is dead
+                dirtyRegisters |= reg.getMask();
+            }
             return getRegister(addr);
         }
 
@@ -34,7 +40,9 @@ public class TempRegisterPool {
             var regToKillAddr = registerAddrMap.get(regToKill);
             addrRegisterMap.remove(regToKillAddr);
             registerAddrMap.remove(regToKill);
-            target.addText(new TextInst("sw", regToKill, regToKillAddr));
+            if (clearDirty(regToKill)) {
+                target.addText(new TextInst(Opcode.SW, regToKill, regToKillAddr));
+            }
             registersUnused.add(regToKill);
         }
 
@@ -42,7 +50,9 @@ public class TempRegisterPool {
         timeQueue.add(regToAlloc);
 
         if (!firstTime) {
-            target.addText(new TextInst("lw", regToAlloc, addr));
+            target.addText(new TextInst(Opcode.LW, regToAlloc, addr));
+        } else {
+            dirtyRegisters |= regToAlloc.getMask();
         }
 
         addrRegisterMap.put(addr, regToAlloc);
@@ -55,18 +65,49 @@ public class TempRegisterPool {
         while (!timeQueue.isEmpty()) {
             var reg = timeQueue.poll();
             var addr = registerAddrMap.get(reg);
-            target.addText(new TextInst("sw", reg, addr));
+            if (clearDirty(reg)) {
+                target.addText(new TextInst(Opcode.SW, reg, addr));
+            }
         }
     }
 
+    public void writeBackToMemory(Set<Offset> addrs) {
+        for (var reg : timeQueue) {
+            var addr = registerAddrMap.get(reg);
+            if (addrs.contains(addr) && clearDirty(reg)) {
+                target.addText(new TextInst(Opcode.SW, reg, addr));
+            }
+        }
+    }
+
+    // the value in memory has been overwritten, so the cached one is out of date
+    public void invalidate(Offset addr) {
+        var reg = addrRegisterMap.remove(addr);
+        if (reg == null) {
+            return;
+        }
+        registerAddrMap.remove(reg);
+        dirtyRegisters &= ~reg.getMask();
+        timeQueue.remove(reg);
+        registersUnused.add(reg);
+    }
+
     public void reset() {
         registersUnused.clear();
         timeQueue.clear();
         addrRegisterMap.clear();
         registerAddrMap.clear();
+        dirtyRegisters = 0;
         registersUnused.addAll(registers);
     }
 
+    // whether the register was dirty
+    private boolean clearDirty(Register reg) {
+        boolean dirty = (dirtyRegisters & reg.getMask()) != 0;
+        dirtyRegisters &= ~reg.getMask();
+        return dirty;
+    }
+
     public boolean hasBeenAllocated(Offset addr) {
         return addrRegisterMap.containsKey(addr);
     }
@@ -77,9 +118,9 @@ public class TempRegisterPool {
 
     public static void main(String[] args) {
         var target = new Target();
-        var pool = new TempRegisterPool(target, List.of(new Register("t0"), new Register("t1"), new Register("t2")));
+        var pool = new TempRegisterPool(target, Stream.of("t0", "t1", "t2").map(Register.REGS::get).toList());
 
-        var sp = new Register("sp");
+        var sp = Register.SP;
         var offset1 = new Offset(sp, 0); // %1
         var offset2 = new Offset(sp, 4); // %2
         var offset3 = new Offset(sp, 8); // %3
@@ -88,29 +129,29 @@ public class TempRegisterPool {
 
         // %1 = load
         var r1 = pool.allocTempRegister(offset1, true);
-        target.addText(new TextInst("load", r1));
+        target.addText(new TextInst(Opcode.LI, r1, new Immediate(1)));
 
         // %2 = %1 + 2
         var r2 = pool.allocTempRegister(offset2, true);
-        target.addText(new TextInst("add", r2, r1, new Immediate(2)));
+        target.addText(new TextInst(Opcode.ADDU, r2, r1, new Immediate(2)));
 
         // %3 = %1 + %2
         var r3 = pool.allocTempRegister(offset3, true);
-        target.addText(new TextInst("add", r3, r1, r2));
+        target.addText(new TextInst(Opcode.ADDU, r3, r1, r2));
 
         // %4 = %3 + %3
         var r4 = pool.allocTempRegister(offset4, true);
-        target.addText(new TextInst("add", r4, r3, r3));
+        target.addText(new TextInst(Opcode.ADDU, r4, r3, r3));
 
         // %5 = %1 + %4
         var r5 = pool.allocTempRegister(offset5, true);
         r1 = pool.allocTempRegister(offset1, false);
         r4 = pool.allocTempRegister(offset4, false);
-        target.addText(new TextInst("add", r5, r1, r4));
+        target.addText(new TextInst(Opcode.ADDU, r5, r1, r4));
 
         // call
         pool.writeBackToMemoryForAll();
-        target.addText(new TextInst("jal"));
+        target.addText(new TextInst(Opcode.JAL));
 
         target.dump(System.out, false);
     }
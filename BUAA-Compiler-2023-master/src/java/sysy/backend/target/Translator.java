@@ -1,9 +1,14 @@
 package sysy.backend.target;
 
+import sysy.backend.Instrumentation;
 import sysy.backend.ir.*;
 import sysy.backend.ir.Module;
 import sysy.backend.ir.inst.*;
+import sysy.backend.optim.CallGraphAnalyzer;
+import sysy.backend.optim.TailRecursionEliminationPass;
+import sysy.backend.target.inst.Opcode;
 import sysy.backend.target.inst.TextComment;
+import sysy.backend.target.inst.TextEntry;
 import sysy.backend.target.inst.TextInst;
 import sysy.backend.target.inst.TextLabel;
 import sysy.backend.target.value.*;
@@ -13,25 +18,119 @@ import java.util.stream.Stream;
 
 public class Translator {
     private final Target asmTarget = new Target();
-    private final ValueManager valueManager = new ValueManager();
+    private final InstructionSelector instructionSelector = new InstructionSelector(asmTarget);
+    private final ValueManager valueManager;
     private TempRegisterPool tempRegisterPool = new TempRegisterPool(
             asmTarget,
             Stream.of("t0", "t1", "t2", "t3", "t4", "t5", "t6").map(Register.REGS::get).toList());
     private int memorySizeForLocal = 0;
     private final Map<Value, Register> registerTempMap = new HashMap<>();
+    private final Set<Offset> crossBlockAddrs = new HashSet<>();
+    private final Map<Value, Instruction> lastUses = new HashMap<>(); // in the block being translated
+    private final Map<ICmpInst, TargetValue[]> fusedCompares = new HashMap<>(); // operands compared by the branch
+    private final Map<GetElementPtrInst, FoldedAddress> foldedAddresses = new HashMap<>(); // completed by the access
+    private final Map<String, BasicBlock[]> phiEdges = new LinkedHashMap<>();
+    private final Map<Function, Integer> clobberedRegisters = new HashMap<>(); // masks of registers, callees included
+    private final Set<TextInst> restoreInsts = new HashSet<>(); // reloads of saved registers, which clobber nothing
+    private final List<CallSite> callSites = new ArrayList<>(); // in the functions being translated
+    private Function currentFunction = null;
+
+    // the address of a gep left to the load or store using it, offset bytes from pointer
+    private record FoldedAddress(Value pointer, int offset) {}
+
+    // registers restored after the call, and the saves of those which may turn out unnecessary
+    private record CallSite(Function caller, Function callee, int savedRegisters, List<TextInst[]> uncertainSaves) {}
+
+    public Translator() {
+        this(RegisterAllocStrategy.GRAPH_COLORING);
+    }
+
+    public Translator(RegisterAllocStrategy strategy) {
+        valueManager = new ValueManager(strategy);
+    }
 
     public Target getAsmTarget() {
         return asmTarget;
     }
 
+    public void setCostTable(CostTable costTable) {
+        instructionSelector.setCostTable(costTable);
+    }
+
     public void translate(Module irModule) {
         for (var globalVal : irModule.getGlobalValues()) {
             translateGlobalValue(globalVal);
         }
 
-        for (var func : irModule.getFunctions()) {
+        var callGraph = new CallGraphAnalyzer(irModule);
+        callGraph.analyze();
+        for (var component : callGraph.getComponents()) {
+            translateComponent(component);
+        }
+    }
+
+    // callees out of the component are translated before, so the registers they clobber are known, those in it are
+    // assumed to clobber all at first, the saves found unnecessary are removed after their clobbers are solved
+    private void translateComponent(List<Function> component) {
+        int textStart = asmTarget.getTextSize();
+        for (var func : component) {
+            int funcStart = asmTarget.getTextSize();
             translateFunction(func);
+            clobberedRegisters.put(func, getWrittenRegisters(asmTarget.getBasicBlocks(funcStart)));
+            restoreInsts.clear();
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (var callSite : callSites) {
+                int callerClobbers = clobberedRegisters.get(callSite.caller());
+                int clobbers = callerClobbers | clobberedRegisters.get(callSite.callee()) & ~callSite.savedRegisters();
+                if (clobbers != callerClobbers) {
+                    clobberedRegisters.put(callSite.caller(), clobbers);
+                    changed = true;
+                }
+            }
+        }
+
+        Set<TextEntry> unnecessarySaves = new HashSet<>();
+        for (var callSite : callSites) {
+            for (var saveInsts : callSite.uncertainSaves()) {
+                var register = (Register) saveInsts[0].getValues().get(0);
+                if ((clobberedRegisters.get(callSite.callee()) & register.getMask()) == 0) { // the slot is left unused
+                    unnecessarySaves.addAll(List.of(saveInsts));
+                }
+            }
+        }
+        asmTarget.removeTexts(textStart, unnecessarySaves);
+        callSites.clear();
+    }
+
+    // the mask of registers written in the blocks reachable from the first, reloads of saved registers left out
+    private int getWrittenRegisters(List<MachineBasicBlock> blocks) {
+        int registers = 0;
+        Set<MachineBasicBlock> reached = new HashSet<>();
+        Deque<MachineBasicBlock> worklist = new ArrayDeque<>();
+        if (!blocks.isEmpty()) {
+            reached.add(blocks.get(0));
+            worklist.push(blocks.get(0));
+        }
+        while (!worklist.isEmpty()) {
+            var block = worklist.pop();
+            for (var inst : block.getInsts()) {
+                if (!restoreInsts.contains(inst)) {
+                    for (var register : inst.getWrittenRegisters()) {
+                        registers |= register.getMask();
+                    }
+                }
+            }
+            for (var succ : block.getSuccessors()) {
+                if (reached.add(succ)) {
+                    worklist.push(succ);
+                }
+            }
         }
+        return registers;
     }
 
     private void translateGlobalValue(GlobalValue irGlobalValue) {
@@ -53,22 +152,30 @@ public class Translator {
     }
 
     private void translateFunction(Function irFunction) {
-        asmTarget.addText(new TextLabel(irFunction.getName().substring(1)));
+        var instrumentation = Instrumentation.getInstance();
+        var measurement = instrumentation.begin("value-manage", irFunction, 1);
         var totalMemorySize = valueManager.putLocals(irFunction);
+        if (measurement != null) {
+            measurement.end(irFunction, false);
+        }
+
+        int textStart = asmTarget.getTextSize();
+        measurement = instrumentation.begin("translate", irFunction, 1);
+        currentFunction = irFunction;
+        asmTarget.addText(new TextLabel(irFunction.getName().substring(1)));
         memorySizeForLocal = totalMemorySize - irFunction.calcParamSpace();
 
         if (memorySizeForLocal > 0) {
-            var sp = Register.REGS.get("sp");
-            asmTarget.addText(new TextInst("addiu", sp, sp, new Immediate(-memorySizeForLocal)));
+            var sp = Register.SP;
+            asmTarget.addText(new TextInst(Opcode.ADDIU, sp, sp, new Immediate(-memorySizeForLocal)));
+        }
+        if (valueManager.getReturnAddressSlot() != null) { // saved once here rather than around every call
+            asmTarget.addText(new TextInst(Opcode.SW, Register.RA, valueManager.getReturnAddressSlot()));
         }
 
-        Set<Register> tempRegisters = new HashSet<>(
-                Stream.of("s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7",
-                        "t0", "t1", "t2", "t3", "t4", "t5", "t6")
-                        .map(Register.REGS::get)
-                        .toList());
-        valueManager.getRegistersInUse().forEach(tempRegisters::remove);
-        tempRegisterPool = new TempRegisterPool(asmTarget, new ArrayList<>(tempRegisters));
+        tempRegisterPool = new TempRegisterPool(asmTarget, valueManager.getSpillRegisters());
+
+        collectCrossBlockAddrs(irFunction);
 
         for (var block : irFunction.getBasicBlocks()) {
             tempRegisterPool.reset();
@@ -76,20 +183,83 @@ public class Translator {
             translateBasicBlock(block);
         }
 
+        for (var phiEdge : phiEdges.entrySet()) {
+            var fromBlock = phiEdge.getValue()[0];
+            var toBlock = phiEdge.getValue()[1];
+            asmTarget.addText(new TextLabel(phiEdge.getKey()));
+            translateEdgeCopies(fromBlock, toBlock);
+            asmTarget.addText(new TextInst(Opcode.J, new Label(buildBlockLabelName(toBlock))));
+        }
+        phiEdges.clear();
+
         valueManager.clearLocals();
+        if (measurement != null) {
+            measurement.end(asmTarget.countTextInsts(textStart), false);
+        }
+    }
+
+    private void collectCrossBlockAddrs(Function irFunction) {
+        crossBlockAddrs.clear();
+        for (var block : irFunction.getBasicBlocks()) {
+            for (var inst : block.getInstructions()) {
+                for (var operand : inst.getOperands()) {
+                    if (operand instanceof Instruction instOperand
+                            && (instOperand.getBasicBlock() != block || inst instanceof PhiInst)
+                            && valueManager.getMemorySlot(instOperand) instanceof Offset addr) {
+                        crossBlockAddrs.add(addr);
+                    }
+                }
+            }
+        }
     }
 
     private void translateBasicBlock(BasicBlock irBlock) {
         var label = new TextLabel(buildBlockLabelName(irBlock));
         asmTarget.addText(label);
 
+        lastUses.clear();
+        for (var inst : irBlock.getInstructions()) {
+            // the base of a gep folded into the access is read by the access
+            var user = inst instanceof GetElementPtrInst gep && isBaseFoldedIntoAccess(gep) ? inst.getNextInstruction() : inst;
+            for (var operand : inst.getOperands()) {
+                if (operand instanceof Instruction && !(operand instanceof AllocaInst)) {
+                    lastUses.put(operand, user);
+                }
+            }
+        }
         for (var inst : irBlock.getInstructions()) {
             translateInstruction(inst);
+            releaseDeadValues(inst);
+        }
+    }
+
+    // a spilled value not needed by other blocks is dropped from the pool once used for the last time, rather than
+    // written back when its register is taken or before a call
+    private void releaseDeadValues(Instruction inst) {
+        for (var operand : inst.getOperands()) {
+            if (lastUses.get(operand) == inst) {
+                releaseDeadValue(operand);
+            }
+            if (operand instanceof GetElementPtrInst gep && lastUses.get(gep.getElementBase()) == inst
+                    && valueManager.getMemorySlot(gep.getElementBase()) != valueManager.getMemorySlot(inst)) {
+                releaseDeadValue(gep.getElementBase()); // unless the loaded value took over its slot
+            }
+        }
+        if (inst.getUseList().isEmpty()) {
+            releaseDeadValue(inst);
+        }
+    }
+
+    private void releaseDeadValue(Value value) {
+        if (valueManager.getMemorySlot(value) instanceof Offset addr && !crossBlockAddrs.contains(addr)) {
+            tempRegisterPool.invalidate(addr);
         }
     }
 
     private void translateInstruction(Instruction inst) {
         asmTarget.addText(new TextComment(inst));
+        valueManager.setCurrentInstruction(inst);
+        translateSplitMoves();
         if (inst instanceof BinaryInst i) {
             translateBinaryInst(i);
         } else if (inst instanceof BrInst i) {
@@ -121,79 +291,66 @@ public class Translator {
 
         var target = tryAllocTempRegisterForInst(inst);
 
-        if (left instanceof Immediate) {
-            asmTarget.addText(new TextInst("li", target, left));
-            left = target;
-        }
-
-        if (right instanceof Immediate) {
-            var tmpReg = Register.allocateTempRegister();
-            asmTarget.addText(new TextInst("li", tmpReg, right));
-            right = tmpReg;
-        }
-
-        switch (inst.getOp()) {
-            case ADD:
-            case SUB:
-                // use addu and subu to avoid overflow
-                asmTarget.addText(new TextInst(inst.getOp().name().toLowerCase() + "u", target, left, right));
-                break;
-            case MUL:
-                asmTarget.addText(new TextInst(inst.getOp().name().toLowerCase(), target, left, right));
-                break;
-            case SDIV:
-                asmTarget.addText(new TextInst("div", left, right));
-                asmTarget.addText(new TextInst("mflo", target));
-                break;
-            case SREM:
-                asmTarget.addText(new TextInst("div", left, right));
-                asmTarget.addText(new TextInst("mfhi", target));
-                break;
-        }
+        instructionSelector.selectBinary(inst.getOp(), (Register) target, left, right);
     }
 
     private void translateReturnInst(ReturnInst inst) {
+        if (inst.getPrevInstruction() instanceof CallInst callInst && isTailCall(callInst)) {
+            return; // the callee returns for the function
+        }
         if (inst.getValue() != null) {
             var value = tryGetTempRegister(inst.getValue());
 
-            var v0 = Register.REGS.get("v0");
+            var v0 = Register.V0;
 
             if (value instanceof Immediate) {
-                asmTarget.addText(new TextInst("li", v0, value));
+                asmTarget.addText(new TextInst(Opcode.LI, v0, value));
             } else {
-                asmTarget.addText(new TextInst("move", v0, value));
+                asmTarget.addText(new TextInst(Opcode.MOVE, v0, value));
             }
         }
 
-        if (memorySizeForLocal > 0) {
-            var sp = Register.REGS.get("sp");
-            asmTarget.addText(new TextInst("addiu", sp, sp, new Immediate(memorySizeForLocal)));
+        popFrame();
+        asmTarget.addText(new TextInst(Opcode.JR, Register.RA));
+    }
+
+    private void popFrame() {
+        if (valueManager.getReturnAddressSlot() != null) {
+            var restoreInst = new TextInst(Opcode.LW, Register.RA, valueManager.getReturnAddressSlot());
+            asmTarget.addText(restoreInst);
+            restoreInsts.add(restoreInst);
         }
 
-        asmTarget.addText(new TextInst("jr", Register.REGS.get("ra")));
+        if (memorySizeForLocal > 0) {
+            var sp = Register.SP;
+            asmTarget.addText(new TextInst(Opcode.ADDIU, sp, sp, new Immediate(memorySizeForLocal)));
+        }
     }
 
     private void translateLoadInst(LoadInst inst) {
-        if (inst.getPtr() instanceof GetElementPtrInst) {
-            var ptr = tryGetTempRegister(inst.getPtr());
+        if (isPointerValue(inst.getPtr())) {
+            var addr = getAccessAddress(inst.getPtr());
 
-            var registerPtr = convertToRegister(ptr);
             var target = tryAllocTempRegisterForInst(inst);
 
-            asmTarget.addText(new TextInst("lw", target, new Offset(registerPtr, 0)));
+            asmTarget.addText(new TextInst(Opcode.LW, target, addr));
 
         } else {
             var ptr = valueManager.getTargetValue(inst.getPtr());
 
             if (ptr instanceof Register regPtr) {
-                registerTempMap.put(inst, regPtr);
+                if (valueManager.getStrategy() == RegisterAllocStrategy.LINEAR_SCAN) { // the var may be reassigned while the loaded value alive
+                    asmTarget.addText(new TextInst(Opcode.MOVE, tryAllocTempRegisterForInst(inst), regPtr));
+                } else {
+                    registerTempMap.put(inst, regPtr);
+                }
                 return;
             }
 
             var target = tryAllocTempRegisterForInst(inst);
 
             if (ptr instanceof Offset || ptr instanceof Label) {
-                asmTarget.addText(new TextInst("lw", target, ptr));
+                asmTarget.addText(new TextInst(Opcode.LW, target, ptr));
             } else {
                 throw new RuntimeException(); // impossible
             }
@@ -201,20 +358,19 @@ public class Translator {
     }
 
     private void translateStoreInst(StoreInst inst) {
-        if (inst.getValue() instanceof FunctionArgument) {
-            return;
+        if (inst.getValue() instanceof FunctionArgument
+                && valueManager.getTargetValue(inst.getValue()) == valueManager.getTargetValue(inst.getPtr())) {
+            return; // argument has already been there
         }
 
-        if (inst.getPtr() instanceof GetElementPtrInst) {
-            var ptr = tryGetTempRegister(inst.getPtr());
+        if (isPointerValue(inst.getPtr())) {
+            var addr = getAccessAddress(inst.getPtr());
 
             var value = tryGetTempRegister(inst.getValue());
 
             var registerValue = convertToRegister(value);
 
-            Register registerPtr = (Register) ptr;
-
-            asmTarget.addText(new TextInst("sw", registerValue, new Offset(registerPtr, 0)));
+            asmTarget.addText(new TextInst(Opcode.SW, registerValue, addr));
         } else {
             var ptr = valueManager.getTargetValue(inst.getPtr());
 
@@ -223,9 +379,9 @@ public class Translator {
             var registerValue = convertToRegister(value);
 
             if (ptr instanceof Offset || ptr instanceof Label) {
-                asmTarget.addText(new TextInst("sw", registerValue, ptr));
+                asmTarget.addText(new TextInst(Opcode.SW, registerValue, ptr));
             } else if (ptr instanceof Register) {
-                asmTarget.addText(new TextInst("move", ptr, registerValue));
+                asmTarget.addText(new TextInst(Opcode.MOVE, ptr, registerValue));
             } else {
                 throw new RuntimeException(); // impossible
             }
@@ -239,112 +395,343 @@ public class Translator {
 
         var right = tryGetTempRegister(inst.getRight());
 
-        var target = tryAllocTempRegisterForInst(inst);
-
-        if (left instanceof Immediate) {
-            asmTarget.addText(new TextInst("li", target, left));
-            left = target;
-        }
-
-        if (right instanceof Immediate) {
-            var tmpReg = Register.allocateTempRegister();
-            asmTarget.addText(new TextInst("li", tmpReg, right));
-            right = tmpReg;
+        if (isFusedWithBranch(inst)) {
+            fusedCompares.put(inst, new TargetValue[]{left, right});
+            return;
         }
 
-        String instName = switch (inst.getCond()) {
-            case EQ -> "seq";
-            case NE -> "sne";
-            case SGE -> "sge";
-            case SGT -> "sgt";
-            case SLE -> "sle";
-            case SLT -> "slt";
-        };
+        var target = tryAllocTempRegisterForInst(inst);
 
-        asmTarget.addText(new TextInst(instName, target, left, right));
+        instructionSelector.selectCompare(inst.getCond(), (Register) target, left, right);
     }
 
     private void translateBrInst(BrInst inst) {
-        var nextBlock = inst.getBasicBlock().getNextBasicBlock();
-        if (inst.getCond() != null) {
+        var currBlock = inst.getBasicBlock();
+        var nextBlock = currBlock.getNextBasicBlock();
+        if (inst.getCond() instanceof ICmpInst icmpInst && fusedCompares.containsKey(icmpInst)) {
+            translateFusedBranch(inst, icmpInst, fusedCompares.remove(icmpInst));
+        } else if (inst.getCond() != null) {
             var cond = tryGetTempRegister(inst.getCond());
 
             var registerCond = convertToRegister(cond);
             var falseBranch = inst.getFalseBranch();
-            var falseBranchName = buildBlockLabelName(falseBranch);
+            var falseBranchName = buildBranchLabelName(currBlock, falseBranch);
             var trueBranch = inst.getTrueBranch();
-            var trueBranchName = buildBlockLabelName(trueBranch);
+            var trueBranchName = buildBranchLabelName(currBlock, trueBranch);
 
-//            tempRegisterPool.writeBackToMemoryForAll();
+            tempRegisterPool.writeBackToMemory(crossBlockAddrs);
 
-            if (nextBlock != falseBranch) {
-                asmTarget.addText(new TextInst("beqz", registerCond, new Label(falseBranchName)));
+            if (nextBlock != falseBranch || hasEdgeCopies(currBlock, falseBranch)) {
+                asmTarget.addText(new TextInst(Opcode.BEQZ, registerCond, new Label(falseBranchName)));
             }
-            if (nextBlock != trueBranch) {
-                asmTarget.addText(new TextInst("bnez", registerCond, new Label(trueBranchName)));
+            if (nextBlock != trueBranch || hasEdgeCopies(currBlock, trueBranch)) {
+                asmTarget.addText(new TextInst(Opcode.BNEZ, registerCond, new Label(trueBranchName)));
             }
         } else {
             var destBranch = inst.getDest();
             var destBranchName = buildBlockLabelName(destBranch);
 
-//            tempRegisterPool.writeBackToMemoryForAll();
+            tempRegisterPool.writeBackToMemory(crossBlockAddrs);
+
+            translateEdgeCopies(currBlock, destBranch);
 
             if (nextBlock != destBranch) {
-                asmTarget.addText(new TextInst("j", new Label(destBranchName)));
+                asmTarget.addText(new TextInst(Opcode.J, new Label(destBranchName)));
+            }
+        }
+    }
+
+    // the compare right before the branch, whose result is used by nothing else, is done by the branch itself, with
+    // nothing in between to overwrite the operands
+    private boolean isFusedWithBranch(ICmpInst inst) {
+        return inst.getNextInstruction() instanceof BrInst brInst && brInst.getCond() == inst
+                && inst.getUseList().size() == 1 && !valueManager.hasMovedValuesBefore(brInst);
+    }
+
+    // jumps when the compare fails if the true branch follows, and when it holds otherwise
+    private void translateFusedBranch(BrInst inst, ICmpInst icmpInst, TargetValue[] operands) {
+        var currBlock = inst.getBasicBlock();
+        var nextBlock = currBlock.getNextBasicBlock();
+        var falseBranch = inst.getFalseBranch();
+        var falseBranchName = buildBranchLabelName(currBlock, falseBranch);
+        var trueBranch = inst.getTrueBranch();
+        var trueBranchName = buildBranchLabelName(currBlock, trueBranch);
+
+        tempRegisterPool.writeBackToMemory(crossBlockAddrs);
+
+        boolean jumpsToFalse = nextBlock != falseBranch || hasEdgeCopies(currBlock, falseBranch);
+        boolean jumpsToTrue = nextBlock != trueBranch || hasEdgeCopies(currBlock, trueBranch);
+        if (jumpsToFalse) {
+            translateCompareBranch(icmpInst.getCond().negated(), operands[0], operands[1], new Label(falseBranchName));
+            if (jumpsToTrue) {
+                asmTarget.addText(new TextInst(Opcode.J, new Label(trueBranchName)));
             }
+        } else if (jumpsToTrue) {
+            translateCompareBranch(icmpInst.getCond(), operands[0], operands[1], new Label(trueBranchName));
         }
     }
 
+    private void translateCompareBranch(ICmpInstCond cond, TargetValue left, TargetValue right, Label label) {
+        if (left instanceof Immediate) {
+            if (right instanceof Immediate) {
+                var tmpReg = Register.allocateTempRegister();
+                asmTarget.addText(new TextInst(Opcode.LI, tmpReg, left));
+                left = tmpReg;
+            } else {
+                var tmp = left;
+                left = right;
+                right = tmp;
+                cond = cond.swapped();
+            }
+        }
+
+        if (right instanceof Immediate immediate && immediate.getValue() == 0) { // compared with $zero
+            Opcode opcode = switch (cond) {
+                case EQ -> Opcode.BEQZ;
+                case NE -> Opcode.BNEZ;
+                case SGE -> Opcode.BGEZ;
+                case SGT -> Opcode.BGTZ;
+                case SLE -> Opcode.BLEZ;
+                case SLT -> Opcode.BLTZ;
+            };
+            asmTarget.addText(new TextInst(opcode, left, label));
+            return;
+        }
+
+        if (right instanceof Immediate immediate && cond != ICmpInstCond.EQ && cond != ICmpInstCond.NE) {
+            // x <= c is x < c + 1, which slti tells without loading c first
+            long bound = cond == ICmpInstCond.SLT || cond == ICmpInstCond.SGE ? immediate.getValue() : immediate.getValue() + 1L;
+            if (bound >= Short.MIN_VALUE && bound <= Short.MAX_VALUE) {
+                var tmpReg = Register.allocateTempRegister();
+                asmTarget.addText(new TextInst(Opcode.SLTI, tmpReg, left, new Immediate((int) bound)));
+                boolean isLess = cond == ICmpInstCond.SLT || cond == ICmpInstCond.SLE;
+                asmTarget.addText(new TextInst(isLess ? Opcode.BNEZ : Opcode.BEQZ, tmpReg, label));
+                return;
+            }
+        }
+
+        Opcode opcode = switch (cond) {
+            case EQ -> Opcode.BEQ;
+            case NE -> Opcode.BNE;
+            case SGE -> Opcode.BGE;
+            case SGT -> Opcode.BGT;
+            case SLE -> Opcode.BLE;
+            case SLT -> Opcode.BLT;
+        };
+        asmTarget.addText(new TextInst(opcode, left, right, label));
+    }
+
+    // a conditional branch to a block with phi insts or split values goes through an edge block, where the copies are placed
+    private String buildBranchLabelName(BasicBlock fromBlock, BasicBlock toBlock) {
+        if (!hasEdgeCopies(fromBlock, toBlock)) {
+            return buildBlockLabelName(toBlock);
+        }
+        var edgeName = buildBlockLabelName(fromBlock) + "." + toBlock.getName().substring(1);
+        phiEdges.put(edgeName, new BasicBlock[]{fromBlock, toBlock});
+        return edgeName;
+    }
+
+    private boolean hasEdgeCopies(BasicBlock fromBlock, BasicBlock toBlock) {
+        List<TargetValue> dsts = new ArrayList<>();
+        List<TargetValue> srcs = new ArrayList<>();
+        collectEdgeCopies(fromBlock, toBlock, dsts, srcs);
+        return !dsts.isEmpty();
+    }
+
+    // phi insts in toBlock, and split values whose location changes on the edge
+    private void collectEdgeCopies(BasicBlock fromBlock, BasicBlock toBlock, List<TargetValue> dsts, List<TargetValue> srcs) {
+        for (var phiInst : toBlock.getPhiInsts()) {
+            var dst = valueManager.getTargetValueAtStart(phiInst, toBlock);
+            var src = valueManager.getTargetValueAtEnd(phiInst.getIncomingValue(fromBlock), fromBlock);
+            if (!isSameLocation(dst, src)) {
+                dsts.add(dst);
+                srcs.add(src);
+            }
+        }
+        for (var value : valueManager.getSplitValuesLiveIn(toBlock)) {
+            var dst = valueManager.getTargetValueAtStart(value, toBlock);
+            var src = valueManager.getTargetValueAtEnd(value, fromBlock);
+            if (!isSameLocation(dst, src)) {
+                dsts.add(dst);
+                srcs.add(src);
+            }
+        }
+    }
+
+    private void translateEdgeCopies(BasicBlock fromBlock, BasicBlock toBlock) {
+        List<TargetValue> dsts = new ArrayList<>();
+        List<TargetValue> srcs = new ArrayList<>();
+        collectEdgeCopies(fromBlock, toBlock, dsts, srcs);
+        translateParallelCopies(dsts, srcs);
+    }
+
+    // split values change their locations right before the inst, values in memory may be cached by temp registers
+    private void translateSplitMoves() {
+        List<TargetValue> dsts = new ArrayList<>();
+        List<TargetValue> srcs = new ArrayList<>();
+        for (var value : valueManager.getMovedValues()) {
+            var src = valueManager.getTargetValueBeforeCurrent(value);
+            if (src instanceof Offset offset && tempRegisterPool.getRegister(offset) != null) {
+                src = tempRegisterPool.getRegister(offset);
+            }
+            dsts.add(valueManager.getTargetValue(value));
+            srcs.add(src);
+        }
+        translateParallelCopies(dsts, srcs);
+        for (var dst : dsts) {
+            if (dst instanceof Offset offset) {
+                tempRegisterPool.invalidate(offset);
+            }
+        }
+    }
+
+    // all copies are done at the same time, they are ordered so that no source is overwritten before read
+    private void translateParallelCopies(List<TargetValue> dsts, List<TargetValue> srcs) {
+        dsts = new ArrayList<>(dsts);
+        srcs = new ArrayList<>(srcs);
+        var v1 = Register.V1;
+        while (!dsts.isEmpty()) {
+            int readyIdx = -1;
+            for (int i = 0; i < dsts.size() && readyIdx < 0; i++) {
+                readyIdx = i;
+                for (var src : srcs) {
+                    if (isSameLocation(dsts.get(i), src)) {
+                        readyIdx = -1;
+                        break;
+                    }
+                }
+            }
+
+            if (readyIdx < 0) { // only cycles left, break one by saving a destination
+                var dst = dsts.get(0);
+                assignToLocation(v1, dst);
+                for (int i = 0; i < srcs.size(); i++) {
+                    if (isSameLocation(srcs.get(i), dst)) {
+                        srcs.set(i, v1);
+                    }
+                }
+                continue;
+            }
+
+            assignToLocation(dsts.remove(readyIdx), srcs.remove(readyIdx));
+            Register.freeAllTempRegisters();
+        }
+    }
+
+    private void assignToLocation(TargetValue dst, TargetValue src) {
+        if (dst instanceof Register dstReg) {
+            assignToRegister(dstReg, src);
+        } else {
+            asmTarget.addText(new TextInst(Opcode.SW, convertToRegister(src), dst));
+        }
+    }
+
+    private static boolean isSameLocation(TargetValue a, TargetValue b) {
+        if (a instanceof Offset offsetA && b instanceof Offset offsetB) {
+            return offsetA.getBase() == offsetB.getBase() && offsetA.getOffset() == offsetB.getOffset();
+        }
+        return a == b;
+    }
+
     private void translateCallInst(CallInst inst) {
         var func = inst.getFunc();
         if (func == Function.BUILD_IN_PUTINT || func == Function.BUILD_IN_PUTCH) {
-            asmTarget.addText(new TextInst("li", Register.REGS.get("v0"), new Immediate(func == Function.BUILD_IN_PUTINT ? 1 : 11)));
+            asmTarget.addText(new TextInst(Opcode.LI, Register.V0, new Immediate(func == Function.BUILD_IN_PUTINT ? 1 : 11)));
 
             var inputVal = inst.getParams().get(0);
             var inputTargetValue = tryGetTempRegister(inputVal);
 
-            var a0 = Register.REGS.get("a0");
-            var t7 = Register.REGS.get("t7");
-            asmTarget.addText(new TextInst("move", t7, a0));
+            var a0 = Register.A0;
+            var t7 = Register.T7;
+            asmTarget.addText(new TextInst(Opcode.MOVE, t7, a0));
 
             if (inputTargetValue instanceof Immediate) {
-                asmTarget.addText(new TextInst("li", a0, inputTargetValue));
+                asmTarget.addText(new TextInst(Opcode.LI, a0, inputTargetValue));
             } else {
-                asmTarget.addText(new TextInst("move", a0, inputTargetValue));
+                asmTarget.addText(new TextInst(Opcode.MOVE, a0, inputTargetValue));
             }
 
-            asmTarget.addText(new TextInst("syscall"));
+            asmTarget.addText(new TextInst(Opcode.SYSCALL));
 
-            asmTarget.addText(new TextInst("move", a0, t7));
+            asmTarget.addText(new TextInst(Opcode.MOVE, a0, t7));
 
         } else if (func == Function.BUILD_IN_GETINT) {
-            asmTarget.addText(new TextInst("li", Register.REGS.get("v0"), new Immediate(5)));
-            asmTarget.addText(new TextInst("syscall"));
+            asmTarget.addText(new TextInst(Opcode.LI, Register.V0, new Immediate(5)));
+            asmTarget.addText(new TextInst(Opcode.SYSCALL));
 
             var target = tryAllocTempRegisterForInst(inst);
 
-            asmTarget.addText(new TextInst("move", target, Register.REGS.get("v0")));
+            asmTarget.addText(new TextInst(Opcode.MOVE, target, Register.V0));
 
+        } else if (isTailCall(inst)) {
+            translateTailCall(inst);
         } else { // common func
             translateCommonFuncCall(inst);
         }
     }
 
-    private void translateCommonFuncCall(CallInst inst) {
-
+    // the callee's arguments all fit in registers, so nothing is left in the frame it is popped before the jump
+    private static boolean isTailCall(CallInst inst) {
+        return TailRecursionEliminationPass.getTailCall(inst.getBasicBlock()) == inst
+                && inst.getParams().size() <= 4
+                && !TailRecursionEliminationPass.passesLocalMemory(inst);
+    }
 
+    // the callee returns to the caller of the function, so the function clobbers whatever it does
+    private void translateTailCall(CallInst inst) {
+        var func = inst.getFunc();
+        List<TargetValue> dsts = new ArrayList<>();
+        List<TargetValue> srcs = new ArrayList<>();
+        for (int i = 0; i < inst.getParams().size(); i++) {
+            var param = inst.getParams().get(i);
+            var src = registerTempMap.containsKey(param) ? registerTempMap.get(param) : valueManager.getTargetValue(param);
+            if (src instanceof Offset offset && tempRegisterPool.getRegister(offset) != null) {
+                src = tempRegisterPool.getRegister(offset);
+            }
+            dsts.add(Register.getArgRegister(i));
+            srcs.add(src);
+        }
+        translateParallelCopies(dsts, srcs);
 
-        List<Register> registerToReserve = new ArrayList<>();
-        registerToReserve.addAll(Stream.of(
-//                "t0", "t1", "t2", "t3", "t4",
-//                "s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7",
-//                "a0", "a1", "a2", "a3",
-                "ra"
-        ).map(Register.REGS::get).toList());
-        registerToReserve.addAll(valueManager.getRegistersInUse());
+        popFrame();
+        asmTarget.addText(new TextInst(Opcode.J, new Label(func.getName().substring(1))));
+        callSites.add(new CallSite(currentFunction, func, 0, List.of()));
+    }
 
+    private void translateCommonFuncCall(CallInst inst) {
         var func = inst.getFunc();
-        var sp = Register.REGS.get("sp");
+        var sp = Register.SP;
+
+        // registers holding params are saved anyway, since they are read from the slots when passing
+        List<Register> paramRegisters = new ArrayList<>();
+        for (var param : inst.getParams()) {
+            if (registerTempMap.containsKey(param)) {
+                paramRegisters.add(registerTempMap.get(param));
+            } else if (valueManager.getTargetValue(param) instanceof Register reg && Register.isArgRegister(reg)) {
+                paramRegisters.add(reg);
+            }
+        }
+
+        // a callee in the component being translated has its clobbers unknown yet, arg registers are taken by params
+        var calleeClobbers = clobberedRegisters.get(func);
+        int registersToKeep = 0;
+        for (int i = 0; i < inst.getParams().size() && i < 4; i++) {
+            registersToKeep |= Register.getArgRegister(i).getMask();
+        }
+        for (var register : paramRegisters) {
+            registersToKeep |= register.getMask();
+        }
+        List<Register> registerToReserve = new ArrayList<>();
+        for (var register : valueManager.getRegistersToSave(inst)) {
+            if (calleeClobbers == null || ((calleeClobbers | registersToKeep) & register.getMask()) != 0) {
+                registerToReserve.add(register);
+            }
+        }
+        for (var register : paramRegisters) {
+            if (!registerToReserve.contains(register)) {
+                registerToReserve.add(register);
+            }
+        }
 
         int registerByteSize = 4 * registerToReserve.size();
         int paramByteSize = func.calcParamSpace();
@@ -352,9 +739,9 @@ public class Translator {
 
         tempRegisterPool.writeBackToMemoryForAll();
 
-        asmTarget.addText(new TextInst("addiu", sp, sp, new Immediate(-newAllocByteSize)));
+        asmTarget.addText(new TextInst(Opcode.ADDIU, sp, sp, new Immediate(-newAllocByteSize)));
 
-        reserveRegistersInFuncCall(registerToReserve, paramByteSize);
+        var saveInsts = reserveRegistersInFuncCall(registerToReserve, paramByteSize);
 
         if (paramByteSize > 0) {
             int base = 0;
@@ -370,6 +757,9 @@ public class Translator {
                     }
                     var savedRegisterOffset = registerToReserve.indexOf(reg) * 4 + paramByteSize;
                     targetParam = new Offset(sp, savedRegisterOffset);
+                } else if (targetParam instanceof Register reg && Register.isArgRegister(reg)) { // may be overwritten by former params
+                    var savedRegisterOffset = registerToReserve.indexOf(reg) * 4 + paramByteSize;
+                    targetParam = new Offset(sp, savedRegisterOffset);
                 } else {
                     if (targetParam instanceof Offset offsetParam) { // sp has changed, so offset change as well
                         if (tempRegisterPool.getRegister(offsetParam) != null) {
@@ -381,12 +771,12 @@ public class Translator {
                 }
 
                 if (paramCount < 4) {
-                    var argReg = Register.REGS.get("a" + paramCount);
+                    var argReg = Register.getArgRegister(paramCount);
 
                     assignToRegister(argReg, targetParam);
                 } else {
                     var registerParam = convertToRegister(targetParam);
-                    asmTarget.addText(new TextInst("sw", registerParam, new Offset(sp, base)));
+                    asmTarget.addText(new TextInst(Opcode.SW, registerParam, new Offset(sp, base)));
 
                     Register.freeAllTempRegisters(); // TODO: maybe wrong
                 }
@@ -395,47 +785,63 @@ public class Translator {
 
         tempRegisterPool.reset();
 
-        asmTarget.addText(new TextInst("jal", new Label(func.getName().substring(1))));
+        asmTarget.addText(new TextInst(Opcode.JAL, new Label(func.getName().substring(1))));
 
-        recoverRegistersInFuncCall(registerToReserve, paramByteSize);
+        var recoverInsts = recoverRegistersInFuncCall(registerToReserve, paramByteSize);
+        restoreInsts.addAll(recoverInsts);
+        List<TextInst[]> uncertainSaves = new ArrayList<>();
+        int savedRegisters = 0;
+        for (int i = 0; i < registerToReserve.size(); i++) {
+            savedRegisters |= registerToReserve.get(i).getMask();
+            if (calleeClobbers == null && (registersToKeep & registerToReserve.get(i).getMask()) == 0) {
+                uncertainSaves.add(new TextInst[]{saveInsts.get(i), recoverInsts.get(i)});
+            }
+        }
+        callSites.add(new CallSite(currentFunction, func, savedRegisters, uncertainSaves));
 
-        asmTarget.addText(new TextInst("addiu", sp, sp, new Immediate(newAllocByteSize)));
+        asmTarget.addText(new TextInst(Opcode.ADDIU, sp, sp, new Immediate(newAllocByteSize)));
 
         if (func.getRetType().getType() != IRTypeEnum.VOID) {
             var target = tryAllocTempRegisterForInst(inst);
 
-            asmTarget.addText(new TextInst("move", target, Register.REGS.get("v0")));
+            asmTarget.addText(new TextInst(Opcode.MOVE, target, Register.V0));
         }
     }
 
     private void assignToRegister(Register reg, TargetValue value) {
         if (value instanceof Immediate) {
-            asmTarget.addText(new TextInst("li", reg, value));
+            asmTarget.addText(new TextInst(Opcode.LI, reg, value));
         } else if (value instanceof Offset) {
-            asmTarget.addText(new TextInst("lw", reg, value));
+            asmTarget.addText(new TextInst(Opcode.LW, reg, value));
         } else if (value instanceof Register) {
-            asmTarget.addText(new TextInst("move", reg, value));
+            asmTarget.addText(new TextInst(Opcode.MOVE, reg, value));
         } else {
             throw new RuntimeException(); //impossible
         }
     }
 
-    private void reserveRegistersInFuncCall(List<Register> registersToReserve, int baseOffset) {
-        var sp = Register.REGS.get("sp");
+    private List<TextInst> reserveRegistersInFuncCall(List<Register> registersToReserve, int baseOffset) {
+        var sp = Register.SP;
         int offset = 0;
+        List<TextInst> saveInsts = new ArrayList<>();
         for (var register : registersToReserve) {
-            asmTarget.addText(new TextInst("sw", register, new Offset(sp, baseOffset + offset)));
+            saveInsts.add(new TextInst(Opcode.SW, register, new Offset(sp, baseOffset + offset)));
+            asmTarget.addText(saveInsts.get(saveInsts.size() - 1));
             offset += 4;
         }
+        return saveInsts;
     }
 
-    private void recoverRegistersInFuncCall(List<Register> registersToRecover, int baseOffset) {
-        var sp = Register.REGS.get("sp");
+    private List<TextInst> recoverRegistersInFuncCall(List<Register> registersToRecover, int baseOffset) {
+        var sp = Register.SP;
         int offset = 0;
+        List<TextInst> recoverInsts = new ArrayList<>();
         for (var register : registersToRecover) {
-            asmTarget.addText(new TextInst("lw", register, new Offset(sp, baseOffset + offset)));
+            recoverInsts.add(new TextInst(Opcode.LW, register, new Offset(sp, baseOffset + offset)));
+            asmTarget.addText(recoverInsts.get(recoverInsts.size() - 1));
             offset += 4;
         }
+        return recoverInsts;
     }
 
     private void translateGetElementPtrInst(GetElementPtrInst inst) {
@@ -443,42 +849,131 @@ public class Translator {
         var offsets = inst.getOffsets();
         var dims = base.getType().getArrayDims();
 
+        var constantAddress = getConstantAddress(inst);
+        if (constantAddress != null) { // accesses and geps take the address itself
+            if (!inst.getUseList().stream().allMatch(use -> isAccessedThrough(use.getUser(), inst)
+                    || use.getUser() instanceof GetElementPtrInst)) {
+                asmTarget.addText(new TextInst(Opcode.LA, tryAllocTempRegisterForInst(inst), constantAddress));
+            }
+            return;
+        }
+        boolean folded = isFoldedIntoAccess(inst);
+        if (folded && isBaseFoldedIntoAccess(inst)) {
+            foldedAddresses.put(inst, new FoldedAddress(base, getConstantOffset(inst)));
+            return;
+        }
+
         var target = tryAllocTempRegisterForInst(inst);
         Register registerBase = (Register) target; // registerBase is just target
 
-        if (base instanceof LoadInst || base instanceof GetElementPtrInst) { // if is pointer
+        var baseAddr = base instanceof GetElementPtrInst baseInst ? getConstantAddress(baseInst) : null;
+        if (baseAddr == null && isPointerValue(base)) { // if is pointer
             var baseVal = tryGetTempRegister(base);
 
-            asmTarget.addText(new TextInst("move", registerBase, baseVal));
+            asmTarget.addText(new TextInst(Opcode.MOVE, registerBase, baseVal));
 
         } else { // if is address
-            asmTarget.addText(new TextInst("la", registerBase, valueManager.getTargetValue(base)));
+            asmTarget.addText(new TextInst(Opcode.LA, registerBase, baseAddr != null ? baseAddr : valueManager.getTargetValue(base)));
         }
 
         var registerTemp = Register.allocateTempRegister();
-        int currDim = 0;
-        for (var offset : offsets) {
-            if (offset instanceof ImmediateValue immediate && immediate.getValue() == 0) {
-                currDim++;
-                continue;
+        for (int i = 0; i < offsets.size(); i++) {
+            if (offsets.get(i) instanceof ImmediateValue) {
+                continue; // constant indices are added up at once
             }
-            int memSize = 4;
-            for (int i = currDim; i < dims.size(); i++) {
-                memSize *= dims.get(i);
+            var offsetVal = tryGetTempRegister(offsets.get(i));
+            instructionSelector.selectMultiplyByConstant(registerTemp, (Register) offsetVal, getElementSize(dims, i));
+            asmTarget.addText(new TextInst(Opcode.ADDU, registerBase, registerBase, registerTemp));
+        }
+
+        int constOffset = getConstantOffset(inst);
+        if (folded) {
+            foldedAddresses.put(inst, new FoldedAddress(inst, constOffset));
+        } else if (constOffset >= Short.MIN_VALUE && constOffset <= Short.MAX_VALUE) {
+            if (constOffset != 0) {
+                asmTarget.addText(new TextInst(Opcode.ADDIU, registerBase, registerBase, new Immediate(constOffset)));
             }
+        } else {
+            asmTarget.addText(new TextInst(Opcode.LI, registerTemp, new Immediate(constOffset)));
+            asmTarget.addText(new TextInst(Opcode.ADDU, registerBase, registerBase, registerTemp));
+        }
+    }
 
-            var offsetVal = tryGetTempRegister(offset);
+    private static int getElementSize(List<Integer> dims, int dim) {
+        int memSize = 4;
+        for (int i = dim; i < dims.size(); i++) {
+            memSize *= dims.get(i);
+        }
+        return memSize;
+    }
 
-            if (offsetVal instanceof Immediate) {
-                asmTarget.addText(new TextInst("li", registerTemp, offsetVal));
-                asmTarget.addText(new TextInst("mul", registerTemp, registerTemp, new Immediate(memSize)));
-            } else {
-                asmTarget.addText(new TextInst("mul", registerTemp, offsetVal, new Immediate(memSize)));
+    private static int getConstantOffset(GetElementPtrInst inst) {
+        var dims = inst.getElementBase().getType().getArrayDims();
+        int constOffset = 0;
+        for (int i = 0; i < inst.getOffsets().size(); i++) {
+            if (inst.getOffsets().get(i) instanceof ImmediateValue immediate) {
+                constOffset += immediate.getValue() * getElementSize(dims, i);
+            }
+        }
+        return constOffset;
+    }
+
+    // constant indices down to an array in memory make an address which loads, stores and geps take in place of the gep
+    private TargetValue getConstantAddress(GetElementPtrInst inst) {
+        int constOffset = 0;
+        Value base = inst;
+        for (; base instanceof GetElementPtrInst gep; base = gep.getElementBase()) {
+            if (!gep.getOffsets().stream().allMatch(ImmediateValue.class::isInstance)) {
+                return null;
             }
+            constOffset += getConstantOffset(gep);
+        }
+        if (isPointerValue(base)) {
+            return null;
+        }
+
+        var baseAddr = valueManager.getTargetValue(base);
+        if (baseAddr instanceof Offset offset && offset.getOffset() + constOffset >= Short.MIN_VALUE
+                && offset.getOffset() + constOffset <= Short.MAX_VALUE) {
+            return new Offset(offset.getBase(), offset.getOffset() + constOffset);
+        } else if (baseAddr instanceof Label label && constOffset >= 0) {
+            return constOffset == 0 ? label : new Label(label + "+" + constOffset);
+        }
+        return null;
+    }
+
+    // a gep only accessed by the next instruction leaves its constant offset to the access
+    private boolean isFoldedIntoAccess(GetElementPtrInst inst) {
+        int constOffset = getConstantOffset(inst);
+        return inst.getUseList().size() == 1 && isAccessedThrough(inst.getNextInstruction(), inst)
+                && !valueManager.hasMovedValuesBefore(inst.getNextInstruction())
+                && constOffset >= Short.MIN_VALUE && constOffset <= Short.MAX_VALUE;
+    }
+
+    // with constant indices into a pointer, the access takes the pointer, which linear scan may not keep in place
+    private boolean isBaseFoldedIntoAccess(GetElementPtrInst inst) {
+        return getConstantAddress(inst) == null && isPointerValue(inst.getElementBase())
+                && inst.getOffsets().stream().allMatch(ImmediateValue.class::isInstance)
+                && valueManager.getStrategy() != RegisterAllocStrategy.LINEAR_SCAN && isFoldedIntoAccess(inst);
+    }
 
-            asmTarget.addText(new TextInst("addu", registerBase, registerBase, registerTemp));
-            currDim++;
+    private static boolean isAccessedThrough(Value user, Value ptr) {
+        return user instanceof LoadInst loadInst && loadInst.getPtr() == ptr
+                || user instanceof StoreInst storeInst && storeInst.getPtr() == ptr && storeInst.getValue() != ptr;
+    }
+
+    private TargetValue getAccessAddress(Value ptr) {
+        if (ptr instanceof GetElementPtrInst gep) {
+            var constantAddress = getConstantAddress(gep);
+            if (constantAddress != null) {
+                return constantAddress;
+            }
+            var folded = foldedAddresses.remove(gep);
+            if (folded != null) {
+                return new Offset(convertToRegister(tryGetTempRegister(folded.pointer())), folded.offset());
+            }
         }
+        return new Offset(convertToRegister(tryGetTempRegister(ptr)), 0);
     }
 
     private void translateZExtInst(ZExtInst inst) {
@@ -487,9 +982,9 @@ public class Translator {
         var target = tryAllocTempRegisterForInst(inst);
 
         if (value instanceof Immediate) {
-            asmTarget.addText(new TextInst("li", target, value));
+            asmTarget.addText(new TextInst(Opcode.LI, target, value));
         } else {
-            asmTarget.addText(new TextInst("move", target, value));
+            asmTarget.addText(new TextInst(Opcode.MOVE, target, value));
         }
     }
 
@@ -531,11 +1026,11 @@ public class Translator {
     private Register convertToRegister(TargetValue targetValue) {
         if (isAddress(targetValue)) {
             var newReg = Register.allocateTempRegister();
-            asmTarget.addText(new TextInst("lw", newReg, targetValue));
+            asmTarget.addText(new TextInst(Opcode.LW, newReg, targetValue));
             return newReg;
         } else if (isImmediate(targetValue)) {
             var newReg = Register.allocateTempRegister();
-            asmTarget.addText(new TextInst("li", newReg, targetValue));
+            asmTarget.addText(new TextInst(Opcode.LI, newReg, targetValue));
             return newReg;
         } else if (targetValue instanceof Register register) {
             return register;
@@ -544,6 +1039,10 @@ public class Translator {
         }
     }
 
+    private static boolean isPointerValue(Value ptr) {
+        return !(ptr instanceof AllocaInst || ptr instanceof GlobalValue);
+    }
+
     private boolean isImmediate(TargetValue value) {
         return value instanceof Immediate;
     }
@@ -1,34 +1,120 @@
 package sysy.backend.target;
 
+import sysy.backend.Instrumentation;
 import sysy.backend.ir.*;
 import sysy.backend.ir.inst.*;
-import sysy.backend.optim.ConflictDiagramBuilder;
-import sysy.backend.optim.LiveVariableAnalyzer;
+import sysy.backend.optim.*;
 import sysy.backend.target.value.*;
 
 import java.util.*;
+import java.util.stream.Stream;
 
 public class ValueManager {
     private final Map<Value, TargetValue> globalValueMap = new HashMap<>();
     private final Map<Value, TargetValue> localValueMap = new HashMap<>();
+    private final RegisterAllocStrategy strategy;
+    private LinearScanAllocator linearScanAllocator = null;
+    private LiveVariableAnalyzer liveVarAnalyzer = null; // kept by graph coloring to find values alive across calls
+    private SSALiveVariableAnalyzer ssaLiveVarAnalyzer = null;
+    private Offset returnAddressSlot = null;
+    private final Map<Value, List<LiveInterval>> splitValues = new HashMap<>(); // values moving between locations
+    private int currentPosition = 0;
+
+    public ValueManager(RegisterAllocStrategy strategy) {
+        this.strategy = strategy;
+    }
+
+    public RegisterAllocStrategy getStrategy() {
+        return strategy;
+    }
 
+    // the location may change between insts when the value is split, see setCurrentInstruction
     public TargetValue getTargetValue(Value value) {
+        return getTargetValueAt(value, currentPosition);
+    }
+
+    private TargetValue getTargetValueAt(Value value, int position) {
         if (value instanceof ImmediateValue immediateValue) {
             return new Immediate(immediateValue.getValue());
         }
+        if (splitValues.containsKey(value)) {
+            var register = linearScanAllocator.getIntervalAt(value, position).getRegister();
+            return register == null ? localValueMap.get(value) : register;
+        }
         return globalValueMap.getOrDefault(value, localValueMap.getOrDefault(value, null));
     }
 
+    public TargetValue getTargetValueAtStart(Value value, BasicBlock block) {
+        if (linearScanAllocator == null) {
+            return getTargetValue(value);
+        }
+        return getTargetValueAt(value, linearScanAllocator.getBlockStart(block));
+    }
+
+    public TargetValue getTargetValueAtEnd(Value value, BasicBlock block) {
+        if (linearScanAllocator == null) {
+            return getTargetValue(value);
+        }
+        return getTargetValueAt(value, linearScanAllocator.getBlockEnd(block));
+    }
+
+    // the location right before the previous inst is done
+    public TargetValue getTargetValueBeforeCurrent(Value value) {
+        return getTargetValueAt(value, currentPosition-1);
+    }
+
+    public void setCurrentInstruction(Instruction inst) {
+        if (linearScanAllocator != null) {
+            currentPosition = linearScanAllocator.getPosition(inst);
+        }
+    }
+
+    // values to move before the current inst
+    public List<Value> getMovedValues() {
+        if (linearScanAllocator == null) {
+            return List.of();
+        }
+        return linearScanAllocator.getMovedValues(currentPosition);
+    }
+
+    public boolean hasMovedValuesBefore(Instruction inst) {
+        if (linearScanAllocator == null) {
+            return false;
+        }
+        return !linearScanAllocator.getMovedValues(linearScanAllocator.getPosition(inst)).isEmpty();
+    }
+
+    // split values alive at the beginning of the block, whose locations may differ between the edges
+    public List<Value> getSplitValuesLiveIn(BasicBlock block) {
+        if (linearScanAllocator == null) {
+            return List.of();
+        }
+        return linearScanAllocator.getLiveIn(block).stream().filter(splitValues::containsKey).toList();
+    }
+
+    public TargetValue getMemorySlot(Value value) {
+        return localValueMap.get(value);
+    }
+
     public void putGlobal(Value value, Label label) {
         globalValueMap.put(value, label);
     }
 
     public int putLocals(Function func) {
-//        return basicManage(func);
-        return graphColoringManage(func);
+        return switch (strategy) {
+            case BASIC -> basicManage(func);
+            case REF_COUNT -> refCountManage(func);
+            case GRAPH_COLORING -> graphColoringManage(func);
+            case LINEAR_SCAN -> linearScanManage(func);
+        };
     }
 
     private int basicManage(Function func) {
+        var registersName = List.of("s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7");
+        return manageMemory(func, registersName.stream().map(Register.REGS::get).toList(), this::basicGlobalRegisterManage);
+    }
+
+    private int refCountManage(Function func) {
         var registersName = List.of("s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7");
         return manageMemory(func, registersName.stream().map(Register.REGS::get).toList(), this::refCountGlobalRegisterManage);
     }
@@ -38,6 +124,16 @@ public class ValueManager {
         return manageMemory(func, registersName.stream().map(Register.REGS::get).toList(), this::graphColoringGlobalRegisterManage);
     }
 
+    // argument registers not taken by arguments are allocatable as well, t4 and above are for spilling
+    private int linearScanManage(Function func) {
+        List<String> registersName = new ArrayList<>(List.of("t0", "t1", "t2", "t3",
+                "s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7"));
+        for (int i = func.getArguments().size(); i < 4; i++) {
+            registersName.add("a" + i);
+        }
+        return manageMemory(func, registersName.stream().map(Register.REGS::get).toList(), this::linearScanGlobalRegisterManage);
+    }
+
     private void basicGlobalRegisterManage(List<Register> registers, List<AllocaInst> varInsts, Function func) {
         Stack<Register> registersAllocator = new Stack<>();
         registersAllocator.addAll(registers);
@@ -110,152 +206,285 @@ public class ValueManager {
 
         var conflictDiagram = new ConflictDiagramBuilder(varInsts, liveVarAnalyzer.getDefSets(), activeSets).getDiagram();
 
-        var diagramForColor = conflictDiagram.copy();
+        ssaLiveVarAnalyzer = new SSALiveVariableAnalyzer(func);
+        ssaLiveVarAnalyzer.analyze();
+        this.liveVarAnalyzer = liveVarAnalyzer;
+        var ssaConflictDiagram = new SSAConflictDiagramBuilder(func, ssaLiveVarAnalyzer).getDiagram();
+
+        List<Value> nodes = new ArrayList<>(varInsts);
+        nodes.addAll(ssaConflictDiagram.getNodes());
+        var graph = new InterferenceGraph(nodes);
+        graph.addEdges(conflictDiagram);
+        graph.addEdges(ssaConflictDiagram);
+        for (var node : ssaConflictDiagram.getNodes()) {
+            for (var varInst : varInsts) { // vars in memory are all promoted by mem2reg, so they hardly meet ssa values
+                graph.addEdge(node, varInst);
+            }
+        }
 
-        int degreeThreshold = registers.size();
+        var loopAnalyzer = AnalysisManager.getInstance().getLoopAnalyzer(func);
+        var allocator = new IteratedRegisterCoalescing(graph, registers, getSpillCosts(nodes, loopAnalyzer));
+        for (var node : ssaConflictDiagram.getNodes()) {
+            if (node instanceof PhiInst phiInst) { // phi copies
+                for (var block : phiInst.getIncomingBlocks()) {
+                    allocator.addMove(phiInst, phiInst.getIncomingValue(block), getLoopWeight(block, loopAnalyzer));
+                }
+            }
+        }
+        allocator.allocate();
+        localValueMap.putAll(allocator.getColoring());
+    }
 
-        Stack<AllocaInst> nodesToColor = new Stack<>();
+    // uses and defs weighted by loop depth
+    private static Map<Value, Double> getSpillCosts(List<Value> values, LoopAnalyzer loopAnalyzer) {
+        Map<Value, Double> spillCosts = new HashMap<>();
+        for (var value : values) {
+            double cost = value instanceof AllocaInst ? 0 : getLoopWeight(((Instruction) value).getBasicBlock(), loopAnalyzer);
+            for (var use : value.getUseList()) {
+                cost += getLoopWeight(((Instruction) use.getUser()).getBasicBlock(), loopAnalyzer);
+            }
+            spillCosts.put(value, cost);
+        }
+        return spillCosts;
+    }
 
-        while (!diagramForColor.isEmpty()) {
-            AllocaInst candidate = null;
-            for (var node : diagramForColor.getNodes()) {
-                if (diagramForColor.getConflict(node).size() >= degreeThreshold) {
-                    continue;
+    private static double getLoopWeight(BasicBlock block, LoopAnalyzer loopAnalyzer) {
+        return Math.pow(10, Math.min(loopAnalyzer.getLoopDepth(block), 6));
+    }
+
+    private void linearScanGlobalRegisterManage(List<Register> registers, List<AllocaInst> varInsts, Function func) {
+        Set<Value> variables = new LinkedHashSet<>();
+        for (var varInst : varInsts) {
+            if (varInst.getDataType().getArrayDims().isEmpty() && isOnlyLoadedAndStored(varInst)) {
+                variables.add(varInst);
+            }
+        }
+        for (var block : func.getBasicBlocks()) {
+            for (var inst : block.getInstructions()) {
+                if (needMemory(inst) && !(inst instanceof AllocaInst)) {
+                    variables.add(inst);
                 }
-                candidate = node;
-                break;
             }
+        }
 
-            if (candidate == null) {
-                int maxDegree = degreeThreshold - 1;
-                for (var node : diagramForColor.getNodes()) {
-                    int degree = diagramForColor.getConflict(node).size();
-                    if (diagramForColor.getConflict(node).size() <= maxDegree) {
-                        continue;
-                    }
-                    maxDegree = degree;
-                    candidate = node;
-                    break;
-                }
-            } else {
-                nodesToColor.push(candidate);
+        linearScanAllocator = new LinearScanAllocator(func, variables, registers);
+        linearScanAllocator.allocate();
+
+        for (var value : linearScanAllocator.getAllocatedValues()) {
+            var children = linearScanAllocator.getSplitChildren(value);
+            var register = children.get(0).getRegister();
+            if (register != null && children.stream().allMatch(child -> child.getRegister() == register)) {
+                localValueMap.put(value, register);
+            } else if (children.stream().anyMatch(child -> child.getRegister() != null)) {
+                splitValues.put(value, children); // still gets a memory slot for the spilled parts
             }
-            diagramForColor.removeNode(candidate);
         }
+    }
 
-        while (!nodesToColor.isEmpty()) {
-            var node = nodesToColor.pop();
-            Set<Register> preservedRegs = new HashSet<>();
-            for (var conflictNode : conflictDiagram.getConflict(node)) {
-                if (localValueMap.containsKey(conflictNode) && localValueMap.get(conflictNode) instanceof Register registerInUse) {
-                    preservedRegs.add(registerInUse);
-                }
+    private static boolean isOnlyLoadedAndStored(AllocaInst allocaInst) {
+        for (var use : allocaInst.getUseList()) {
+            var user = use.getUser();
+            if (!(user instanceof LoadInst) && !(user instanceof StoreInst storeInst && storeInst.getPtr() == allocaInst
+                    && storeInst.getValue() != allocaInst)) {
+                return false;
             }
+        }
+        return true;
+    }
 
-            for (var reg : registers) {
-                if (preservedRegs.contains(reg)) {
-                    continue;
+    public List<Register> getRegistersInUse() {
+        Set<Register> registers = new LinkedHashSet<>();
+        localValueMap.values().stream().filter(elm -> elm instanceof Register).forEach(elm -> registers.add((Register) elm));
+        for (var children : splitValues.values()) {
+            children.stream().filter(child -> child.getRegister() != null).forEach(child -> registers.add(child.getRegister()));
+        }
+        return new ArrayList<>(registers);
+    }
+
+    // registers to be saved around the call, those holding params are saved as well for passing params
+    public List<Register> getRegistersToSave(CallInst callInst) {
+        if (ssaLiveVarAnalyzer != null) {
+            return getRegistersLiveAcross(callInst);
+        }
+        if (linearScanAllocator == null) {
+            return getRegistersInUse();
+        }
+        var registers = linearScanAllocator.getRegistersLiveAcross(callInst);
+        for (var entry : localValueMap.entrySet()) { // arguments pinned to registers
+            if (entry.getValue() instanceof Register register && !linearScanAllocator.getAllocatedValues().contains(entry.getKey())) {
+                registers.add(register);
+            }
+        }
+        for (var param : callInst.getParams()) {
+            if (getTargetValue(param) instanceof Register register) {
+                registers.add(register);
+            }
+        }
+        return new ArrayList<>(registers);
+    }
+
+    // registers of the values alive after the call besides itself, and of arguments which are never spilled
+    private List<Register> getRegistersLiveAcross(CallInst callInst) {
+        var block = callInst.getBasicBlock();
+        Set<Value> liveValues = new HashSet<>();
+        liveVarAnalyzer.getOut(block).stream().forEach(index -> liveValues.add(liveVarAnalyzer.getFact(index)));
+        ssaLiveVarAnalyzer.getOut(block).stream().forEach(index -> liveValues.add(ssaLiveVarAnalyzer.getFact(index)));
+        for (var inst = block.getTerminator(); inst != callInst; inst = inst.getPrevInstruction()) {
+            liveValues.remove(inst);
+            for (var operand : inst.getOperands()) {
+                if (operand instanceof Instruction && !(inst instanceof StoreInst storeInst && storeInst.getPtr() == operand
+                        && operand instanceof AllocaInst)) {
+                    liveValues.add(operand);
                 }
-                localValueMap.put(node, reg);
-                break;
             }
         }
+        for (var value : new ArrayList<>(liveValues)) { // such a load is translated as the register of the var
+            if (value instanceof LoadInst loadInst && loadInst.getPtr() instanceof AllocaInst allocaInst) {
+                liveValues.add(allocaInst);
+            }
+        }
+
+        Set<Register> registers = new LinkedHashSet<>();
+        for (var entry : localValueMap.entrySet()) {
+            if (entry.getValue() instanceof Register register
+                    && (entry.getKey() instanceof FunctionArgument || liveValues.contains(entry.getKey()))) {
+                registers.add(register);
+            }
+        }
+        return new ArrayList<>(registers);
     }
 
-    public List<Register> getRegistersInUse() {
-        return localValueMap.values().stream().filter(elm -> elm instanceof Register).map(elm -> (Register)elm).distinct().toList();
+    // the slot at the bottom of the frame where a function calling others keeps $ra, null for a leaf function
+    public Offset getReturnAddressSlot() {
+        return returnAddressSlot;
+    }
+
+    // registers left for values in memory to be loaded into
+    public List<Register> getSpillRegisters() {
+        if (strategy == RegisterAllocStrategy.LINEAR_SCAN) {
+            return Stream.of("t4", "t8", "t9").map(Register.REGS::get).toList();
+        }
+        // taken from the end, t registers cost no saves around calls, t5 and t6 last as they may be used by translating
+        Set<Register> tempRegisters = new LinkedHashSet<>(
+                Stream.of("t5", "t6", "s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7",
+                                "t0", "t1", "t2", "t3", "t4")
+                        .map(Register.REGS::get)
+                        .toList());
+        getRegistersInUse().forEach(tempRegisters::remove);
+        return new ArrayList<>(tempRegisters);
     }
 
     public void clearLocals() {
         localValueMap.clear();
+        splitValues.clear();
+        linearScanAllocator = null;
+        liveVarAnalyzer = null;
+        ssaLiveVarAnalyzer = null;
+        returnAddressSlot = null;
+        currentPosition = 0;
     }
 
 
     private int manageMemory(Function func, List<Register> registersToAlloc, GlobalRegisterManager globalRegisterManager) {
-        int argNum = func.getArguments().size();
-        List<AllocaInst> allAllocaInsts = new ArrayList<>(func.getFirstBasicBlock().getInstructions()
+        var args = func.getArguments();
+        var argAllocaInsts = getArgAllocaInsts(func);
+        List<AllocaInst> varAllocaInsts = func.getFirstBasicBlock().getInstructions()
                 .stream()
-                .filter(inst -> inst instanceof AllocaInst)
+                .filter(inst -> inst instanceof AllocaInst && !argAllocaInsts.containsValue(inst))
                 .map(inst -> (AllocaInst) inst)
-                .toList());
-
-        List<AllocaInst> argAllocaInsts = allAllocaInsts.subList(0, argNum); // argn to arg0
-        Collections.reverse(argAllocaInsts); // arg0 to argn
-        List<AllocaInst> varAllocaInsts = allAllocaInsts.subList(argNum, allAllocaInsts.size());
+                .toList();
 
-        for (int i = 0; i < argAllocaInsts.size() && i < 4; i++) {
-            var inst = argAllocaInsts.get(i);
-            localValueMap.put(inst, Register.REGS.get("a" + i));
+        for (int i = 0; i < args.size() && i < 4; i++) {
+            putArgument(args.get(i), argAllocaInsts.get(args.get(i)), Register.getArgRegister(i));
         }
 
         globalRegisterManager.manageGlobalRegister(registersToAlloc, varAllocaInsts, func);
 
-        int numOfArgOnRegister = Math.min(argNum, 4);
-        int memoryRequire = numOfArgOnRegister * 4;
+        var sp = Register.SP;
+        int memoryRequire = 0;
+        if (callsCommonFunc(func)) {
+            returnAddressSlot = new Offset(sp, 0);
+            memoryRequire += 4;
+        }
 
+        List<Instruction> slotInsts = new ArrayList<>();
+        int unsharedMemoryRequire = memoryRequire;
         for (var block : func.getBasicBlocks()) {
             for (var inst : block.getInstructions()) {
-                if ((inst instanceof StoreInst)
-                        || (inst instanceof BrInst)
-                        || (inst instanceof ReturnInst)
-                        || (inst instanceof CallInst callInst && callInst.getType().getType() == IRTypeEnum.VOID)) {
+                if (!needMemory(inst) || localValueMap.containsKey(inst) || argAllocaInsts.containsValue(inst)) {
                     continue;
                 }
-                if (localValueMap.containsKey(inst)) {
-                    continue;
-                }
-
-                if (inst instanceof AllocaInst allocaInst
-                        && allocaInst.getDataType() instanceof ArrayIRType arrayIRType
-                        && arrayIRType.getPtrNum() == 0) {
-                    memoryRequire += 4 * arrayIRType.getTotalSize();
-                } else {
-                    memoryRequire += 4;
-                }
+                slotInsts.add(inst);
+                unsharedMemoryRequire += getMemorySize(inst);
             }
         }
-
+        var slotAllocator = new StackSlotAllocator(func, slotInsts, splitValues.keySet());
+        slotAllocator.allocate();
         int baseOffset = memoryRequire;
-        var sp = Register.REGS.get("sp");
+        memoryRequire += slotAllocator.getSize();
+        Instrumentation.getInstance().recordFrameSize(func.getName(), unsharedMemoryRequire, memoryRequire);
 
-        for (int i = argAllocaInsts.size()-1; i >= 4; i--) {
-            var argInst = argAllocaInsts.get(i);
-            baseOffset -= 4;
-            localValueMap.put(argInst, new Offset(sp, baseOffset));
+        for (int i = 4; i < args.size(); i++) { // pushed by caller, just above the frame
+            putArgument(args.get(i), argAllocaInsts.get(args.get(i)), new Offset(sp, memoryRequire + 4 * i));
         }
 
-        baseOffset -= numOfArgOnRegister * 4;
+        Map<Integer, Offset> slots = new HashMap<>(); // the temp registers caching a slot know it by the offset object
+        for (var inst : slotInsts) {
+            int offset = baseOffset + slotAllocator.getOffset(inst);
+            localValueMap.put(inst, slots.computeIfAbsent(offset, k -> new Offset(sp, offset)));
+        }
 
+        return memoryRequire + func.calcParamSpace();
+    }
+
+    private static boolean callsCommonFunc(Function func) {
         for (var block : func.getBasicBlocks()) {
             for (var inst : block.getInstructions()) {
-                if ((inst instanceof StoreInst)
-                        || (inst instanceof BrInst)
-                        || (inst instanceof ReturnInst)
-                        || (inst instanceof CallInst callInst && callInst.getType().getType() == IRTypeEnum.VOID)) {
-                    continue;
-                }
-                if (localValueMap.containsKey(inst)) {
-                    continue;
+                if (inst instanceof CallInst callInst && callInst.getFunc() != Function.BUILD_IN_GETINT
+                        && callInst.getFunc() != Function.BUILD_IN_PUTINT && callInst.getFunc() != Function.BUILD_IN_PUTCH) {
+                    return true;
                 }
+            }
+        }
+        return false;
+    }
 
-                if (inst instanceof AllocaInst allocaInst
-                        && allocaInst.getDataType() instanceof ArrayIRType arrayIRType
-                        && arrayIRType.getPtrNum() == 0) {
-                    baseOffset -= 4 * arrayIRType.getTotalSize();
-                } else {
-                    baseOffset -= 4;
+    private Map<FunctionArgument, AllocaInst> getArgAllocaInsts(Function func) {
+        Map<FunctionArgument, AllocaInst> argAllocaInsts = new HashMap<>();
+        for (var arg : func.getArguments()) {
+            for (var use : arg.getUseList()) {
+                if (use.getUser() instanceof StoreInst storeInst
+                        && storeInst.getValue() == arg
+                        && storeInst.getPtr() instanceof AllocaInst allocaInst) {
+                    argAllocaInsts.put(arg, allocaInst);
                 }
-
-                localValueMap.put(inst, new Offset(sp, baseOffset));
             }
-
         }
+        return argAllocaInsts;
+    }
 
-        if (baseOffset != 0) {
-            throw new RuntimeException();
+    private void putArgument(FunctionArgument arg, AllocaInst argAllocaInst, TargetValue location) {
+        localValueMap.put(arg, location);
+        if (argAllocaInst != null) { // not promoted
+            localValueMap.put(argAllocaInst, location);
         }
+    }
 
-        return memoryRequire;
+    private static boolean needMemory(Instruction inst) {
+        return !((inst instanceof StoreInst)
+                || (inst instanceof BrInst)
+                || (inst instanceof ReturnInst)
+                || (inst instanceof CallInst callInst && callInst.getType().getType() == IRTypeEnum.VOID));
+    }
+
+    static int getMemorySize(Instruction inst) {
+        if (inst instanceof AllocaInst allocaInst
+                && allocaInst.getDataType() instanceof ArrayIRType arrayIRType
+                && arrayIRType.getPtrNum() == 0) {
+            return 4 * arrayIRType.getTotalSize();
+        } else {
+            return 4;
+        }
     }
 }
 
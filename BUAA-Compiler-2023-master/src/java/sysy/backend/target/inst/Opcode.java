@@ -0,0 +1,112 @@
+package sysy.backend.target.inst;
+
+import sysy.backend.target.value.Register;
+
+import java.util.List;
+
+// the instructions and pseudo instructions emitted, with the operands each writes and reads, and how it leaves
+public enum Opcode {
+    ADDU("addu", true, Flow.NEXT),
+    ADDIU("addiu", true, Flow.NEXT),
+    SUBU("subu", true, Flow.NEXT),
+    NEGU("negu", true, Flow.NEXT),
+    MUL("mul", true, Flow.NEXT),
+    MULT("mult", false, Flow.NEXT), // into hi and lo
+    DIV("div", false, Flow.NEXT), // into hi and lo
+    MFHI("mfhi", true, Flow.NEXT),
+    MFLO("mflo", true, Flow.NEXT),
+    AND("and", true, Flow.NEXT),
+    ANDI("andi", true, Flow.NEXT),
+    OR("or", true, Flow.NEXT),
+    ORI("ori", true, Flow.NEXT),
+    XORI("xori", true, Flow.NEXT),
+    SLL("sll", true, Flow.NEXT),
+    SRA("sra", true, Flow.NEXT),
+    SRL("srl", true, Flow.NEXT),
+    SLTI("slti", true, Flow.NEXT),
+    SLTIU("sltiu", true, Flow.NEXT),
+    SLTU("sltu", true, Flow.NEXT),
+    SEQ("seq", true, Flow.NEXT),
+    SNE("sne", true, Flow.NEXT),
+    SGE("sge", true, Flow.NEXT),
+    SGT("sgt", true, Flow.NEXT),
+    SLE("sle", true, Flow.NEXT),
+    SLT("slt", true, Flow.NEXT),
+    LI("li", true, Flow.NEXT),
+    LA("la", true, Flow.NEXT),
+    MOVE("move", true, Flow.NEXT),
+    LW("lw", true, Flow.NEXT),
+    SW("sw", false, Flow.NEXT),
+    SYSCALL("syscall", false, Flow.NEXT),
+    BEQZ("beqz", false, Flow.BRANCH),
+    BNEZ("bnez", false, Flow.BRANCH),
+    BGEZ("bgez", false, Flow.BRANCH),
+    BGTZ("bgtz", false, Flow.BRANCH),
+    BLEZ("blez", false, Flow.BRANCH),
+    BLTZ("bltz", false, Flow.BRANCH),
+    BEQ("beq", false, Flow.BRANCH),
+    BNE("bne", false, Flow.BRANCH),
+    BGE("bge", false, Flow.BRANCH),
+    BGT("bgt", false, Flow.BRANCH),
+    BLE("ble", false, Flow.BRANCH),
+    BLT("blt", false, Flow.BRANCH),
+    J("j", false, Flow.JUMP),
+    JAL("jal", false, Flow.CALL),
+    JR("jr", false, Flow.RETURN);
+
+    public enum Flow {
+        NEXT,
+        BRANCH, // to the label operand or the next
+        JUMP, // to the label operand
+        CALL, // back to the next
+        RETURN,
+    }
+
+    private final String mnemonic;
+    private final String paddedMnemonic; // as dumped before operands
+    private final boolean writesFirst;
+    private final Flow flow;
+
+    Opcode(String mnemonic, boolean writesFirst, Flow flow) {
+        this.mnemonic = mnemonic;
+        this.paddedMnemonic = String.format("%-6s ", mnemonic);
+        this.writesFirst = writesFirst;
+        this.flow = flow;
+    }
+
+    public String getMnemonic() {
+        return mnemonic;
+    }
+
+    String getPaddedMnemonic() {
+        return paddedMnemonic;
+    }
+
+    // the first operand is written and the others read, otherwise all are read
+    public boolean writesFirstOperand() {
+        return writesFirst;
+    }
+
+    public Flow getFlow() {
+        return flow;
+    }
+
+    // the instruction ends a basic block
+    public boolean isTerminator() {
+        return flow == Flow.BRANCH || flow == Flow.JUMP || flow == Flow.RETURN;
+    }
+
+    // registers written though not among the operands, the return address by a call and the result of a syscall
+    public List<Register> getImplicitWrites() {
+        return switch (this) {
+            case JAL -> List.of(Register.RA);
+            case SYSCALL -> List.of(Register.V0);
+            default -> List.of();
+        };
+    }
+
+    // the service number and the argument of a syscall
+    public List<Register> getImplicitReads() {
+        return this == SYSCALL ? List.of(Register.V0, Register.A0) : List.of();
+    }
+}
@@ -1,23 +1,59 @@
 package sysy.backend.target.inst;
 
+import sysy.backend.target.value.Offset;
+import sysy.backend.target.value.Register;
 import sysy.backend.target.value.TargetValue;
 
 import java.util.ArrayList;
 import java.util.List;
 
 public class TextInst extends TextEntry {
-    private final String instName;
-    private final List<TargetValue> values = new ArrayList<>();
+    private final Opcode opcode;
+    private final List<TargetValue> values;
 
-    public TextInst(String instName, TargetValue... values) {
-        this.instName = instName;
-        this.values.addAll(List.of(values));
+    public TextInst(Opcode opcode, TargetValue... values) {
+        this.opcode = opcode;
+        this.values = List.of(values);
+    }
+
+    public Opcode getOpcode() {
+        return opcode;
+    }
+
+    public List<TargetValue> getValues() {
+        return values;
+    }
+
+    public List<Register> getWrittenRegisters() {
+        var registers = new ArrayList<>(opcode.getImplicitWrites());
+        if (opcode.writesFirstOperand() && values.get(0) instanceof Register register) {
+            registers.add(register);
+        }
+        return registers;
+    }
+
+    // the registers of read operands and the bases of addresses
+    public List<Register> getReadRegisters() {
+        var registers = new ArrayList<>(opcode.getImplicitReads());
+        for (int i = opcode.writesFirstOperand() ? 1 : 0; i < values.size(); i++) {
+            if (values.get(i) instanceof Register register) {
+                registers.add(register);
+            } else if (values.get(i) instanceof Offset offset) {
+                registers.add(offset.getBase());
+            }
+        }
+        return registers;
     }
 
     @Override
     public String toString() {
-        String sb = String.format("%-6s ", instName) +
-                String.join(", ", values.stream().map(TargetValue::toString).toList());
-        return sb;
+        var sb = new StringBuilder(opcode.getPaddedMnemonic());
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(values.get(i));
+        }
+        return sb.toString();
     }
 }
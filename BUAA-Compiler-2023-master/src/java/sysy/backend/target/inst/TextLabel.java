@@ -6,6 +6,10 @@ public class TextLabel extends TextEntry {
         this.labelName = labelName;
     }
 
+    public String getLabelName() {
+        return labelName;
+    }
+
     @Override
     public String toString() {
         return labelName + ":";
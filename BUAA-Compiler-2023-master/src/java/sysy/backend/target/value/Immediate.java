@@ -7,6 +7,10 @@ public class Immediate extends TargetValue {
         this.value = value;
     }
 
+    public int getValue() {
+        return value;
+    }
+
     @Override
     public String toString() {
         return Integer.toString(value);
@@ -2,16 +2,39 @@ package sysy.backend.target.value;
 
 import java.util.*;
 
+// registers are numbered as in the instruction encoding, so sets of them fit in an int
 public class Register extends TargetValue {
-    private final String name;
+    private static final String[] NAMES = {
+            "zero", "at", "v0", "v1", "a0", "a1", "a2", "a3",
+            "t0", "t1", "t2", "t3", "t4", "t5", "t6", "t7",
+            "s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7",
+            "t8", "t9", "k0", "k1", "gp", "sp", "fp", "ra"
+    };
+    private static final Register[] PHYSICAL_REGS = new Register[NAMES.length];
 
-    public Register(String name) {
-        this.name = name;
+    private final int id;
+    private final String text;
+
+    private Register(int id) {
+        this.id = id;
+        this.text = "$" + NAMES[id];
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return NAMES[id];
+    }
+
+    public int getMask() {
+        return 1 << id;
     }
 
     @Override
     public String toString() {
-        return "$" + name;
+        return text;
     }
 
     public final static Map<String, Register> REGS = new HashMap<>();
@@ -19,24 +42,37 @@ public class Register extends TargetValue {
     private final static Stack<Register> TEMP_REGS_ON_USE = new Stack<>();
 
     static {
-        var registersName = List.of(
-                "v0", "v1", "a0", "a1", "a2", "a3",
-                "t0", "t1", "t2", "t3", "t4", "t5", "t6", "t7",
-                "s0", "s1", "s2", "s3", "s4", "s5", "s6", "s7",
-                "sp", "fp","ra"
-        );
+        for (int id = 0; id < NAMES.length; id++) {
+            PHYSICAL_REGS[id] = new Register(id);
+            REGS.put(NAMES[id], PHYSICAL_REGS[id]);
+        }
 
         var tempRegistersName = List.of("t5", "t6", "t7"); // 3 temp register is enough to translate inst from ir to asm
-
-        for (var name : registersName) {
-            var reg = new Register(name);
-            REGS.put(name, reg);
-            if (tempRegistersName.contains(name)) {
-                TEMP_REGS.add(reg);
-            }
+        for (var name : tempRegistersName) {
+            TEMP_REGS.add(REGS.get(name));
         }
     }
 
+    public static final Register ZERO = get(0);
+    public static final Register V0 = get(2);
+    public static final Register V1 = get(3);
+    public static final Register A0 = get(4);
+    public static final Register T7 = get(15);
+    public static final Register SP = get(29);
+    public static final Register RA = get(31);
+
+    public static Register get(int id) {
+        return PHYSICAL_REGS[id];
+    }
+
+    public static Register getArgRegister(int index) {
+        return PHYSICAL_REGS[A0.id + index];
+    }
+
+    public static boolean isArgRegister(Register register) {
+        return register.id >= A0.id && register.id < A0.id + 4;
+    }
+
     public static Register allocateTempRegister() {
         if (TEMP_REGS.isEmpty()) {
             return null;
@@ -418,7 +418,7 @@ public class Visitor {
 
         var r1 = visitLAndExpNode(elm.lAndExp);
         var lastAndBlock = r1.andBlocks.get(r1.andBlocks.size()-1);
-        var brInLastAndBlock = (BrInst)lastAndBlock.getInstructions().get(lastAndBlock.getInstructions().size()-1);
+        var brInLastAndBlock = (BrInst)lastAndBlock.getTerminator();
         brInLastAndBlock.setTrueBranch(currBasicBlock);
         rt.andBlocks.addAll(r1.andBlocks);
 
@@ -467,7 +467,7 @@ public class Visitor {
         rt.blocksToTrue.add(r2.andBlocks.get(r2.andBlocks.size()-1));
         var firstAndBlock = r2.andBlocks.get(0);
         for (var nearAndBlock : r1.nearAndBlocks) {
-            var brInst = (BrInst)nearAndBlock.getInstructions().get(nearAndBlock.getInstructions().size()-1);
+            var brInst = (BrInst)nearAndBlock.getTerminator();
             brInst.setFalseBranch(firstAndBlock);
         }
         rt.nearAndBlocks.addAll(r2.andBlocks);
@@ -806,12 +806,12 @@ public class Visitor {
         lastBlockInTrue.createBrInstWithoutCond(currBasicBlock);
 
         for (var blockToTrue : r.blocksToTrue) {
-            var brInst = (BrInst)blockToTrue.getInstructions().get(blockToTrue.getInstructions().size()-1);
+            var brInst = (BrInst)blockToTrue.getTerminator();
             brInst.setTrueBranch(trueBlock);
         }
 
         for (var blockToFalse : r.blocksToFalse) {
-            var brInst = (BrInst)blockToFalse.getInstructions().get(blockToFalse.getInstructions().size()-1);
+            var brInst = (BrInst)blockToFalse.getTerminator();
             brInst.setFalseBranch(falseBlock);
         }
     }
@@ -859,12 +859,12 @@ public class Visitor {
         var loopExitBlock = currBasicBlock;
 
         for (var blockToTrue : condRt.blocksToTrue) {
-            var brInst = (BrInst)blockToTrue.getInstructions().get(blockToTrue.getInstructions().size()-1);
+            var brInst = (BrInst)blockToTrue.getTerminator();
             brInst.setTrueBranch(stmtBlock);
         }
 
         for (var blockToFalse : condRt.blocksToFalse) {
-            var brInst = (BrInst)blockToFalse.getInstructions().get(blockToFalse.getInstructions().size()-1);
+            var brInst = (BrInst)blockToFalse.getTerminator();
             brInst.setFalseBranch(loopExitBlock);
         }
 